@@ -134,24 +134,26 @@ public class PerformanceTestRunner {
       final TestResult tr = new TestResult(method.getName(), warmupExecutions, DataCollectorList.NONE, true);
       final Object[] params = { tr };
       runWarmup(params);
+      tr.deleteTempFile();
 
+      final TestResult finalResult = new TestResult(method.getName(), executionTimes, DataCollectorList.STANDARD, false);
       try {
          if (!PerformanceTestUtils.checkCollectorValidity(tr, assertationvalues, maximalRelativeStandardDeviation)) {
             LOG.warn("Not all Collectors are valid!");
          }
-         TestResult finalResult = new TestResult(method.getName(), executionTimes, DataCollectorList.STANDARD, false);
          params[0] = finalResult;
-         tr.beforeRun();
+         finalResult.beforeRun();
          final PerformanceKoPeMeStatement pts = new PerformanceKoPeMeStatement(method, instanz, false, params, finalResult);
          runMainExecution(pts, finalResult);
       } catch (final Throwable t) {
-         tr.finalizeCollection(t);
-         saveData(SaveableTestData.createErrorTestData(method.getName(), filename, tr, configuration));
+         finalResult.finalizeCollection(t);
+         saveData(SaveableTestData.createErrorTestData(method.getName(), filename, finalResult, configuration));
          throw t;
       }
-      saveData(SaveableTestData.createFineTestData(method.getName(), filename, tr, configuration));
-      tr.checkValues();
-      return tr;
+      finalResult.finalizeCollection();
+      saveData(SaveableTestData.createFineTestData(method.getName(), filename, finalResult, configuration));
+      finalResult.checkValues();
+      return finalResult;
    }
 
    /**
@@ -162,11 +164,11 @@ public class PerformanceTestRunner {
     * @throws InvocationTargetException Thrown if an error during method access occurs
     */
    private TestResult executeSimpleTest() throws IllegalAccessException, InvocationTargetException {
-      TestResult tr = new TestResult(method.getName(), warmupExecutions, DataCollectorList.STANDARD, false);
+      TestResult tr = new TestResult(method.getName(), warmupExecutions, DataCollectorList.STANDARD, true);
       final Object[] params = {};
       runWarmup(params);
       tr.deleteTempFile();
-      tr = new TestResult(method.getName(), executionTimes, DataCollectorList.STANDARD, true);
+      tr = new TestResult(method.getName(), executionTimes, DataCollectorList.STANDARD, false);
 
       if (!PerformanceTestUtils.checkCollectorValidity(tr, assertationvalues, maximalRelativeStandardDeviation)) {
          LOG.warn("Not all Collectors are valid!");
@@ -230,6 +232,7 @@ public class PerformanceTestRunner {
          // break;
          // }
       }
+      tr.afterRun();
       LOG.debug("Executions: " + executions);
       tr.setRealExecutions(executions);
    }
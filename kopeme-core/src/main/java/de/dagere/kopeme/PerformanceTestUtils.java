@@ -1,24 +1,31 @@
 package de.dagere.kopeme;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import javax.xml.bind.JAXBException;
-
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.dagere.kopeme.datacollection.TestResult;
 import de.dagere.kopeme.datacollection.TimeDataCollector;
+import de.dagere.kopeme.datacollection.tempfile.WarmupCurve;
 import de.dagere.kopeme.datastorage.DataStorer;
 import de.dagere.kopeme.datastorage.ParamNameHelper;
+import de.dagere.kopeme.datastorage.ResultFormat;
+import de.dagere.kopeme.datastorage.ResultFormats;
+import de.dagere.kopeme.datastorage.ResultHistoryIndex;
 import de.dagere.kopeme.datastorage.SaveableTestData;
-import de.dagere.kopeme.datastorage.XMLDataStorer;
+import de.dagere.kopeme.generated.FlightRecording;
 import de.dagere.kopeme.generated.Result;
 import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.Result.Percentiles;
+import de.dagere.kopeme.jfr.KoPeMeFlightRecording;
 
 /**
  * Some utils for performance testing.
@@ -29,6 +36,22 @@ import de.dagere.kopeme.generated.Result.Fulldata;
 public final class PerformanceTestUtils {
    private static final Logger LOG = LogManager.getLogger(PerformanceTestUtils.class);
 
+   /**
+    * Percentiles that are saved for every result.
+    */
+   public static final double[] SAVED_PERCENTILES = new double[] { 50, 90, 95, 99, 99.9 };
+
+   /**
+    * VM property name for saving the warmup curve of every result.
+    */
+   public static final String SAVE_WARMUP_CURVE_PROPERTY = "kopeme.warmup.saveCurve";
+
+   /**
+    * VM property name for leaving executions with JIT compilation out of value, deviation, minimum and maximum of every result; the fulldata still contain
+    * all executions. Only has an effect if compilation collectors are used, see {@link TestResult#getCompilationFlags()}.
+    */
+   public static final String EXCLUDE_COMPILATION_PROPERTY = "kopeme.excludeCompilation";
+
    /**
     * Initializes the class.
     */
@@ -82,7 +105,16 @@ public final class PerformanceTestUtils {
     */
    public static void saveData(final SaveableTestData data) {
       try {
-         final DataStorer xds = getDataStorer(data);
+         final File folder = data.getFolder();
+         if (!folder.exists()) {
+            folder.mkdirs();
+         }
+         String testcasename = data.getTestcasename();
+         if (data.getTr().getParams() != null) {
+            testcasename += "(" + ParamNameHelper.paramsToString(data.getTr().getParams()) + ")";
+         }
+         final ResultFormat format = ResultFormats.getFormat(data.getConfiguration().getDataFormat());
+         final DataStorer xds = format.createStorer(folder, data.getFilename(), testcasename);
 
          final TestResult tr = data.getTr();
          if (tr.getValue(TimeDataCollector.class.getName()) != null) {
@@ -91,47 +123,94 @@ public final class PerformanceTestUtils {
                LOG.info("Execution Time: {} milliseconds", timeValue / 10E2);
             }
          }
+         logCompilation(tr);
+         final FlightRecording flightRecording = storeFlightRecording(tr, folder, testcasename);
 
+         final Map<String, Result> results = new LinkedHashMap<>();
          for (final String datacollector : tr.getDatacollectors()) {
-            buildKeyData(data, xds, tr, datacollector);
+            results.put(datacollector, buildKeyData(data, tr, datacollector));
+         }
+         if (flightRecording != null && !results.isEmpty()) {
+            final Result timeResult = results.get(TimeDataCollector.class.getName());
+            (timeResult != null ? timeResult : results.values().iterator().next()).setFlightRecording(flightRecording);
          }
-      } catch (final JAXBException e) {
+         xds.storeValues(results, data.getTestcasename());
+         if (ResultHistoryIndex.isEnabled()) {
+            final File resultFile = new File(folder, testcasename + format.getFileExtension());
+            ResultHistoryIndex.getIndex(folder.getAbsoluteFile().getParentFile()).add(data.getFilename(), data.getTestcasename(), results, resultFile);
+         }
+      } catch (final IOException e) {
          e.printStackTrace();
       }
    }
 
-   private static DataStorer getDataStorer(final SaveableTestData data) throws JAXBException {
-      final File folder = data.getFolder();
-      if (!folder.exists()) {
-         folder.mkdirs();
+   private static void logCompilation(final TestResult tr) {
+      final boolean[] flags = tr.getCompilationFlags();
+      if (flags != null) {
+         int flagged = 0;
+         for (final boolean flag : flags) {
+            flagged += flag ? 1 : 0;
+         }
+         LOG.info("JIT compilation happened in {} of {} executions", flagged, flags.length);
+         for (final String datacollector : tr.getDatacollectors()) {
+            final SummaryStatistics steadyState = tr.getCollectorSummary(datacollector, true);
+            if (steadyState != null && steadyState.getN() > 0) {
+               LOG.info("{}: mean {} with all executions, {} without compilation", datacollector, tr.getCollectorSummary(datacollector, false).getMean(),
+                     steadyState.getMean());
+            }
+         }
       }
-      String testcasename = data.getTestcasename();
-      if (data.getTr().getParams() != null) {
-         testcasename += "(" + ParamNameHelper.paramsToString(data.getTr().getParams()) + ")";
+   }
+
+   /**
+    * Moves a kept flight recording next to the result file and returns the summary of the recording, which is saved once per test, in the result of the
+    * {@link TimeDataCollector} if it is used.
+    */
+   private static FlightRecording storeFlightRecording(final TestResult tr, final File folder, final String testcasename) {
+      final KoPeMeFlightRecording recording = tr.getFlightRecording();
+      if (recording == null || recording.getSummary() == null) {
+         return null;
       }
-      return new XMLDataStorer(folder, data.getFilename(), testcasename);
+      recording.moveFile(new File(folder, testcasename + "_" + System.currentTimeMillis() + ".jfr"));
+      final FlightRecording summary = recording.getSummary();
+      LOG.info("Flight recording: {} garbage collection pauses ({} ns), {} safepoints ({} ns), contention on {} monitor classes", summary.getGcPauses(),
+            summary.getGcPauseTime(), summary.getSafepoints(), summary.getSafepointTime(), summary.getContendedMonitor().size());
+      return summary;
    }
 
-   private static void buildKeyData(final SaveableTestData data, final DataStorer xds, final TestResult tr, final String datacollector) {
+   private static Result buildKeyData(final SaveableTestData data, final TestResult tr, final String datacollector) {
       LOG.trace("Collector Key: {}", datacollector);
       final Result result = getMeasureFromTR(data, tr, datacollector);
       final Fulldata fulldata = data.getConfiguration().isSaveValues() ? tr.getFulldata(datacollector) : null;
       tr.clearFulldata(datacollector);
       result.setFulldata(fulldata);
-      xds.storeValue(result, data.getTestcasename(), datacollector);
+      return result;
    }
 
    private static Result getMeasureFromTR(final SaveableTestData data, final TestResult tr, final String additionalKey) {
-      final double relativeStandardDeviation = tr.getRelativeStandardDeviation(additionalKey);
-      final double value = tr.getValue(additionalKey).doubleValue();
-      final double min = tr.getMinumumCurrentValue(additionalKey);
-      final double max = tr.getMaximumCurrentValue(additionalKey);
+      double relativeStandardDeviation = tr.getRelativeStandardDeviation(additionalKey);
+      double value = tr.getValue(additionalKey).doubleValue();
+      double min = tr.getMinumumCurrentValue(additionalKey);
+      double max = tr.getMaximumCurrentValue(additionalKey);
+      if (Boolean.getBoolean(EXCLUDE_COMPILATION_PROPERTY)) {
+         final SummaryStatistics steadyState = tr.getCollectorSummary(additionalKey, true);
+         if (steadyState != null && steadyState.getN() > 0) {
+            relativeStandardDeviation = steadyState.getStandardDeviation() / steadyState.getMean();
+            value = steadyState.getMean();
+            min = steadyState.getMin();
+            max = steadyState.getMax();
+         }
+      }
       Result result = new Result();
       result.setParams(tr.getParams());
       result.setValue(value);
       result.setDeviation(relativeStandardDeviation);
       result.setMin(min);
       result.setMax(max);
+      result.setPercentiles(getPercentiles(tr, additionalKey));
+      if (Boolean.getBoolean(SAVE_WARMUP_CURVE_PROPERTY)) {
+         result.setWarmupCurve(getWarmupCurve(tr, additionalKey));
+      }
       result.setWarmup(data.getConfiguration().getWarmupExecutions());
       result.setIterations(tr.getRealExecutions());
       result.setRepetitions(data.getConfiguration().getRepetitions());
@@ -144,6 +223,33 @@ public final class PerformanceTestUtils {
       return result;
    }
 
+   private static Percentiles getPercentiles(final TestResult tr, final String additionalKey) {
+      final Percentiles percentiles = new Percentiles();
+      for (final double p : SAVED_PERCENTILES) {
+         final double value = tr.getPercentile(additionalKey, p);
+         if (!Double.isNaN(value)) {
+            final Percentiles.Percentile percentile = new Percentiles.Percentile();
+            percentile.setP(p);
+            percentile.setValue(value);
+            percentiles.getPercentile().add(percentile);
+         }
+      }
+      return percentiles.getPercentile().isEmpty() ? null : percentiles;
+   }
+
+   private static Result.WarmupCurve getWarmupCurve(final TestResult tr, final String additionalKey) {
+      final WarmupCurve curve = tr.getWarmupCurve();
+      if (curve == null || curve.getBlockMeans(additionalKey) == null) {
+         return null;
+      }
+      final Result.WarmupCurve warmupCurve = new Result.WarmupCurve();
+      warmupCurve.setBlockSize(curve.getBlockSize());
+      for (final double mean : curve.getBlockMeans(additionalKey)) {
+         warmupCurve.getMean().add(mean);
+      }
+      return warmupCurve;
+   }
+
    /**
     * Returns a given percentil for a given list of values. The n-percentil is the value for which n % of the values are less then the percentil.
     * 
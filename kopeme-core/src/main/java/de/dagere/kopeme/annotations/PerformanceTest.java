@@ -83,7 +83,7 @@ public @interface PerformanceTest {
    Assertion[] assertions() default {};
 
    /**
-    * Sets the Datacollectors - possible values are STANDARD, ONLYTIME and NONE.
+    * Sets the Datacollectors - possible values are STANDARD, EXTENDED, ONLYTIME, ONLYTIME_NOGC, ALLOCATION, ALLOCATION_THREADGROUP, GC, COMPILATION, SCHEDULING and NONE.
     * 
     * @return Datacollectors that should be used
     */
@@ -135,4 +135,12 @@ public @interface PerformanceTest {
     * Defines which parameter index should be (solely) executed - Since Gradle and Maven currently do not support this, it needs to be implemented in KoPeMe itself
     */
    int chosenParameterIndex() default -1;
+
+   /**
+    * Optionally specifies the format of the result file, e.g. <code>xml</code> or <code>binary</code>; by default, the format given by the VM property
+    * <code>kopeme.dataFormat</code> is used, or XML if it is not set.
+    * 
+    * @return Name of the result format
+    */
+   String dataFormat() default "";
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package de.dagere.kopeme.datacollection;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A collector for the bytes allocated by the measuring thread during a test, read from {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ * In contrast to the {@link RAMUsageCollector}, no garbage collection is forced and garbage collections during the test do not change the value. The bytes
+ * allocated by reading the counter are measured once and subtracted. If the JVM does not support allocation counting, -1 is returned.
+ *
+ * @author reichelt
+ *
+ */
+public class AllocatedBytesCollector extends DataCollector {
+
+   private static final Logger LOG = LogManager.getLogger(AllocatedBytesCollector.class);
+
+   private static final com.sun.management.ThreadMXBean MXBEAN = getSupportedBean();
+   private static final long READ_OVERHEAD = MXBEAN != null ? measureReadOverhead() : 0;
+
+   private final boolean wholeThreadGroup;
+   private Map<Long, Long> startBytes;
+   private long start;
+   private long value = -1;
+
+   /**
+    * Initializes a collector for the measuring thread.
+    */
+   public AllocatedBytesCollector() {
+      this(false);
+   }
+
+   /**
+    * Initializes the collector.
+    *
+    * @param wholeThreadGroup Whether all threads of the thread group of the measuring thread should be measured
+    */
+   protected AllocatedBytesCollector(final boolean wholeThreadGroup) {
+      this.wholeThreadGroup = wholeThreadGroup;
+   }
+
+   private static com.sun.management.ThreadMXBean getSupportedBean() {
+      try {
+         if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported()) {
+               bean.setThreadAllocatedMemoryEnabled(true);
+               return bean;
+            }
+         }
+      } catch (final NoClassDefFoundError | UnsupportedOperationException e) {
+         LOG.debug("Thread allocation counting not available", e);
+      }
+      LOG.warn("Thread allocation counting is not supported by this JVM, allocated bytes are not measured");
+      return null;
+   }
+
+   /**
+    * Returns the minimal difference of two consecutive reads, i.e. the bytes allocated by reading the counter itself.
+    */
+   private static long measureReadOverhead() {
+      final long threadId = Thread.currentThread().getId();
+      long overhead = Long.MAX_VALUE;
+      for (int i = 0; i < 100; i++) {
+         final long first = MXBEAN.getThreadAllocatedBytes(threadId);
+         final long second = MXBEAN.getThreadAllocatedBytes(threadId);
+         overhead = Math.min(overhead, second - first);
+      }
+      return overhead;
+   }
+
+   @Override
+   public int getPriority() {
+      // The time collectors do not allocate, so measuring their start does not change the value
+      return BEFORE_TIME_COLLECTOR_PRIORITY;
+   }
+
+   @Override
+   public void startCollection() {
+      if (MXBEAN == null) {
+         return;
+      }
+      if (wholeThreadGroup) {
+         startBytes = readThreadGroupBytes();
+      } else {
+         start = MXBEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+   }
+
+   @Override
+   public void stopCollection() {
+      if (MXBEAN == null) {
+         return;
+      }
+      if (wholeThreadGroup) {
+         long allocated = 0;
+         for (final Map.Entry<Long, Long> threadBytes : readThreadGroupBytes().entrySet()) {
+            final Long threadStart = startBytes.get(threadBytes.getKey());
+            allocated += threadBytes.getValue() - (threadStart != null ? threadStart : 0);
+         }
+         value = allocated;
+      } else {
+         // Only primitive values are used between both reads, so nothing but the read itself is allocated
+         final long stop = MXBEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+         value = Math.max(0, stop - start - READ_OVERHEAD);
+      }
+   }
+
+   /**
+    * Reads the allocated bytes of all living threads of the thread group of the current thread, mapped from their id.
+    */
+   private static Map<Long, Long> readThreadGroupBytes() {
+      final ThreadGroup group = Thread.currentThread().getThreadGroup();
+      final Thread[] threads = new Thread[group.activeCount() + 1];
+      final int count = group.enumerate(threads);
+      final long[] ids = new long[count];
+      for (int i = 0; i < count; i++) {
+         ids[i] = threads[i].getId();
+      }
+      final long[] allocated = MXBEAN.getThreadAllocatedBytes(ids);
+      final Map<Long, Long> bytes = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+         if (allocated[i] != -1) {
+            bytes.put(ids[i], allocated[i]);
+         }
+      }
+      return bytes;
+   }
+
+   @Override
+   public long getValue() {
+      return value;
+   }
+}
@@ -0,0 +1,82 @@
+package de.dagere.kopeme.datacollection;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A collector for the count of methods the JIT compiler compiled during a test. Since the {@link CompilationTimeCollector} only measures milliseconds, this
+ * count is the signal that flags executions with short compilations. The count is read from the HotSpot performance counter
+ * <code>sun.ci.totalCompiles</code> (see {@link HotSpotPerfCounter}); if the performance data are disabled, it is read from the HotSpot internal compilation
+ * bean, which is not part of {@link ManagementFactory} and since Java 9 only accessible if the JVM is started with
+ * <code>--add-exports java.management/sun.management=ALL-UNNAMED</code>. If neither is available, a warning is logged and -1 is returned.
+ *
+ * @author reichelt
+ *
+ */
+public final class CompilationCountCollector extends DataCollector {
+
+   private static final Logger LOG = LogManager.getLogger(CompilationCountCollector.class);
+
+   private static final HotSpotPerfCounter COUNTER = HotSpotPerfCounter.find("sun.ci.totalCompiles");
+   private static final Object MXBEAN;
+   private static final Method TOTAL_COMPILE_COUNT;
+
+   static {
+      Object bean = null;
+      Method countMethod = null;
+      if (COUNTER == null) {
+         try {
+            final Class<?> helper = Class.forName("sun.management.ManagementFactoryHelper");
+            bean = helper.getMethod("getHotspotCompilationMBean").invoke(null);
+            countMethod = Class.forName("sun.management.HotspotCompilationMBean").getMethod("getTotalCompileCount");
+            countMethod.invoke(bean);
+         } catch (final ReflectiveOperationException | RuntimeException | LinkageError e) {
+            LOG.warn("Count of JIT compilations is not available ({}), executions with compilations shorter than a millisecond are not flagged", e.toString());
+            bean = null;
+            countMethod = null;
+         }
+      }
+      MXBEAN = bean;
+      TOTAL_COMPILE_COUNT = countMethod;
+   }
+
+   private long start, stop;
+
+   @Override
+   public int getPriority() {
+      return BEFORE_TIME_COLLECTOR_PRIORITY;
+   }
+
+   @Override
+   public void startCollection() {
+      start = readCount();
+   }
+
+   @Override
+   public void stopCollection() {
+      stop = readCount();
+   }
+
+   private static long readCount() {
+      if (COUNTER != null) {
+         return COUNTER.read();
+      }
+      if (MXBEAN == null) {
+         return -1;
+      }
+      try {
+         return ((Number) TOTAL_COMPILE_COUNT.invoke(MXBEAN)).longValue();
+      } catch (final ReflectiveOperationException e) {
+         e.printStackTrace();
+         return -1;
+      }
+   }
+
+   @Override
+   public long getValue() {
+      return start != -1 && stop != -1 ? stop - start : -1;
+   }
+}
@@ -0,0 +1,44 @@
+package de.dagere.kopeme.datacollection;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A collector for the milliseconds the JIT compiler spent compiling during a test, read from {@link CompilationMXBean#getTotalCompilationTime()}. Executions
+ * with a value above 0 are flagged as not JIT-steady, see {@link TestResult#getCompilationFlags()}. If the JVM has no JIT compiler or does not support
+ * measuring its time, -1 is returned.
+ *
+ * @author reichelt
+ *
+ */
+public final class CompilationTimeCollector extends DataCollector {
+
+   private static final CompilationMXBean MXBEAN = ManagementFactory.getCompilationMXBean();
+   private static final boolean SUPPORTED = MXBEAN != null && MXBEAN.isCompilationTimeMonitoringSupported();
+
+   private long start, stop;
+
+   @Override
+   public int getPriority() {
+      return BEFORE_TIME_COLLECTOR_PRIORITY;
+   }
+
+   @Override
+   public void startCollection() {
+      if (SUPPORTED) {
+         start = MXBEAN.getTotalCompilationTime();
+      }
+   }
+
+   @Override
+   public void stopCollection() {
+      if (SUPPORTED) {
+         stop = MXBEAN.getTotalCompilationTime();
+      }
+   }
+
+   @Override
+   public long getValue() {
+      return SUPPORTED ? stop - start : -1;
+   }
+}
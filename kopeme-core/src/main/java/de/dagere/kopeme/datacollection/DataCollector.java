@@ -10,6 +10,12 @@ public abstract class DataCollector {
 
    protected static final int MIDDLE_COLLECTOR_PRIORITY = 10;
    protected static final int LOW_DATACOLLECTOR_PRIORITY = 5;
+   /**
+    * Priority of collectors that are started directly before the time collectors (which have {@link Integer#MAX_VALUE}) and stopped directly after them.
+    * Collectors are started in ascending and stopped in descending priority, so the measurement windows nest: the time collectors measure none of the other
+    * collectors, and collectors with this priority only measure the start and stop of the time collectors.
+    */
+   protected static final int BEFORE_TIME_COLLECTOR_PRIORITY = Integer.MAX_VALUE - 1;
 
    /**
     * Returns the name of the DataCollector.
@@ -22,7 +28,7 @@ public abstract class DataCollector {
 
    /**
     * Returns the priority for the DataCollector, i.e. when the DataCollector should be started in relation to the other DataCollectors. This is important, for example if before
-    * the Data is collected time-intensive cleaning is needed (as for the RAMUsageCollector) High priority means late starting
+    * the Data is collected time-intensive cleaning is needed (as for the RAMUsageCollector) High priority means late starting and early stopping
     * 
     * @return Priority of the DataCollector
     */
@@ -31,6 +31,29 @@ public class DataCollectorList {
     * The list containing only a collector for time usage without GC.
     */
    public static final DataCollectorList ONLYTIME_NOGC;
+   /**
+    * The list containing a collector for time usage without GC and a collector for the bytes allocated by the measuring thread.
+    */
+   public static final DataCollectorList ALLOCATION;
+   /**
+    * The list containing a collector for time usage without GC and a collector for the bytes allocated by all threads of the thread group of the measuring
+    * thread.
+    */
+   public static final DataCollectorList ALLOCATION_THREADGROUP;
+   /**
+    * The list containing a collector for time usage without GC and collectors for the count and the time of garbage collections during each execution.
+    */
+   public static final DataCollectorList GC;
+   /**
+    * The list containing a collector for time usage and collectors for the time and count of JIT compilations during each execution, which flag executions
+    * that were not measured in a JIT-steady state.
+    */
+   public static final DataCollectorList COMPILATION;
+   /**
+    * The list containing a collector for time usage without GC and the Linux collectors for context switches, page faults and run queue wait time of the
+    * measuring thread, which explain outliers caused by the system instead of the code.
+    */
+   public static final DataCollectorList SCHEDULING;
    /**
     * The list, containing no collector; one could use this if one wants only to use self-defined collectors.
     */
@@ -56,6 +79,32 @@ public class DataCollectorList {
       ONLYTIME_NOGC = new DataCollectorList();
       ONLYTIME_NOGC.addDataCollector(TimeDataCollectorNoGC.class);
 
+      ALLOCATION = new DataCollectorList();
+      ALLOCATION.addDataCollector(TimeDataCollectorNoGC.class);
+      ALLOCATION.addDataCollector(AllocatedBytesCollector.class);
+
+      ALLOCATION_THREADGROUP = new DataCollectorList();
+      ALLOCATION_THREADGROUP.addDataCollector(TimeDataCollectorNoGC.class);
+      ALLOCATION_THREADGROUP.addDataCollector(ThreadGroupAllocatedBytesCollector.class);
+
+      GC = new DataCollectorList();
+      GC.addDataCollector(TimeDataCollectorNoGC.class);
+      GC.addDataCollector(GCCountCollector.class);
+      GC.addDataCollector(GCTimeCollector.class);
+
+      COMPILATION = new DataCollectorList();
+      COMPILATION.addDataCollector(TimeDataCollector.class);
+      COMPILATION.addDataCollector(CompilationTimeCollector.class);
+      COMPILATION.addDataCollector(CompilationCountCollector.class);
+
+      SCHEDULING = new DataCollectorList();
+      SCHEDULING.addDataCollector(TimeDataCollectorNoGC.class);
+      SCHEDULING.addDataCollector(VoluntaryContextSwitchCollector.class);
+      SCHEDULING.addDataCollector(InvoluntaryContextSwitchCollector.class);
+      SCHEDULING.addDataCollector(MinorPageFaultCollector.class);
+      SCHEDULING.addDataCollector(MajorPageFaultCollector.class);
+      SCHEDULING.addDataCollector(RunQueueWaitCollector.class);
+
       NONE = new DataCollectorList();
    }
 
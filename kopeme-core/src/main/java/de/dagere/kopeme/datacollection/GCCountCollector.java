@@ -0,0 +1,34 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the count of garbage collections of all garbage collectors during a test, so iterations affected by garbage collection can be separated
+ * in the analysis.
+ *
+ * @author reichelt
+ *
+ */
+public final class GCCountCollector extends DataCollector {
+
+   private final GarbageCollectionMonitor monitor = GarbageCollectionMonitor.getInstance();
+   private long startCount, stopCount;
+
+   @Override
+   public int getPriority() {
+      return BEFORE_TIME_COLLECTOR_PRIORITY;
+   }
+
+   @Override
+   public void startCollection() {
+      startCount = monitor.getCount();
+   }
+
+   @Override
+   public void stopCollection() {
+      stopCount = monitor.getCount();
+   }
+
+   @Override
+   public long getValue() {
+      return stopCount - startCount;
+   }
+}
@@ -0,0 +1,52 @@
+package de.dagere.kopeme.datacollection;
+
+import java.util.Arrays;
+
+/**
+ * A collector for the milliseconds spent in garbage collections during a test. The collections counted by the garbage collectors during the test are looked
+ * up in the collection notifications of the JVM, which are waited for briefly since they arrive asynchronously, and their durations are summed; a collection
+ * is charged to the test in which its collector counted it, i.e. in which it ended. If not all of these collections are notified, the difference of the
+ * accumulated collection times of the garbage collectors is used. For concurrent collectors, the time of concurrent phases is contained.
+ *
+ * @author reichelt
+ *
+ */
+public final class GCTimeCollector extends DataCollector {
+
+   private final GarbageCollectionMonitor monitor = GarbageCollectionMonitor.getInstance();
+   private long[] startCounts, stopCounts;
+   private long startTime, stopTime;
+   private long value = -1;
+
+   @Override
+   public int getPriority() {
+      return BEFORE_TIME_COLLECTOR_PRIORITY;
+   }
+
+   @Override
+   public void startCollection() {
+      startCounts = monitor.getCounts();
+      startTime = monitor.getTime();
+   }
+
+   @Override
+   public void stopCollection() {
+      stopCounts = monitor.getCounts();
+      stopTime = monitor.getTime();
+      value = -1;
+   }
+
+   @Override
+   public long getValue() {
+      // Cached, since waiting for notifications should only happen once per measurement
+      if (value == -1) {
+         if (Arrays.equals(startCounts, stopCounts)) {
+            value = 0;
+         } else {
+            final long notifiedTime = monitor.getNotifiedTime(startCounts, stopCounts);
+            value = notifiedTime != -1 ? notifiedTime : stopTime - startTime;
+         }
+      }
+      return value;
+   }
+}
@@ -0,0 +1,152 @@
+package de.dagere.kopeme.datacollection;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+/**
+ * Reads the counters of all {@link GarbageCollectorMXBean}s and, if the JVM sends garbage collection notifications, keeps the durations of the latest
+ * collections of every collector by their identifier, so the pause time of the collections counted in a measured interval can be determined exactly instead
+ * of from the accumulated collection times.
+ *
+ * @author reichelt
+ *
+ */
+final class GarbageCollectionMonitor {
+
+   private static final Logger LOG = LogManager.getLogger(GarbageCollectionMonitor.class);
+
+   private static final int EVENT_CAPACITY = 1024;
+
+   /**
+    * Maximum time in milliseconds to wait for notifications of collections that are already counted; notifications are sent asynchronously.
+    */
+   private static final long NOTIFICATION_TIMEOUT = 100;
+
+   private static final GarbageCollectionMonitor INSTANCE = new GarbageCollectionMonitor();
+
+   private final List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+   private final long[][] eventIds = new long[beans.size()][EVENT_CAPACITY];
+   private final long[][] eventDurations = new long[beans.size()][EVENT_CAPACITY];
+   private final boolean notifying;
+
+   static GarbageCollectionMonitor getInstance() {
+      return INSTANCE;
+   }
+
+   private GarbageCollectionMonitor() {
+      boolean registered = false;
+      try {
+         for (int i = 0; i < beans.size(); i++) {
+            if (beans.get(i) instanceof NotificationEmitter) {
+               ((NotificationEmitter) beans.get(i)).addNotificationListener(this::handleNotification, null, i);
+               registered = true;
+            }
+         }
+      } catch (final NoClassDefFoundError | RuntimeException e) {
+         LOG.debug("Garbage collection notifications are not available", e);
+      }
+      notifying = registered;
+   }
+
+   private void handleNotification(final Notification notification, final Object handback) {
+      if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+         final GcInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+         final int bean = (Integer) handback;
+         synchronized (this) {
+            // The identifier of a collection is the count of collections of its collector including itself
+            final int index = (int) (info.getId() % EVENT_CAPACITY);
+            eventIds[bean][index] = info.getId();
+            eventDurations[bean][index] = info.getDuration();
+            notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Returns the count of garbage collections of every collector since the start of the JVM.
+    */
+   long[] getCounts() {
+      final long[] counts = new long[beans.size()];
+      for (int i = 0; i < counts.length; i++) {
+         counts[i] = Math.max(0, beans.get(i).getCollectionCount());
+      }
+      return counts;
+   }
+
+   /**
+    * Returns the count of garbage collections of all collectors since the start of the JVM.
+    */
+   long getCount() {
+      long count = 0;
+      for (final GarbageCollectorMXBean bean : beans) {
+         count += Math.max(0, bean.getCollectionCount());
+      }
+      return count;
+   }
+
+   /**
+    * Returns the accumulated time of garbage collections of all collectors since the start of the JVM in milliseconds.
+    */
+   long getTime() {
+      long time = 0;
+      for (final GarbageCollectorMXBean bean : beans) {
+         time += Math.max(0, bean.getCollectionTime());
+      }
+      return time;
+   }
+
+   /**
+    * Returns the summed duration in milliseconds of the collections counted between two calls of {@link #getCounts()}. Since notifications are delivered
+    * asynchronously, this waits up to {@value #NOTIFICATION_TIMEOUT} milliseconds for notifications of these collections. Returns -1 if not all of them have
+    * been notified, e.g. since notifications are not available or too many collections happened in between.
+    *
+    * @param startCounts Counts of collections at the start of the interval
+    * @param stopCounts Counts of collections at the end of the interval
+    * @return Collection time inside the interval or -1
+    */
+   synchronized long getNotifiedTime(final long[] startCounts, final long[] stopCounts) {
+      if (!notifying) {
+         return -1;
+      }
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NOTIFICATION_TIMEOUT);
+      long time = getNotifiedDuration(startCounts, stopCounts);
+      try {
+         while (time == -1 && System.nanoTime() < deadline) {
+            TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, deadline - System.nanoTime()));
+            time = getNotifiedDuration(startCounts, stopCounts);
+         }
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      return time;
+   }
+
+   private long getNotifiedDuration(final long[] startCounts, final long[] stopCounts) {
+      long time = 0;
+      for (int bean = 0; bean < stopCounts.length; bean++) {
+         if (stopCounts[bean] - startCounts[bean] > EVENT_CAPACITY) {
+            return -1;
+         }
+         for (long id = startCounts[bean] + 1; id <= stopCounts[bean]; id++) {
+            final int index = (int) (id % EVENT_CAPACITY);
+            if (eventIds[bean][index] != id) {
+               return -1;
+            }
+            time += eventDurations[bean][index];
+         }
+      }
+      return time;
+   }
+}
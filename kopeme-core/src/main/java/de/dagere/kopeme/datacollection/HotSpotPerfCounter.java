@@ -0,0 +1,112 @@
+package de.dagere.kopeme.datacollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A long counter of the HotSpot performance data, which the JVM exports in the memory-mapped file <code>hsperfdata_&lt;user&gt;/&lt;pid&gt;</code> in the
+ * temporary folder of the operating system (also read by <code>jstat</code>); this folder does not change if <code>java.io.tmpdir</code> is set. In contrast to the internal management beans, reading the file needs no
+ * <code>--add-exports</code>; the file is mapped once, so reading the counter is a single memory access. The file is not available if the JVM is started with
+ * <code>-XX:-UsePerfData</code> or <code>-XX:+PerfDisableSharedMem</code>.
+ *
+ * @author reichelt
+ *
+ */
+final class HotSpotPerfCounter {
+
+   private static final Logger LOG = LogManager.getLogger(HotSpotPerfCounter.class);
+
+   private static final int MAGIC = 0xcafec0c0;
+   private static final int BYTE_ORDER_OFFSET = 4;
+   private static final int ENTRY_OFFSET_OFFSET = 24;
+   private static final int ENTRY_COUNT_OFFSET = 28;
+   private static final byte TYPE_LONG = 'J';
+
+   private final MappedByteBuffer buffer;
+   private final int position;
+
+   private HotSpotPerfCounter(final MappedByteBuffer buffer, final int position) {
+      this.buffer = buffer;
+      this.position = position;
+   }
+
+   /**
+    * Finds the counter with the given name in the performance data of the current JVM.
+    *
+    * @param name Name of the counter, e.g. <code>sun.ci.totalCompiles</code>
+    * @return The counter, or null if the performance data are not available or contain no long counter with the name
+    */
+   static HotSpotPerfCounter find(final String name) {
+      final String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+      final File file = new File(getTempDirectory(), "hsperfdata_" + System.getProperty("user.name") + File.separator + pid);
+      if (!file.canRead()) {
+         LOG.debug("HotSpot performance data {} not available", file);
+         return null;
+      }
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+         final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         if (buffer.getInt(0) != MAGIC) {
+            return null;
+         }
+         buffer.order(buffer.get(BYTE_ORDER_OFFSET) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+         int entry = buffer.getInt(ENTRY_OFFSET_OFFSET);
+         final int entries = buffer.getInt(ENTRY_COUNT_OFFSET);
+         for (int i = 0; i < entries; i++) {
+            // An entry consists of its length, the offsets of name and data, the vector length, the type and three further bytes
+            final int length = buffer.getInt(entry);
+            final int nameOffset = buffer.getInt(entry + 4);
+            final int vectorLength = buffer.getInt(entry + 8);
+            final byte type = buffer.get(entry + 12);
+            final int dataOffset = buffer.getInt(entry + 16);
+            if (type == TYPE_LONG && vectorLength == 0 && hasName(buffer, entry + nameOffset, name)) {
+               return new HotSpotPerfCounter(buffer, entry + dataOffset);
+            }
+            entry += length;
+         }
+      } catch (final IOException | RuntimeException e) {
+         LOG.debug("Could not read HotSpot performance data {}: {}", file, e.toString());
+      }
+      return null;
+   }
+
+   /**
+    * Returns the temporary folder HotSpot writes the performance data to: /tmp on Linux and other Unix systems, the folder given by the environment on
+    * Windows, and the temporary folder of the user on macOS, which is the default of <code>java.io.tmpdir</code> there.
+    */
+   private static String getTempDirectory() {
+      final String os = System.getProperty("os.name", "").toLowerCase();
+      if (os.startsWith("windows")) {
+         final String tmp = System.getenv("TMP");
+         final String temp = System.getenv("TEMP");
+         return tmp != null ? tmp : (temp != null ? temp : System.getProperty("java.io.tmpdir"));
+      } else if (os.startsWith("mac")) {
+         return System.getProperty("java.io.tmpdir");
+      } else {
+         return "/tmp";
+      }
+   }
+
+   private static boolean hasName(final MappedByteBuffer buffer, final int position, final String name) {
+      for (int i = 0; i < name.length(); i++) {
+         if (buffer.get(position + i) != name.charAt(i)) {
+            return false;
+         }
+      }
+      return buffer.get(position + name.length()) == 0;
+   }
+
+   /**
+    * Returns the current value of the counter.
+    */
+   long read() {
+      return buffer.getLong(position);
+   }
+}
@@ -0,0 +1,15 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the involuntary context switches of the measuring thread during a test, i.e. how often the scheduler preempted it.
+ *
+ * @author reichelt
+ *
+ */
+public final class InvoluntaryContextSwitchCollector extends ProcThreadCollector {
+
+   @Override
+   protected long read(final ProcThreadStatReader threadReader) {
+      return threadReader.readStatusValue(ProcThreadStatReader.NONVOLUNTARY_CTXT_SWITCHES);
+   }
+}
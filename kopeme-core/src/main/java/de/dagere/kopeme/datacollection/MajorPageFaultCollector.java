@@ -0,0 +1,15 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the major page faults of the measuring thread during a test, i.e. page faults that needed to load the page from disk.
+ *
+ * @author reichelt
+ *
+ */
+public final class MajorPageFaultCollector extends ProcThreadCollector {
+
+   @Override
+   protected long read(final ProcThreadStatReader threadReader) {
+      return threadReader.readStatField(ProcThreadStatReader.STAT_MAJOR_FAULTS);
+   }
+}
@@ -0,0 +1,15 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the minor page faults of the measuring thread during a test, i.e. page faults that needed no disk access.
+ *
+ * @author reichelt
+ *
+ */
+public final class MinorPageFaultCollector extends ProcThreadCollector {
+
+   @Override
+   protected long read(final ProcThreadStatReader threadReader) {
+      return threadReader.readStatField(ProcThreadStatReader.STAT_MINOR_FAULTS);
+   }
+}
@@ -0,0 +1,51 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * Super class of the collectors reading statistics of the measuring thread from <code>/proc/thread-self</code> (see {@link ProcThreadStatReader}). Sampling
+ * allocates nothing. On systems without <code>/proc/thread-self</code>, e.g. Windows or Mac, the value is -1.
+ *
+ * @author reichelt
+ *
+ */
+abstract class ProcThreadCollector extends DataCollector {
+
+   private Thread owner;
+   private ProcThreadStatReader reader;
+   private long start, stop;
+
+   @Override
+   public int getPriority() {
+      return BEFORE_TIME_COLLECTOR_PRIORITY;
+   }
+
+   @Override
+   public void startCollection() {
+      start = read();
+   }
+
+   @Override
+   public void stopCollection() {
+      stop = read();
+   }
+
+   private long read() {
+      if (owner != Thread.currentThread()) {
+         owner = Thread.currentThread();
+         reader = ProcThreadStatReader.forCurrentThread();
+      }
+      return reader != null ? read(reader) : -1;
+   }
+
+   /**
+    * Reads the current value of the statistic.
+    *
+    * @param threadReader Reader of the current thread
+    * @return Value, or -1 if it can not be read
+    */
+   protected abstract long read(ProcThreadStatReader threadReader);
+
+   @Override
+   public long getValue() {
+      return start != -1 && stop != -1 ? stop - start : -1;
+   }
+}
@@ -0,0 +1,216 @@
+package de.dagere.kopeme.datacollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads the scheduler and page fault statistics of one thread from <code>/proc/thread-self</code> (Linux 3.17 or newer). The files are opened once by the
+ * thread itself, since <code>/proc/thread-self</code> is resolved when opening, and re-read by positional reads into one reused buffer, so sampling allocates
+ * nothing. Readers of terminated threads are closed when a reader for another thread is created.
+ *
+ * @author reichelt
+ *
+ */
+final class ProcThreadStatReader {
+
+   private static final Logger LOG = LogManager.getLogger(ProcThreadStatReader.class);
+
+   private static final File THREAD_SELF = new File("/proc/thread-self");
+   private static final int BUFFER_SIZE = 8192;
+
+   static final byte[] VOLUNTARY_CTXT_SWITCHES = "voluntary_ctxt_switches:".getBytes(StandardCharsets.US_ASCII);
+   static final byte[] NONVOLUNTARY_CTXT_SWITCHES = "nonvoluntary_ctxt_switches:".getBytes(StandardCharsets.US_ASCII);
+
+   /**
+    * Index of the minor faults in <code>stat</code>, counted from the state field after the command name
+    */
+   static final int STAT_MINOR_FAULTS = 7;
+   /**
+    * Index of the major faults in <code>stat</code>, counted from the state field after the command name
+    */
+   static final int STAT_MAJOR_FAULTS = 9;
+   /**
+    * Index of the nanoseconds spent waiting on the run queue in <code>schedstat</code>
+    */
+   static final int SCHEDSTAT_RUN_QUEUE_WAIT = 1;
+
+   private static final Map<Thread, ProcThreadStatReader> READERS = new HashMap<>();
+
+   private final FileChannel stat;
+   private final FileChannel status;
+   private final FileChannel schedstat;
+   private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+   private ProcThreadStatReader() throws IOException {
+      stat = open("stat");
+      status = open("status");
+      schedstat = open("schedstat");
+   }
+
+   private static FileChannel open(final String name) throws IOException {
+      final File file = new File(THREAD_SELF, name);
+      return file.canRead() ? FileChannel.open(file.toPath()) : null;
+   }
+
+   /**
+    * Returns the reader of the current thread, opening its files on the first call.
+    *
+    * @return The reader, or null if <code>/proc/thread-self</code> is not available, e.g. since the system is no Linux
+    */
+   static synchronized ProcThreadStatReader forCurrentThread() {
+      final Thread thread = Thread.currentThread();
+      ProcThreadStatReader reader = READERS.get(thread);
+      if (reader == null && THREAD_SELF.isDirectory()) {
+         closeTerminated();
+         try {
+            reader = new ProcThreadStatReader();
+            READERS.put(thread, reader);
+         } catch (final IOException e) {
+            LOG.warn("Could not open {}: {}", THREAD_SELF, e.getMessage());
+         }
+      }
+      return reader;
+   }
+
+   private static void closeTerminated() {
+      for (final Iterator<Map.Entry<Thread, ProcThreadStatReader>> iterator = READERS.entrySet().iterator(); iterator.hasNext();) {
+         final Map.Entry<Thread, ProcThreadStatReader> entry = iterator.next();
+         if (!entry.getKey().isAlive()) {
+            entry.getValue().close();
+            iterator.remove();
+         }
+      }
+   }
+
+   private void close() {
+      for (final FileChannel channel : new FileChannel[] { stat, status, schedstat }) {
+         if (channel != null) {
+            try {
+               channel.close();
+            } catch (final IOException e) {
+               e.printStackTrace();
+            }
+         }
+      }
+   }
+
+   /**
+    * Reads a field of <code>stat</code>; the fields are counted from the state, since the command name before may contain spaces.
+    *
+    * @param index Index of the field after the command name
+    * @return Value of the field, or -1 if it can not be read
+    */
+   long readStatField(final int index) {
+      if (!read(stat)) {
+         return -1;
+      }
+      int position = buffer.limit() - 1;
+      while (position >= 0 && buffer.get(position) != ')') {
+         position--;
+      }
+      return position >= 0 ? readField(position + 1, index) : -1;
+   }
+
+   /**
+    * Reads the value of a line of <code>status</code>.
+    *
+    * @param key Start of the line, including the colon
+    * @return Value of the line, or -1 if it can not be read
+    */
+   long readStatusValue(final byte[] key) {
+      if (!read(status)) {
+         return -1;
+      }
+      int lineStart = 0;
+      while (lineStart < buffer.limit()) {
+         if (startsWith(lineStart, key)) {
+            return readField(lineStart + key.length, 0);
+         }
+         while (lineStart < buffer.limit() && buffer.get(lineStart) != '\n') {
+            lineStart++;
+         }
+         lineStart++;
+      }
+      return -1;
+   }
+
+   /**
+    * Reads a field of <code>schedstat</code>.
+    *
+    * @param index Index of the field
+    * @return Value of the field, or -1 if it can not be read
+    */
+   long readSchedstatField(final int index) {
+      return read(schedstat) ? readField(0, index) : -1;
+   }
+
+   private boolean read(final FileChannel channel) {
+      if (channel == null) {
+         return false;
+      }
+      buffer.clear();
+      try {
+         // The buffer position equals the count of bytes read, i.e. the file position to continue with
+         while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Read until the end of the file
+         }
+      } catch (final IOException e) {
+         return false;
+      }
+      buffer.flip();
+      return true;
+   }
+
+   private boolean startsWith(final int position, final byte[] key) {
+      if (position + key.length > buffer.limit()) {
+         return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+         if (buffer.get(position + i) != key[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Parses the number of the whitespace separated field with the given index, counted from the position.
+    */
+   private long readField(final int start, final int index) {
+      int position = start;
+      int field = -1;
+      boolean inField = false;
+      while (position < buffer.limit()) {
+         final byte current = buffer.get(position);
+         final boolean whitespace = current == ' ' || current == '\t' || current == '\n';
+         if (!whitespace && !inField) {
+            field++;
+            if (field == index) {
+               return parseNumber(position);
+            }
+         }
+         inField = !whitespace;
+         position++;
+      }
+      return -1;
+   }
+
+   private long parseNumber(final int start) {
+      long value = 0;
+      int position = start;
+      while (position < buffer.limit() && buffer.get(position) >= '0' && buffer.get(position) <= '9') {
+         value = value * 10 + (buffer.get(position) - '0');
+         position++;
+      }
+      return position > start ? value : -1;
+   }
+}
@@ -0,0 +1,15 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the nanoseconds the measuring thread waited on a run queue of the scheduler during a test, i.e. was runnable but not running.
+ *
+ * @author reichelt
+ *
+ */
+public final class RunQueueWaitCollector extends ProcThreadCollector {
+
+   @Override
+   protected long read(final ProcThreadStatReader threadReader) {
+      return threadReader.readSchedstatField(ProcThreadStatReader.SCHEDSTAT_RUN_QUEUE_WAIT);
+   }
+}
@@ -3,6 +3,7 @@ package de.dagere.kopeme.datacollection;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -17,11 +18,14 @@ import org.hamcrest.Matchers;
 import org.junit.Assert;
 
 import de.dagere.kopeme.Checker;
+import de.dagere.kopeme.datacollection.tempfile.AsyncResultTempWriter;
 import de.dagere.kopeme.datacollection.tempfile.ResultTempWriter;
+import de.dagere.kopeme.datacollection.tempfile.WarmupCurve;
+import de.dagere.kopeme.datacollection.tempfile.WarmupResultTempWriter;
 import de.dagere.kopeme.datacollection.tempfile.WrittenResultReader;
 import de.dagere.kopeme.generated.Result.Fulldata;
-import de.dagere.kopeme.generated.Result.Fulldata.Value;
 import de.dagere.kopeme.generated.Result.Params;
+import de.dagere.kopeme.jfr.KoPeMeFlightRecording;
 
 /**
  * Saves the Data Collectors, and therefore has access to the current results of the tests. Furthermore, by invoking stopCollection, the historical values are inserted into the
@@ -43,18 +47,38 @@ public final class TestResult {
    private int iterations;
    private final DataCollector[] sortedCollectors;
    private final Params params;
+   private WarmupCurve warmupCurve;
+   private final DataCollector[] compilationCollectors;
+   private final BitSet compiledExecutions = new BitSet();
+   private int flaggedExecutions;
+   private SummaryStatistics[] steadyStateSummaries;
+   private boolean recordFlight;
+   private KoPeMeFlightRecording flightRecording;
 
    /**
     * Initializes the TestResult with a Testcase-Name and the executionTimes.
     * 
     * @param methodName Name of the Testcase
     * @param iterations Count of the planned executions
+    * @param collectors Collectors that should be measured
+    * @param warmup Whether the executions are a warmup; only executions that are no warmup are recorded by {@link KoPeMeFlightRecording}
     */
    public TestResult(final String methodName, final int iterations, final DataCollectorList collectors, final boolean warmup) {
       this(methodName, iterations, collectors, warmup, null);
    }
    
    public TestResult(final String methodName, final int iterations, final DataCollectorList collectors, final boolean warmup, final Params params) {
+      this(methodName, iterations, collectors, params, null);
+      recordFlight = !warmup;
+      try {
+         writer = ResultTempWriter.create(warmup, iterations);
+         writer.setDataCollectors(sortedCollectors);
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   private TestResult(final String methodName, final int iterations, final DataCollectorList collectors, final Params params, final ResultTempWriter writer) {
       this.methodName = methodName;
       this.iterations = iterations;
 
@@ -67,16 +91,38 @@ public final class TestResult {
          }
       };
       Arrays.sort(sortedCollectors, comparator);  
+      final List<DataCollector> compilation = new ArrayList<>();
+      for (final DataCollector dc : sortedCollectors) {
+         if (dc instanceof CompilationTimeCollector || dc instanceof CompilationCountCollector) {
+            compilation.add(dc);
+         }
+      }
+      compilationCollectors = compilation.toArray(new DataCollector[0]);
+      if (compilationCollectors.length > 0) {
+         steadyStateSummaries = new SummaryStatistics[sortedCollectors.length];
+         for (int i = 0; i < sortedCollectors.length; i++) {
+            steadyStateSummaries[i] = new SummaryStatistics();
+         }
+      }
       this.params = params;
-      
-      try {
-         writer = new ResultTempWriter(warmup);
+      if (writer != null) {
+         this.writer = writer;
          writer.setDataCollectors(sortedCollectors);
-         reader = new WrittenResultReader(writer.getTempFile());
-      } catch (IOException e) {
-         e.printStackTrace();
       }
    }
+
+   /**
+    * Creates a result for warmup iterations, which writes no values but only keeps the {@link WarmupCurve}, which is available after
+    * {@link #finalizeCollection()}. Reading values of the result is possible, but they are always empty.
+    * 
+    * @param methodName Name of the Testcase
+    * @param iterations Count of the planned warmup executions
+    * @param collectors Collectors that should be measured
+    * @return Result for the warmup
+    */
+   public static TestResult createWarmupResult(final String methodName, final int iterations, final DataCollectorList collectors) {
+      return new TestResult(methodName, iterations, collectors, null, new WarmupResultTempWriter(iterations));
+   }
    
    public Params getParams() {
       return params;
@@ -141,8 +187,24 @@ public final class TestResult {
       LOG.debug("All measurements fine.");
    }
 
+   /**
+    * Called once before the measured executions; for a result that is no warmup, this starts the flight recording, so starting the recorder is not measured
+    * by the first executions.
+    */
    public void beforeRun() {
+      if (recordFlight) {
+         recordFlight = false;
+         flightRecording = KoPeMeFlightRecording.start();
+      }
+   }
 
+   /**
+    * Called once after the measured executions; this stops the flight recording, so the work after the executions is not recorded.
+    */
+   public void afterRun() {
+      if (flightRecording != null) {
+         flightRecording.stop();
+      }
    }
 
    /**
@@ -164,11 +226,33 @@ public final class TestResult {
     * over self-defined values and historical data is not possible. For this, call finalizeCollection.
     */
    public void stopCollection() {
-      // final Map<String, Long> runData = new HashMap<>();
-      for (final DataCollector dc : sortedCollectors) {
-         dc.stopCollection();
+      // Stopped in reverse order of starting, so the collectors started last (like the time collectors) do not measure the stopping of the other collectors
+      for (int i = sortedCollectors.length - 1; i >= 0; i--) {
+         sortedCollectors[i].stopCollection();
       }
       writer.writeValues(sortedCollectors);
+      if (compilationCollectors.length > 0) {
+         flagCompilation();
+      }
+   }
+
+   /**
+    * Flags the execution if JIT compilation happened during it and otherwise adds its values to the steady state statistics; this is done while measuring,
+    * since the values are not kept if they are read streaming.
+    */
+   private void flagCompilation() {
+      boolean compiled = false;
+      for (final DataCollector dc : compilationCollectors) {
+         compiled |= dc.getValue() > 0;
+      }
+      if (compiled) {
+         compiledExecutions.set(flaggedExecutions);
+      } else {
+         for (int i = 0; i < sortedCollectors.length; i++) {
+            steadyStateSummaries[i].addValue(sortedCollectors[i].getValue());
+         }
+      }
+      flaggedExecutions++;
    }
 
    /**
@@ -180,7 +264,12 @@ public final class TestResult {
    }
 
    public void finalizeCollection(final Throwable thrownException) {
+      afterRun();
       writer.finalizeCollection();
+      if (writer instanceof WarmupResultTempWriter) {
+         warmupCurve = ((WarmupResultTempWriter) writer).getWarmupCurve();
+      }
+      reader = writer.createReader();
       if (iterations < BOUNDARY_SAVE_FILE) {
          reader.read(thrownException, getDatacollectors());
          reader.deleteTempFile();
@@ -189,6 +278,64 @@ public final class TestResult {
       }
    }
 
+   /**
+    * Returns the flight recording of the executions, which is started by {@link #beforeRun()} of a result that is no warmup and stopped by
+    * {@link #afterRun()}.
+    * 
+    * @return The recording, or null if recording is not enabled, see {@link KoPeMeFlightRecording#RECORDING_PROPERTY}
+    */
+   public KoPeMeFlightRecording getFlightRecording() {
+      return flightRecording;
+   }
+
+   /**
+    * Returns how often the measurement had to wait for writing the values to the temporary file, see {@link AsyncResultTempWriter}.
+    * 
+    * @return Count of producer stalls
+    */
+   public long getProducerStalls() {
+      return writer.getProducerStalls();
+   }
+
+   /**
+    * Returns for every execution whether JIT compilation happened during it, according to the {@link CompilationTimeCollector} and the
+    * {@link CompilationCountCollector}.
+    * 
+    * @return Flags of the executions, or null if no compilation collector was used
+    */
+   public boolean[] getCompilationFlags() {
+      if (compilationCollectors.length == 0) {
+         return null;
+      }
+      final boolean[] flags = new boolean[flaggedExecutions];
+      for (int i = 0; i < flaggedExecutions; i++) {
+         flags[i] = compiledExecutions.get(i);
+      }
+      return flags;
+   }
+
+   /**
+    * Returns the statistics of the values of the collector, optionally only of the executions without JIT compilation (see {@link #getCompilationFlags()}).
+    * 
+    * @param key Name of the performance measure
+    * @param withoutCompilation Whether executions with JIT compilation should be left out
+    * @return Statistics of the values, or null if executions without compilation are requested but no compilation collector was used
+    */
+   public SummaryStatistics getCollectorSummary(final String key, final boolean withoutCompilation) {
+      if (!withoutCompilation) {
+         return reader.getCollectorSummary(key);
+      }
+      if (compilationCollectors.length == 0) {
+         return null;
+      }
+      for (int i = 0; i < sortedCollectors.length; i++) {
+         if (sortedCollectors[i].getName().equals(key)) {
+            return steadyStateSummaries[i];
+         }
+      }
+      return null;
+   }
+
    /**
     * Gets the current value of the measurement.
     * 
@@ -224,16 +371,23 @@ public final class TestResult {
       return reader.getCollectorSummary(key).getMax();
    }
 
+   /**
+    * Gets a percentile of the measured values; for runs with at least {@value #BOUNDARY_SAVE_FILE} iterations, it is estimated with a relative error below 0.5 %.
+    * 
+    * @param key Name of the performance measure
+    * @param percentile Percentage greater than 0 and at most 100
+    * @return Percentile of the currently measured values
+    */
+   public double getPercentile(final String key, final double percentile) {
+      return reader.getPercentile(key, percentile);
+   }
+
    public Fulldata getFulldata(final String key) {
-      final Fulldata fd = new Fulldata();
+      final Fulldata fd;
       if (iterations < BOUNDARY_SAVE_FILE) {
-         for (int i = 0; i < reader.getRealValues().size(); i++) {
-            final Value v = new Value();
-            v.setStart(reader.getExecutionStartTimes().get(i));
-            v.setValue(reader.getRealValues().get(i).get(key));
-            fd.getValue().add(v);
-         }
+         fd = reader.createFulldata(0, key);
       } else {
+         fd = new Fulldata();
          fd.setFileName(writer.getTempFile().getAbsolutePath());
       }
 
@@ -244,26 +398,18 @@ public final class TestResult {
       reader.clear(key);
    }
 
-   public List<Long> getValues(final String key) {
-      List<Long> currentValues = new ArrayList<>();
-      for (int i = 0; i < reader.getRealValues().size(); i++) {
-         currentValues.add(reader.getRealValues().get(i).get(key));
-      }
-      return currentValues;
+   /**
+    * Returns the values of the given collector; the array is a view on the read values, so it should not be changed.
+    * 
+    * @param key Name of the collector
+    * @return Values of the collector
+    */
+   public long[] getValues(final String key) {
+      return reader.getValues(key);
    }
 
-   public void setValues(final String key, final List<Long> currentValues) {
-      if (currentValues.size() > reader.getRealValues().size()) {
-         throw new RuntimeException("Internal Error: Count of new values should not exceed count of executions");
-      }
-      for (int i = 0; i < reader.getRealValues().size(); i++) {
-         final Map<String, Long> currentEntry = reader.getRealValues().get(i);
-         if (currentValues.size() > i) {
-            currentEntry.put(key, currentValues.get(i));
-         } else {
-            currentEntry.remove(i);
-         }
-      }
+   public void setValues(final String key, final long[] currentValues) {
+      reader.setValues(key, currentValues);
    }
 
    /**
@@ -293,9 +439,23 @@ public final class TestResult {
       return collectorSummary.getStandardDeviation() / collectorSummary.getMean();
    }
 
+   /**
+    * Returns the warmup curve, i.e. the curve of this result if it was created by {@link #createWarmupResult(String, int, DataCollectorList)}, or the curve of the
+    * warmup that preceded this result.
+    * 
+    * @return The warmup curve, or null if it is not known
+    */
+   public WarmupCurve getWarmupCurve() {
+      return warmupCurve;
+   }
+
+   public void setWarmupCurve(final WarmupCurve warmupCurve) {
+      this.warmupCurve = warmupCurve;
+   }
+
    public void deleteTempFile() {
       writer.finalizeCollection();
-      reader.deleteTempFile();
+      writer.deleteTempFile();
    }
 
 }
@@ -0,0 +1,19 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the bytes allocated by all threads of the thread group of the measuring thread during a test, e.g. the experiment thread group of
+ * {@link de.dagere.kopeme.TimeBoundExecution}, so allocations of threads started by the test are included. Threads that terminate before the collection is
+ * stopped are not counted, and the bytes allocated by enumerating the threads of the group are contained in the value.
+ *
+ * @author reichelt
+ *
+ */
+public final class ThreadGroupAllocatedBytesCollector extends AllocatedBytesCollector {
+
+   /**
+    * Initializes the collector.
+    */
+   public ThreadGroupAllocatedBytesCollector() {
+      super(true);
+   }
+}
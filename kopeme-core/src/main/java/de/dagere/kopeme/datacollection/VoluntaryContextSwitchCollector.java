@@ -0,0 +1,15 @@
+package de.dagere.kopeme.datacollection;
+
+/**
+ * A collector for the voluntary context switches of the measuring thread during a test, e.g. caused by waiting for I/O or locks.
+ *
+ * @author reichelt
+ *
+ */
+public final class VoluntaryContextSwitchCollector extends ProcThreadCollector {
+
+   @Override
+   protected long read(final ProcThreadStatReader threadReader) {
+      return threadReader.readStatusValue(ProcThreadStatReader.VOLUNTARY_CTXT_SWITCHES);
+   }
+}
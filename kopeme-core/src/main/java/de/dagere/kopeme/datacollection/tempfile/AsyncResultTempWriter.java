@@ -0,0 +1,205 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+import de.dagere.kopeme.datacollection.TestResult;
+
+/**
+ * Writes the values in the format of {@link BinaryTempFileFormat}, but without any file access on the measurement thread: The measurement thread only copies
+ * the values into a preallocated single-producer/single-consumer ring of records, and a low priority background thread drains the ring to the file. The
+ * background thread parks without timeout until half of the ring is filled or the writer is finalized, so it does not wake up during the measurement of
+ * most executions.
+ *
+ * If the ring is full, the measurement thread needs to wait for the background thread; these producer stalls are counted, so the ring size (system property
+ * {@value #RING_SIZE_PROPERTY}) can be adapted; they are available by {@link TestResult#getProducerStalls()}.
+ *
+ * @author reichelt
+ *
+ */
+public class AsyncResultTempWriter extends ResultTempWriter {
+
+   private static final Logger LOG = LogManager.getLogger(AsyncResultTempWriter.class);
+
+   /**
+    * VM property name for the count of records the ring can hold.
+    */
+   public static final String RING_SIZE_PROPERTY = "kopeme.tempfile.ringSize";
+   public static final int DEFAULT_RING_SIZE = 4096;
+
+   private final FileChannel channel;
+   private final int ringRecords;
+   private final int wakeupRecords;
+   private final AtomicLong published = new AtomicLong();
+   private final AtomicLong consumed = new AtomicLong();
+   private volatile boolean finished = false;
+   private volatile boolean drainParked = false;
+   private long producerStalls = 0;
+   private boolean startPending = false;
+
+   private BinaryTempFileFormat format;
+   private int recordLongs;
+   private long[] ring;
+   private Thread drainThread;
+   private IOException drainException;
+
+   public AsyncResultTempWriter(final boolean warmup) throws IOException {
+      this(warmup, Integer.getInteger(RING_SIZE_PROPERTY, DEFAULT_RING_SIZE));
+   }
+
+   public AsyncResultTempWriter(final boolean warmup, final int ringRecords) throws IOException {
+      super(warmup);
+      if (ringRecords < 1) {
+         throw new IllegalArgumentException("Ring needs to hold at least one record, but size was " + ringRecords);
+      }
+      this.ringRecords = ringRecords;
+      wakeupRecords = Math.max(1, ringRecords / 2);
+      channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+   }
+
+   @Override
+   public void setDataCollectors(final DataCollector collectors[]) {
+      final String[] names = new String[collectors.length];
+      for (int index = 0; index < collectors.length; index++) {
+         names[index] = collectors[index].getName();
+      }
+      format = new BinaryTempFileFormat(names);
+      recordLongs = format.getRecordLongs();
+      ring = new long[ringRecords * recordLongs];
+
+      drainThread = new Thread(this::drain, "kopeme-tempfile-writer");
+      drainThread.setDaemon(true);
+      drainThread.setPriority(Thread.MIN_PRIORITY);
+      drainThread.start();
+   }
+
+   @Override
+   public final void executionStart(final long currentTimeMillis) {
+      final long record = published.get();
+      if (record - consumed.get() == ringRecords) {
+         producerStalls++;
+         LockSupport.unpark(drainThread);
+         while (record - consumed.get() == ringRecords) {
+            Thread.yield();
+         }
+      }
+      ring[(int) (record % ringRecords) * recordLongs] = currentTimeMillis;
+      startPending = true;
+   }
+
+   @Override
+   public final void writeValues(final DataCollector collectors[]) {
+      final long record = published.get();
+      final int offset = (int) (record % ringRecords) * recordLongs + 1;
+      for (int index = 0; index < collectors.length; index++) {
+         ring[offset + index] = collectors[index].getValue();
+      }
+      startPending = false;
+      // A volatile write, so either the producer sees the parked drain thread or the drain thread sees the new record before parking
+      published.set(record + 1);
+      if (drainParked && record + 1 - consumed.get() >= wakeupRecords) {
+         LockSupport.unpark(drainThread);
+      }
+   }
+
+   /**
+    * Writes all published records to the file, until the writer is finalized and the ring is empty. If less than {@link #wakeupRecords} records are
+    * published, the thread parks until the producer or {@link #finalizeCollection()} unparks it.
+    */
+   private void drain() {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(ringRecords * format.getRecordSize());
+      final LongBuffer longBuffer = buffer.asLongBuffer();
+      try {
+         format.writeHeader(channel);
+      } catch (IOException e) {
+         drainException = e;
+      }
+      while (true) {
+         final boolean lastRound = finished;
+         final long start = consumed.get();
+         final long end = published.get();
+         if (start == end && lastRound) {
+            break;
+         } else if (end - start < wakeupRecords && !lastRound) {
+            drainParked = true;
+            if (published.get() - start < wakeupRecords && !finished) {
+               LockSupport.park(this);
+            }
+            drainParked = false;
+         } else {
+            final int firstSlot = (int) (start % ringRecords);
+            final int records = (int) Math.min(end - start, ringRecords - firstSlot);
+            longBuffer.clear();
+            longBuffer.put(ring, firstSlot * recordLongs, records * recordLongs);
+            buffer.clear();
+            buffer.limit(records * format.getRecordSize());
+            write(buffer);
+            consumed.lazySet(start + records);
+         }
+      }
+   }
+
+   private void write(final ByteBuffer buffer) {
+      if (drainException == null) {
+         try {
+            while (buffer.hasRemaining()) {
+               channel.write(buffer);
+            }
+         } catch (IOException e) {
+            drainException = e;
+         }
+      }
+   }
+
+   /**
+    * Returns how often the measurement thread had to wait, because the ring was full.
+    *
+    * @return Count of producer stalls
+    */
+   @Override
+   public long getProducerStalls() {
+      return producerStalls;
+   }
+
+   @Override
+   public final void finalizeCollection() {
+      if (channel.isOpen()) {
+         if (drainThread != null) {
+            finished = true;
+            LockSupport.unpark(drainThread);
+            try {
+               drainThread.join();
+            } catch (InterruptedException e) {
+               e.printStackTrace();
+            }
+            if (startPending) {
+               final ByteBuffer start = ByteBuffer.allocate(Long.BYTES);
+               start.putLong(ring[(int) (published.get() % ringRecords) * recordLongs]);
+               start.flip();
+               write(start);
+            }
+         }
+         if (drainException != null) {
+            drainException.printStackTrace();
+         }
+         if (producerStalls > 0) {
+            LOG.warn("Measurement waited {} times for writing of {}; consider increasing {}", producerStalls, tempFile.getAbsolutePath(), RING_SIZE_PROPERTY);
+         }
+         try {
+            channel.close();
+            LOG.info("Flushing to " + tempFile.getAbsolutePath() + " finished");
+         } catch (IOException e) {
+            e.printStackTrace();
+         }
+      }
+   }
+}
@@ -0,0 +1,92 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+
+/**
+ * Writes the values in the fixed-width format described in {@link BinaryTempFileFormat}. Values are collected in a direct buffer, which is only written to the
+ * channel when it can not hold another record, so no encoding and no allocation happens per iteration.
+ *
+ * @author reichelt
+ *
+ */
+public class BinaryResultTempWriter extends ResultTempWriter {
+
+   private static final Logger LOG = LogManager.getLogger(BinaryResultTempWriter.class);
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final FileChannel channel;
+   private ByteBuffer buffer;
+   private int recordSize;
+
+   public BinaryResultTempWriter(final boolean warmup) throws IOException {
+      super(warmup);
+      channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+   }
+
+   @Override
+   public void setDataCollectors(final DataCollector collectors[]) {
+      final String[] names = new String[collectors.length];
+      for (int index = 0; index < collectors.length; index++) {
+         names[index] = collectors[index].getName();
+      }
+      final BinaryTempFileFormat format = new BinaryTempFileFormat(names);
+      recordSize = format.getRecordSize();
+      buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_SIZE / recordSize) * recordSize);
+      try {
+         format.writeHeader(channel);
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   @Override
+   public final void executionStart(final long currentTimeMillis) {
+      if (buffer.remaining() < recordSize) {
+         flush();
+      }
+      buffer.putLong(currentTimeMillis);
+   }
+
+   @Override
+   public final void writeValues(final DataCollector collectors[]) {
+      for (int index = 0; index < collectors.length; index++) {
+         buffer.putLong(collectors[index].getValue());
+      }
+   }
+
+   private void flush() {
+      buffer.flip();
+      try {
+         while (buffer.hasRemaining()) {
+            channel.write(buffer);
+         }
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+      buffer.clear();
+   }
+
+   @Override
+   public final void finalizeCollection() {
+      if (channel.isOpen()) {
+         if (buffer != null) {
+            flush();
+         }
+         try {
+            channel.close();
+            LOG.info("Flushing to " + tempFile.getAbsolutePath() + " finished");
+         } catch (IOException e) {
+            e.printStackTrace();
+         }
+      }
+   }
+}
@@ -0,0 +1,183 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Describes the binary temporary result format: A header containing the collector names, followed by one fixed-width record per iteration, consisting of the start
+ * timestamp and one long per collector (in the order of the header). All numbers are written big-endian, so files can be read on every machine.
+ *
+ * Header layout: magic (int), version (int), header length in bytes (int), collector count (int), and for every collector the length of its UTF-8 name (short)
+ * followed by the name. The header is padded to a multiple of 8 bytes.
+ *
+ * @author reichelt
+ *
+ */
+public final class BinaryTempFileFormat {
+
+   /**
+    * Magic number of binary files; the first byte is 0, which never occurs at the start of a text temp file.
+    */
+   public static final int MAGIC = 0x004B504D;
+   public static final int VERSION = 1;
+
+   private static final int FIXED_HEADER_LENGTH = 16;
+   private static final int ALIGNMENT = Long.BYTES;
+
+   private final String[] collectorNames;
+   private final int headerLength;
+
+   public BinaryTempFileFormat(final String[] collectorNames) {
+      this.collectorNames = collectorNames;
+      int length = FIXED_HEADER_LENGTH;
+      for (String name : collectorNames) {
+         length += Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+      }
+      this.headerLength = ((length + ALIGNMENT - 1) / ALIGNMENT) * ALIGNMENT;
+   }
+
+   private BinaryTempFileFormat(final String[] collectorNames, final int headerLength) {
+      this.collectorNames = collectorNames;
+      this.headerLength = headerLength;
+   }
+
+   public String[] getCollectorNames() {
+      return collectorNames;
+   }
+
+   public int getHeaderLength() {
+      return headerLength;
+   }
+
+   /**
+    * Returns the count of longs of one record, i.e. start time and one value per collector.
+    *
+    * @return Longs per record
+    */
+   public int getRecordLongs() {
+      return collectorNames.length + 1;
+   }
+
+   public int getRecordSize() {
+      return getRecordLongs() * Long.BYTES;
+   }
+
+   /**
+    * Writes the header to the current position of the channel.
+    *
+    * @param channel Channel that should be written to
+    * @throws IOException Thrown if writing fails
+    */
+   public void writeHeader(final FileChannel channel) throws IOException {
+      final ByteBuffer header = ByteBuffer.allocate(headerLength);
+      writeHeader(header);
+      header.flip();
+      while (header.hasRemaining()) {
+         channel.write(header);
+      }
+   }
+
+   /**
+    * Writes the header to the current position of the buffer.
+    *
+    * @param buffer Buffer that should be written to
+    */
+   public void writeHeader(final ByteBuffer buffer) {
+      final int start = buffer.position();
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(headerLength);
+      buffer.putInt(collectorNames.length);
+      for (String name : collectorNames) {
+         byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+         buffer.putShort((short) nameBytes.length);
+         buffer.put(nameBytes);
+      }
+      while (buffer.position() < start + headerLength) {
+         buffer.put((byte) 0);
+      }
+   }
+
+   /**
+    * Reads the header from the start of the channel and leaves the channel positioned at the first record.
+    *
+    * @param channel Channel of a binary temp file
+    * @return The format of the file
+    * @throws IOException Thrown if reading fails or the file is no binary temp file
+    */
+   public static BinaryTempFileFormat readHeader(final FileChannel channel) throws IOException {
+      channel.position(0);
+      final ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_LENGTH);
+      readFully(channel, fixed);
+      if (fixed.remaining() < FIXED_HEADER_LENGTH) {
+         throw new IOException("File is no binary KoPeMe temp file");
+      }
+      final int headerLength = fixed.getInt(2 * Integer.BYTES);
+      final ByteBuffer header = ByteBuffer.allocate(Math.max(headerLength, FIXED_HEADER_LENGTH));
+      header.put(fixed);
+      readFully(channel, header);
+      return readHeader(header);
+   }
+
+   /**
+    * Reads the header from the current position of the buffer and leaves the buffer positioned at the first record.
+    *
+    * @param buffer Buffer containing a binary temp file
+    * @return The format of the file
+    * @throws IOException Thrown if the buffer contains no binary temp file
+    */
+   public static BinaryTempFileFormat readHeader(final ByteBuffer buffer) throws IOException {
+      final int start = buffer.position();
+      if (buffer.remaining() < FIXED_HEADER_LENGTH || buffer.getInt() != MAGIC) {
+         throw new IOException("File is no binary KoPeMe temp file");
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+         throw new IOException("Unsupported binary temp file version: " + version);
+      }
+      final int headerLength = buffer.getInt();
+      final int collectorCount = buffer.getInt();
+      final String[] collectorNames = new String[collectorCount];
+      for (int i = 0; i < collectorCount; i++) {
+         final byte[] nameBytes = new byte[buffer.getShort()];
+         buffer.get(nameBytes);
+         collectorNames[i] = new String(nameBytes, StandardCharsets.UTF_8);
+      }
+      buffer.position(start + headerLength);
+      return new BinaryTempFileFormat(collectorNames, headerLength);
+   }
+
+   /**
+    * Reads from the channel until the buffer is full or the end of the channel is reached; afterwards, the buffer is flipped.
+    *
+    * @param channel Channel to read from
+    * @param buffer Buffer to fill
+    * @throws IOException Thrown if reading fails
+    */
+   static void readFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+         // read until buffer is full
+      }
+      buffer.flip();
+   }
+
+   /**
+    * Checks whether the given file starts with the binary magic number.
+    *
+    * @param file File that should be checked
+    * @return Whether the file is in binary format
+    */
+   public static boolean isBinary(final File file) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+         readFully(channel, magic);
+         return magic.remaining() == Integer.BYTES && magic.getInt() == MAGIC;
+      } catch (IOException e) {
+         return false;
+      }
+   }
+}
@@ -0,0 +1,382 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact encoding of fulldata files: The values are saved column-wise, i.e. first all execution start times and afterwards all values of every collector. Start
+ * times are delta-encoded, and all numbers are written as zig-zag encoded variable-length longs, so small numbers only need one or two bytes. Optionally, the
+ * columns are compressed by a {@link java.util.zip.Deflater} stream.
+ *
+ * Layout: magic (int), version (int), flags (byte), followed by the (optionally deflated) body: collector count, for every collector the length of its UTF-8 name
+ * and the name, count of records, count of start times (which is one more than the count of records if the last execution did not finish), the start times and
+ * the values of every collector.
+ *
+ * Since version 2, files that are not deflated end with a sparse index, so readers like the {@link MappedFulldataReader} can start reading at every
+ * {@value #INDEX_INTERVAL}th record: index interval (int), column count (int), entry count (int), the file offset of every entry for every column (long, start
+ * times first), the start time preceding every entry (long), and finally the file offset of the index (long).
+ *
+ * @author reichelt
+ *
+ */
+public final class CompactFulldataFormat {
+
+   /**
+    * VM property name for the encoding of saved fulldata files; possible values are <code>compact</code> (default), <code>deflate</code> and <code>raw</code>,
+    * which keeps the temp file as it is.
+    */
+   public static final String ENCODING_PROPERTY = "kopeme.fulldata.encoding";
+
+   /**
+    * Magic number of compact files; like {@link BinaryTempFileFormat#MAGIC}, the first byte is 0.
+    */
+   public static final int MAGIC = 0x004B5043;
+   public static final int VERSION = 2;
+
+   /**
+    * Oldest version that can be read; files of version 1 have no index.
+    */
+   static final int MIN_VERSION = 1;
+
+   static final int FIXED_HEADER_LENGTH = 9;
+   static final byte FLAG_DEFLATE = 1;
+   static final byte FLAG_INDEXED = 2;
+   static final int INDEX_INTERVAL = 1024;
+   private static final int RECORDS_PER_READ = 8 * 1024;
+
+   private final String[] collectorNames;
+   private final long[] executionStartTimes;
+   private final long[][] values;
+
+   private CompactFulldataFormat(final String[] collectorNames, final long[] executionStartTimes, final long[][] values) {
+      this.collectorNames = collectorNames;
+      this.executionStartTimes = executionStartTimes;
+      this.values = values;
+   }
+
+   public String[] getCollectorNames() {
+      return collectorNames;
+   }
+
+   public long[] getExecutionStartTimes() {
+      return executionStartTimes;
+   }
+
+   /**
+    * Returns the values of the collector with the given index in {@link #getCollectorNames()}.
+    *
+    * @param collectorIndex Index of the collector
+    * @return Values of the collector
+    */
+   public long[] getValues(final int collectorIndex) {
+      return values[collectorIndex];
+   }
+
+   /**
+    * Saves the temp file to the target in the encoding that is configured by {@value #ENCODING_PROPERTY}; the temp file is deleted afterwards. Text temp files
+    * are always kept as they are.
+    *
+    * @param tempFile Temp file written by a {@link ResultTempWriter}
+    * @param target File that should be written
+    * @throws IOException Thrown if reading or writing fails
+    */
+   public static void save(final File tempFile, final File target) throws IOException {
+      final String encoding = System.getProperty(ENCODING_PROPERTY, "compact");
+      if (!"raw".equalsIgnoreCase(encoding) && BinaryTempFileFormat.isBinary(tempFile)) {
+         write(tempFile, target, "deflate".equalsIgnoreCase(encoding));
+         Files.delete(tempFile.toPath());
+      } else {
+         Files.move(tempFile.toPath(), target.toPath());
+      }
+   }
+
+   /**
+    * Writes the values of a binary temp file in compact encoding. The temp file is read once per column, so the values never need to be held in memory.
+    *
+    * @param binaryFile File in {@link BinaryTempFileFormat}
+    * @param target File that should be written
+    * @param deflate Whether the columns should be compressed
+    * @throws IOException Thrown if reading or writing fails
+    */
+   public static void write(final File binaryFile, final File target, final boolean deflate) throws IOException {
+      try (FileChannel channel = FileChannel.open(binaryFile.toPath(), StandardOpenOption.READ);
+            OutputStream fileStream = new FileOutputStream(target)) {
+         final BinaryTempFileFormat format = BinaryTempFileFormat.readHeader(channel);
+         final long dataBytes = channel.size() - format.getHeaderLength();
+         final int recordCount = (int) (dataBytes / format.getRecordSize());
+         final boolean trailingStart = dataBytes % format.getRecordSize() >= Long.BYTES;
+
+         final ByteBuffer fixedHeader = ByteBuffer.allocate(FIXED_HEADER_LENGTH);
+         fixedHeader.putInt(MAGIC).putInt(VERSION).put(deflate ? FLAG_DEFLATE : FLAG_INDEXED);
+         fileStream.write(fixedHeader.array());
+
+         final VarLongOutput out = new VarLongOutput(deflate ? new DeflaterOutputStream(fileStream) : fileStream, FIXED_HEADER_LENGTH);
+         final String[] names = format.getCollectorNames();
+         out.write(names.length);
+         for (String name : names) {
+            final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            out.write(nameBytes.length);
+            out.write(nameBytes);
+         }
+         out.write(recordCount);
+         out.write(trailingStart ? recordCount + 1 : recordCount);
+
+         final int entries = (recordCount + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+         final long[][] indexOffsets = new long[format.getRecordLongs()][entries];
+         final long[] indexStarts = new long[entries];
+         for (int column = 0; column < format.getRecordLongs(); column++) {
+            writeColumn(channel, format, recordCount, column, out, indexOffsets[column], indexStarts);
+            if (column == 0 && trailingStart) {
+               final ByteBuffer start = ByteBuffer.allocate(Long.BYTES);
+               channel.position(format.getHeaderLength() + (long) recordCount * format.getRecordSize());
+               BinaryTempFileFormat.readFully(channel, start);
+               out.writeDelta(start.getLong());
+            }
+         }
+         if (!deflate) {
+            writeIndex(out, indexOffsets, indexStarts);
+         }
+         out.finish();
+      }
+   }
+
+   private static void writeIndex(final VarLongOutput out, final long[][] indexOffsets, final long[] indexStarts) throws IOException {
+      final long indexOffset = out.offset();
+      final ByteBuffer index = ByteBuffer.allocate(3 * Integer.BYTES + (indexOffsets.length + 1) * indexStarts.length * Long.BYTES + Long.BYTES);
+      index.putInt(INDEX_INTERVAL).putInt(indexOffsets.length).putInt(indexStarts.length);
+      for (long[] columnOffsets : indexOffsets) {
+         for (long offset : columnOffsets) {
+            index.putLong(offset);
+         }
+      }
+      for (long start : indexStarts) {
+         index.putLong(start);
+      }
+      index.putLong(indexOffset);
+      out.write(index.array());
+   }
+
+   private static void writeColumn(final FileChannel channel, final BinaryTempFileFormat format, final int recordCount, final int column, final VarLongOutput out,
+         final long[] indexOffsets, final long[] indexStarts) throws IOException {
+      channel.position(format.getHeaderLength());
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORDS_PER_READ * format.getRecordSize());
+      int record = 0;
+      while (record < recordCount) {
+         buffer.clear();
+         buffer.limit(Math.min(buffer.capacity(), (recordCount - record) * format.getRecordSize()));
+         BinaryTempFileFormat.readFully(channel, buffer);
+         final int chunkRecords = buffer.remaining() / format.getRecordSize();
+         for (int chunkRecord = 0; chunkRecord < chunkRecords; chunkRecord++, record++) {
+            final long value = buffer.getLong((chunkRecord * format.getRecordLongs() + column) * Long.BYTES);
+            if (record % INDEX_INTERVAL == 0) {
+               indexOffsets[record / INDEX_INTERVAL] = out.offset();
+               if (column == 0) {
+                  indexStarts[record / INDEX_INTERVAL] = out.previous;
+               }
+            }
+            if (column == 0) {
+               out.writeDelta(value);
+            } else {
+               out.write(value);
+            }
+         }
+      }
+   }
+
+   /**
+    * Reads a file in compact encoding completely. The file is streamed, and deflated files are inflated while reading, so only the values are held in memory.
+    *
+    * @param file File in compact encoding
+    * @return The values of the file
+    * @throws IOException Thrown if reading fails or the file is not in compact encoding
+    */
+   public static CompactFulldataFormat read(final File file) throws IOException {
+      try (InputStream fileStream = new FileInputStream(file)) {
+         final byte[] header = new byte[FIXED_HEADER_LENGTH];
+         int headerRead = 0;
+         int current;
+         while (headerRead < header.length && (current = fileStream.read(header, headerRead, header.length - headerRead)) != -1) {
+            headerRead += current;
+         }
+         final ByteBuffer fixedHeader = ByteBuffer.wrap(header);
+         if (headerRead < FIXED_HEADER_LENGTH || fixedHeader.getInt() != MAGIC) {
+            throw new IOException("File " + file + " is no compact fulldata file");
+         }
+         final int version = fixedHeader.getInt();
+         if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported compact fulldata version: " + version);
+         }
+         final boolean deflate = (fixedHeader.get() & FLAG_DEFLATE) != 0;
+         try (InputStream body = deflate ? new InflaterInputStream(fileStream) : fileStream) {
+            return read(new VarLongInput(body));
+         }
+      }
+   }
+
+   private static CompactFulldataFormat read(final VarLongInput in) throws IOException {
+      final String[] names = new String[(int) in.read()];
+      for (int index = 0; index < names.length; index++) {
+         names[index] = new String(in.readBytes((int) in.read()), StandardCharsets.UTF_8);
+      }
+      final int recordCount = (int) in.read();
+      final long[] starts = new long[(int) in.read()];
+      long previous = 0;
+      for (int index = 0; index < starts.length; index++) {
+         previous += in.read();
+         starts[index] = previous;
+      }
+      final long[][] values = new long[names.length][recordCount];
+      for (int collector = 0; collector < names.length; collector++) {
+         final long[] column = values[collector];
+         for (int index = 0; index < recordCount; index++) {
+            column[index] = in.read();
+         }
+      }
+      return new CompactFulldataFormat(names, starts, values);
+   }
+
+   /**
+    * Checks whether the given file starts with the compact magic number.
+    *
+    * @param file File that should be checked
+    * @return Whether the file is in compact encoding
+    */
+   public static boolean isCompact(final File file) {
+      try (InputStream in = new FileInputStream(file)) {
+         final byte[] magic = new byte[Integer.BYTES];
+         int read = 0;
+         int current;
+         while (read < magic.length && (current = in.read(magic, read, magic.length - read)) != -1) {
+            read += current;
+         }
+         return read == magic.length && ByteBuffer.wrap(magic).getInt() == MAGIC;
+      } catch (IOException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Buffers zig-zag encoded variable-length longs before writing them to a stream.
+    */
+   private static final class VarLongOutput {
+      private final OutputStream out;
+      private final byte[] buffer = new byte[64 * 1024];
+      private int position = 0;
+      private long previous = 0;
+      private long flushed;
+
+      VarLongOutput(final OutputStream out, final long offset) {
+         this.out = out;
+         this.flushed = offset;
+      }
+
+      /**
+       * Returns the offset of the next byte in the file; only meaningful if the stream is not deflated.
+       */
+      long offset() {
+         return flushed + position;
+      }
+
+      void writeDelta(final long value) throws IOException {
+         write(value - previous);
+         previous = value;
+      }
+
+      void write(final long value) throws IOException {
+         if (position > buffer.length - 10) {
+            flush();
+         }
+         long zigzag = (value << 1) ^ (value >> 63);
+         while ((zigzag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+         }
+         buffer[position++] = (byte) zigzag;
+      }
+
+      void write(final byte[] bytes) throws IOException {
+         flush();
+         out.write(bytes);
+         flushed += bytes.length;
+      }
+
+      private void flush() throws IOException {
+         out.write(buffer, 0, position);
+         flushed += position;
+         position = 0;
+      }
+
+      /**
+       * Writes all buffered values; a deflater stream is closed, so its native resources are released.
+       */
+      void finish() throws IOException {
+         flush();
+         if (out instanceof DeflaterOutputStream) {
+            out.close();
+         }
+      }
+   }
+
+   /**
+    * Reads zig-zag encoded variable-length longs from a stream, which is read in blocks.
+    */
+   private static final class VarLongInput {
+      private final InputStream in;
+      private final byte[] buffer = new byte[64 * 1024];
+      private int position = 0;
+      private int limit = 0;
+
+      VarLongInput(final InputStream in) {
+         this.in = in;
+      }
+
+      private byte next() throws IOException {
+         if (position == limit) {
+            final int read = in.read(buffer);
+            if (read <= 0) {
+               throw new IOException("Compact fulldata file is truncated or corrupt");
+            }
+            position = 0;
+            limit = read;
+         }
+         return buffer[position++];
+      }
+
+      byte[] readBytes(final int length) throws IOException {
+         if (length < 0) {
+            throw new IOException("Compact fulldata file is truncated or corrupt");
+         }
+         final byte[] bytes = new byte[length];
+         for (int index = 0; index < length; index++) {
+            bytes[index] = next();
+         }
+         return bytes;
+      }
+
+      long read() throws IOException {
+         long zigzag = 0;
+         int shift = 0;
+         byte current;
+         do {
+            if (shift > 63) {
+               throw new IOException("Compact fulldata file is truncated or corrupt");
+            }
+            current = next();
+            zigzag |= (long) (current & 0x7F) << shift;
+            shift += 7;
+         } while (current < 0);
+         return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+   }
+}
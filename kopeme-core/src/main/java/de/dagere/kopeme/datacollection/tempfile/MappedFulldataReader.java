@@ -0,0 +1,379 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.Result.Fulldata.Value;
+
+/**
+ * Reads ranges of a fulldata file without reading the values before the range. Binary temp files and not deflated {@link CompactFulldataFormat} files are
+ * memory-mapped: In binary files, every record can be accessed directly; in compact files, reading starts at the preceding entry of the sparse index, which
+ * references every {@value CompactFulldataFormat#INDEX_INTERVAL}th record. Compact files without index get their index by one scan over the file. Other files,
+ * i.e. deflated and text files, are read completely by a {@link WrittenResultReader}. Since a mapping can not exceed 2 GB, binary and compact files that are
+ * larger are rejected.
+ *
+ * Values can be read as primitive arrays or be iterated by a {@link ValueConsumer}, so no object per value is created; only
+ * {@link #createFulldata(String, int)} and {@link #createFulldata(int)} create JAXB values.
+ *
+ * @author reichelt
+ *
+ */
+public final class MappedFulldataReader {
+
+   /**
+    * Consumes the values of one collector together with the start time of their execution.
+    */
+   public interface ValueConsumer {
+      void accept(long executionStart, long value);
+   }
+
+   /**
+    * Delivers the values of one column, starting at a certain record.
+    */
+   private interface ColumnCursor {
+      long next();
+   }
+
+   private final String[] collectorNames;
+   private final int recordCount;
+
+   private MappedByteBuffer mapped;
+   private int binaryHeaderLength;
+   private int recordLongs;
+
+   private long[][] indexOffsets;
+   private long[] indexStarts;
+   private int indexInterval;
+
+   private WrittenResultReader fallback;
+
+   public MappedFulldataReader(final File file) throws IOException {
+      if (!file.exists()) {
+         throw new FileNotFoundException("Fulldata file " + file.getAbsolutePath() + " does not exist");
+      }
+      if (BinaryTempFileFormat.isBinary(file)) {
+         try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            checkSize(file, channel);
+            final BinaryTempFileFormat format = BinaryTempFileFormat.readHeader(channel);
+            collectorNames = format.getCollectorNames();
+            binaryHeaderLength = format.getHeaderLength();
+            recordLongs = format.getRecordLongs();
+            recordCount = (int) ((channel.size() - binaryHeaderLength) / format.getRecordSize());
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         }
+      } else if (CompactFulldataFormat.isCompact(file) && !isDeflated(file)) {
+         try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            checkSize(file, channel);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         }
+         final int version = mapped.getInt(Integer.BYTES);
+         if (version < CompactFulldataFormat.MIN_VERSION || version > CompactFulldataFormat.VERSION) {
+            throw new IOException("Unsupported compact fulldata version: " + version);
+         }
+         final VarLongCursor header = new VarLongCursor(CompactFulldataFormat.FIXED_HEADER_LENGTH, false, 0);
+         collectorNames = new String[(int) header.next()];
+         for (int index = 0; index < collectorNames.length; index++) {
+            final byte[] nameBytes = new byte[(int) header.next()];
+            for (int i = 0; i < nameBytes.length; i++) {
+               nameBytes[i] = mapped.get(header.position++);
+            }
+            collectorNames[index] = new String(nameBytes, StandardCharsets.UTF_8);
+         }
+         recordCount = (int) header.next();
+         final int startCount = (int) header.next();
+         if ((mapped.get(CompactFulldataFormat.FIXED_HEADER_LENGTH - 1) & CompactFulldataFormat.FLAG_INDEXED) != 0) {
+            readIndex();
+         } else {
+            buildIndex(header.position, startCount);
+         }
+      } else {
+         fallback = new WrittenResultReader(file);
+         fallback.read(null, Collections.<String> emptySet());
+         collectorNames = fallback.getCollectors().toArray(new String[0]);
+         recordCount = fallback.getValueCount();
+      }
+   }
+
+   /**
+    * Rejects files that can not be mapped at once, since all positions in the mapping are ints.
+    */
+   private static void checkSize(final File file, final FileChannel channel) throws IOException {
+      if (channel.size() > Integer.MAX_VALUE) {
+         throw new IOException("Fulldata file " + file.getAbsolutePath() + " has " + channel.size() + " bytes, only files up to 2 GB can be mapped");
+      }
+   }
+
+   private static boolean isDeflated(final File file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         final ByteBuffer header = ByteBuffer.allocate(CompactFulldataFormat.FIXED_HEADER_LENGTH);
+         BinaryTempFileFormat.readFully(channel, header);
+         return (header.get(CompactFulldataFormat.FIXED_HEADER_LENGTH - 1) & CompactFulldataFormat.FLAG_DEFLATE) != 0;
+      }
+   }
+
+   private void readIndex() {
+      int position = (int) mapped.getLong(mapped.capacity() - Long.BYTES);
+      indexInterval = mapped.getInt(position);
+      final int columns = mapped.getInt(position + Integer.BYTES);
+      final int entries = mapped.getInt(position + 2 * Integer.BYTES);
+      position += 3 * Integer.BYTES;
+      indexOffsets = new long[columns][entries];
+      for (int column = 0; column < columns; column++) {
+         for (int entry = 0; entry < entries; entry++, position += Long.BYTES) {
+            indexOffsets[column][entry] = mapped.getLong(position);
+         }
+      }
+      indexStarts = new long[entries];
+      for (int entry = 0; entry < entries; entry++, position += Long.BYTES) {
+         indexStarts[entry] = mapped.getLong(position);
+      }
+   }
+
+   private void buildIndex(final int firstColumnStart, final int startCount) {
+      indexInterval = CompactFulldataFormat.INDEX_INTERVAL;
+      final int entries = (recordCount + indexInterval - 1) / indexInterval;
+      indexOffsets = new long[collectorNames.length + 1][entries];
+      indexStarts = new long[entries];
+      final VarLongCursor cursor = new VarLongCursor(firstColumnStart, true, 0);
+      for (int column = 0; column <= collectorNames.length; column++) {
+         final int values = column == 0 ? startCount : recordCount;
+         for (int record = 0; record < values; record++) {
+            if (record % indexInterval == 0 && record < recordCount) {
+               indexOffsets[column][record / indexInterval] = cursor.position;
+               if (column == 0) {
+                  indexStarts[record / indexInterval] = cursor.previous;
+               }
+            }
+            cursor.next();
+         }
+         cursor.delta = false;
+      }
+   }
+
+   public String[] getCollectorNames() {
+      return collectorNames;
+   }
+
+   /**
+    * Returns the count of records, i.e. executions whose values have been written completely.
+    *
+    * @return Count of records
+    */
+   public int getRecordCount() {
+      return recordCount;
+   }
+
+   private int findColumn(final String collectorName) {
+      for (int index = 0; index < collectorNames.length; index++) {
+         if (collectorNames[index].equals(collectorName)) {
+            return index + 1;
+         }
+      }
+      return -1;
+   }
+
+   private int getColumn(final String collectorName) {
+      final int column = findColumn(collectorName);
+      if (column == -1) {
+         throw new IllegalArgumentException("Collector " + collectorName + " is not contained in the file");
+      }
+      return column;
+   }
+
+   private ColumnCursor cursor(final int column, final int from) {
+      if (fallback != null) {
+         final long[] values = column == 0 ? fallback.getExecutionStartTimes() : fallback.getValues(collectorNames[column - 1]);
+         return new ColumnCursor() {
+            private int record = from;
+
+            @Override
+            public long next() {
+               return values[record++];
+            }
+         };
+      } else if (indexOffsets == null) {
+         return new ColumnCursor() {
+            private int position = binaryHeaderLength + (from * recordLongs + column) * Long.BYTES;
+
+            @Override
+            public long next() {
+               final long value = mapped.getLong(position);
+               position += recordLongs * Long.BYTES;
+               return value;
+            }
+         };
+      } else {
+         final int entry = from / indexInterval;
+         final VarLongCursor cursor = new VarLongCursor((int) indexOffsets[column][entry], column == 0, column == 0 ? indexStarts[entry] : 0);
+         for (int skipped = entry * indexInterval; skipped < from; skipped++) {
+            cursor.next();
+         }
+         return cursor;
+      }
+   }
+
+   private void checkRange(final int from, final int to) {
+      if (from < 0 || to > recordCount || from > to) {
+         throw new IndexOutOfBoundsException("Range " + from + " - " + to + " is not in 0 - " + recordCount);
+      }
+   }
+
+   /**
+    * Returns the execution start times of the records from <code>from</code> (inclusive) to <code>to</code> (exclusive).
+    *
+    * @param from First record
+    * @param to Record after the last record
+    * @return Start times
+    */
+   public long[] getExecutionStartTimes(final int from, final int to) {
+      return readColumn(0, from, to);
+   }
+
+   /**
+    * Returns the values of the collector of the records from <code>from</code> (inclusive) to <code>to</code> (exclusive).
+    *
+    * @param collectorName Name of the collector
+    * @param from First record
+    * @param to Record after the last record
+    * @return Values of the collector
+    */
+   public long[] getValues(final String collectorName, final int from, final int to) {
+      return readColumn(getColumn(collectorName), from, to);
+   }
+
+   private long[] readColumn(final int column, final int from, final int to) {
+      checkRange(from, to);
+      final long[] result = new long[to - from];
+      if (from == to) {
+         return result;
+      }
+      final ColumnCursor cursor = cursor(column, from);
+      for (int index = 0; index < result.length; index++) {
+         result[index] = cursor.next();
+      }
+      return result;
+   }
+
+   /**
+    * Passes start time and value of the collector of the records from <code>from</code> (inclusive) to <code>to</code> (exclusive) to the consumer.
+    *
+    * @param collectorName Name of the collector
+    * @param from First record
+    * @param to Record after the last record
+    * @param consumer Consumer of the values
+    */
+   public void forEach(final String collectorName, final int from, final int to, final ValueConsumer consumer) {
+      final int column = getColumn(collectorName);
+      checkRange(from, to);
+      if (from == to) {
+         return;
+      }
+      final ColumnCursor starts = cursor(0, from);
+      final ColumnCursor values = cursor(column, from);
+      for (int record = from; record < to; record++) {
+         consumer.accept(starts.next(), values.next());
+      }
+   }
+
+   /**
+    * Creates the fulldata of the collector, skipping the first <code>warmup</code> records.
+    *
+    * @param collectorName Name of the collector
+    * @param warmup Count of records that should be skipped
+    * @return Fulldata containing all following records, which is empty if the collector is not contained in the file
+    */
+   public Fulldata createFulldata(final String collectorName, final int warmup) {
+      final Fulldata result = new Fulldata();
+      if (findColumn(collectorName) == -1) {
+         return result;
+      }
+      final List<Value> fulldataValues = result.getValue();
+      forEach(collectorName, Math.min(warmup, recordCount), recordCount, (executionStart, value) -> {
+         final Value fulldataValue = new Value();
+         fulldataValue.setStart(executionStart);
+         fulldataValue.setValue(value);
+         fulldataValues.add(fulldataValue);
+      });
+      return result;
+   }
+
+   /**
+    * Creates the fulldata of all collectors in one pass over the records, skipping the first <code>warmup</code> records.
+    *
+    * @param warmup Count of records that should be skipped
+    * @return Fulldata of every collector, in the order of the collectors in the file
+    */
+   public Map<String, Fulldata> createFulldata(final int warmup) {
+      final Map<String, Fulldata> result = new LinkedHashMap<>();
+      final List<List<Value>> fulldataValues = new ArrayList<>(collectorNames.length);
+      for (String collectorName : collectorNames) {
+         final Fulldata fulldata = new Fulldata();
+         result.put(collectorName, fulldata);
+         fulldataValues.add(fulldata.getValue());
+      }
+      final int from = Math.min(warmup, recordCount);
+      if (from < recordCount) {
+         final ColumnCursor starts = cursor(0, from);
+         final ColumnCursor[] values = new ColumnCursor[collectorNames.length];
+         for (int index = 0; index < values.length; index++) {
+            values[index] = cursor(index + 1, from);
+         }
+         for (int record = from; record < recordCount; record++) {
+            final long executionStart = starts.next();
+            for (int index = 0; index < values.length; index++) {
+               final Value fulldataValue = new Value();
+               fulldataValue.setStart(executionStart);
+               fulldataValue.setValue(values[index].next());
+               fulldataValues.get(index).add(fulldataValue);
+            }
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Decodes zig-zag encoded variable-length longs from the mapped file.
+    */
+   private final class VarLongCursor implements ColumnCursor {
+      private int position;
+      private boolean delta;
+      private long previous;
+
+      VarLongCursor(final int position, final boolean delta, final long previous) {
+         this.position = position;
+         this.delta = delta;
+         this.previous = previous;
+      }
+
+      @Override
+      public long next() {
+         long zigzag = 0;
+         int shift = 0;
+         byte current;
+         do {
+            current = mapped.get(position++);
+            zigzag |= (long) (current & 0x7F) << shift;
+            shift += 7;
+         } while (current < 0);
+         final long value = (zigzag >>> 1) ^ -(zigzag & 1);
+         if (delta) {
+            previous += value;
+            return previous;
+         } else {
+            return value;
+         }
+      }
+   }
+}
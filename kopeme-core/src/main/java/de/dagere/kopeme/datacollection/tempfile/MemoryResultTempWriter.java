@@ -0,0 +1,144 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+
+/**
+ * Holds the values in a direct buffer in the format of {@link BinaryTempFileFormat}, which is preallocated for the planned iterations. Since the buffer is off-heap,
+ * it neither influences the RAM collectors nor causes garbage collections. A file is only created if the planned count of iterations is exceeded or if the file
+ * is requested by {@link #getTempFile()}; afterwards, the writer behaves like the {@link BinaryResultTempWriter}.
+ *
+ * @author reichelt
+ *
+ */
+public class MemoryResultTempWriter extends ResultTempWriter {
+
+   private static final Logger LOG = LogManager.getLogger(MemoryResultTempWriter.class);
+
+   private final int plannedIterations;
+   private ByteBuffer buffer;
+   private int recordSize;
+   private FileChannel channel;
+   private boolean finalized = false;
+
+   public MemoryResultTempWriter(final boolean warmup, final int plannedIterations) {
+      super(warmup, null);
+      this.plannedIterations = plannedIterations;
+   }
+
+   @Override
+   public void setDataCollectors(final DataCollector collectors[]) {
+      final String[] names = new String[collectors.length];
+      for (int index = 0; index < collectors.length; index++) {
+         names[index] = collectors[index].getName();
+      }
+      final BinaryTempFileFormat format = new BinaryTempFileFormat(names);
+      recordSize = format.getRecordSize();
+      buffer = ByteBuffer.allocateDirect(format.getHeaderLength() + Math.max(1, plannedIterations) * recordSize);
+      format.writeHeader(buffer);
+   }
+
+   @Override
+   public final void executionStart(final long currentTimeMillis) {
+      if (buffer.remaining() < recordSize) {
+         if (channel == null) {
+            LOG.debug("More than {} iterations, spilling values to file", plannedIterations);
+            spill();
+         } else {
+            flush();
+         }
+      }
+      buffer.putLong(currentTimeMillis);
+   }
+
+   @Override
+   public final void writeValues(final DataCollector collectors[]) {
+      for (int index = 0; index < collectors.length; index++) {
+         buffer.putLong(collectors[index].getValue());
+      }
+   }
+
+   /**
+    * Returns whether the values are only held in memory, i.e. no file has been created so far.
+    *
+    * @return Whether the values are only held in memory
+    */
+   public boolean isInMemory() {
+      return channel == null;
+   }
+
+   private void spill() {
+      try {
+         tempFile = createTempFile();
+         channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+         flush();
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   private void flush() {
+      buffer.flip();
+      try {
+         while (buffer.hasRemaining()) {
+            channel.write(buffer);
+         }
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+      buffer.clear();
+   }
+
+   private void close() {
+      try {
+         channel.close();
+         LOG.info("Flushing to " + tempFile.getAbsolutePath() + " finished");
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+    * Returns the temporary file; if the values are held in memory, they are written to a new file first.
+    */
+   @Override
+   public File getTempFile() {
+      if (channel == null && buffer != null) {
+         spill();
+         if (finalized) {
+            close();
+         }
+      }
+      return tempFile;
+   }
+
+   @Override
+   public WrittenResultReader createReader() {
+      if (channel != null) {
+         return new WrittenResultReader(tempFile);
+      } else {
+         final ByteBuffer data = buffer.duplicate();
+         data.flip();
+         return new WrittenResultReader(data);
+      }
+   }
+
+   @Override
+   public final void finalizeCollection() {
+      if (!finalized) {
+         finalized = true;
+         if (channel != null) {
+            flush();
+            close();
+         }
+      }
+   }
+}
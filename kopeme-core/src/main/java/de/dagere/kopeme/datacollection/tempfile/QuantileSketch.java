@@ -0,0 +1,164 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-bucketed histogram for estimating percentiles of an arbitrary count of values in bounded memory. Values smaller than {@value #SUB_BUCKETS} are counted
+ * exactly; bigger values are counted in buckets whose width grows with the magnitude of the value, so every value is represented with a relative error below
+ * 1 / {@value #SUB_BUCKETS}. Sketches of the same kind can be merged, e.g. to combine the values of several runs.
+ *
+ * @author reichelt
+ *
+ */
+public class QuantileSketch {
+
+   private static final int SUB_BUCKET_BITS = 8;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+   private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+   private final long[] positiveCounts = new long[BUCKETS];
+   private long[] negativeCounts;
+   private long count = 0;
+   private long min = Long.MAX_VALUE;
+   private long max = Long.MIN_VALUE;
+
+   public void add(final long value) {
+      if (value >= 0) {
+         positiveCounts[bucketIndex(value)]++;
+      } else {
+         if (negativeCounts == null) {
+            negativeCounts = new long[BUCKETS];
+         }
+         negativeCounts[bucketIndex(value == Long.MIN_VALUE ? Long.MAX_VALUE : -value)]++;
+      }
+      count++;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+   }
+
+   /**
+    * Adds all values of the other sketch to this sketch.
+    *
+    * @param other Sketch whose values should be added
+    */
+   public void merge(final QuantileSketch other) {
+      for (int index = 0; index < BUCKETS; index++) {
+         positiveCounts[index] += other.positiveCounts[index];
+      }
+      if (other.negativeCounts != null) {
+         if (negativeCounts == null) {
+            negativeCounts = new long[BUCKETS];
+         }
+         for (int index = 0; index < BUCKETS; index++) {
+            negativeCounts[index] += other.negativeCounts[index];
+         }
+      }
+      count += other.count;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+   }
+
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * Returns the counts of all non-empty buckets, mapped from their index; buckets of negative values have negative indices starting at -1. Together with
+    * {@link #addBucketCount(int, long)}, this allows persisting a sketch.
+    *
+    * @return Counts of all non-empty buckets
+    */
+   public Map<Integer, Long> getBucketCounts() {
+      final Map<Integer, Long> bucketCounts = new TreeMap<>();
+      for (int index = 0; index < BUCKETS; index++) {
+         if (positiveCounts[index] != 0) {
+            bucketCounts.put(index, positiveCounts[index]);
+         }
+         if (negativeCounts != null && negativeCounts[index] != 0) {
+            bucketCounts.put(-index - 1, negativeCounts[index]);
+         }
+      }
+      return bucketCounts;
+   }
+
+   /**
+    * Adds values to a bucket as returned by {@link #getBucketCounts()}; minimum and maximum are approximated by the representative value of the bucket.
+    *
+    * @param index Index of the bucket
+    * @param bucketCount Count of values in the bucket
+    */
+   public void addBucketCount(final int index, final long bucketCount) {
+      final double value;
+      if (index >= 0) {
+         positiveCounts[index] += bucketCount;
+         value = representativeValue(index);
+      } else {
+         if (negativeCounts == null) {
+            negativeCounts = new long[BUCKETS];
+         }
+         negativeCounts[-index - 1] += bucketCount;
+         value = -representativeValue(-index - 1);
+      }
+      count += bucketCount;
+      min = Math.min(min, (long) Math.floor(value));
+      max = Math.max(max, (long) Math.ceil(value));
+   }
+
+   /**
+    * Estimates the percentile, i.e. the smallest value for which the given percentage of values is less or equal.
+    *
+    * @param percentile Percentage between 0 and 100
+    * @return Estimated percentile, or {@link Double#NaN} if no value was added
+    */
+   public double getPercentile(final double percentile) {
+      if (percentile < 0 || percentile > 100) {
+         throw new IllegalArgumentException("Percentile needs to be between 0 and 100, but was " + percentile);
+      }
+      if (count == 0) {
+         return Double.NaN;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      if (negativeCounts != null) {
+         for (int index = BUCKETS - 1; index >= 0; index--) {
+            seen += negativeCounts[index];
+            if (seen >= rank) {
+               return clamp(-representativeValue(index));
+            }
+         }
+      }
+      for (int index = 0; index < BUCKETS; index++) {
+         seen += positiveCounts[index];
+         if (seen >= rank) {
+            return clamp(representativeValue(index));
+         }
+      }
+      return max;
+   }
+
+   private double clamp(final double value) {
+      return Math.max(min, Math.min(max, value));
+   }
+
+   static int bucketIndex(final long magnitude) {
+      if (magnitude < SUB_BUCKETS) {
+         return (int) magnitude;
+      }
+      final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(magnitude) - SUB_BUCKET_BITS;
+      final int mantissa = (int) (magnitude >>> (exponent + 1));
+      return SUB_BUCKETS + exponent * HALF_SUB_BUCKETS + mantissa - HALF_SUB_BUCKETS;
+   }
+
+   static double representativeValue(final int index) {
+      if (index < SUB_BUCKETS) {
+         return index;
+      }
+      final int exponent = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS;
+      final long mantissa = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+      final long lowerBound = mantissa << (exponent + 1);
+      final long width = 1L << (exponent + 1);
+      return lowerBound + (width - 1) / 2.0;
+   }
+}
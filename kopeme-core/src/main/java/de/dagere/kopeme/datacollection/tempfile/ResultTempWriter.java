@@ -1,39 +1,81 @@
 package de.dagere.kopeme.datacollection.tempfile;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 import de.dagere.kopeme.datacollection.DataCollector;
+import de.dagere.kopeme.datacollection.TestResult;
+
+/**
+ * Writes the values of every iteration to a temporary file, so they do not need to be held in memory during the measurement. By default, the binary format of
+ * {@link BinaryResultTempWriter} is used; setting the system property {@value #FORMAT_PROPERTY} to <code>text</code> switches to the human readable
+ * {@link TextResultTempWriter}, which is mainly useful for debugging. If {@value #ASYNC_PROPERTY} is set to <code>true</code>, the binary file is written by the
+ * {@link AsyncResultTempWriter}, which keeps all file access off the measurement thread. Runs with less than {@link TestResult#BOUNDARY_SAVE_FILE} planned
+ * iterations are held in memory by the {@link MemoryResultTempWriter}, unless {@value #IN_MEMORY_PROPERTY} is set to <code>false</code>.
+ *
+ * @author reichelt
+ *
+ */
+public abstract class ResultTempWriter {
 
-public class ResultTempWriter {
+   /**
+    * VM property name for the format of the temporary result files; possible values are <code>binary</code> (default) and <code>text</code>.
+    */
+   public static final String FORMAT_PROPERTY = "kopeme.tempfile.format";
 
-   private static final Logger LOG = LogManager.getLogger(ResultTempWriter.class);
+   /**
+    * VM property name for enabling asynchronous writing of the temporary result files by a background thread.
+    */
+   public static final String ASYNC_PROPERTY = "kopeme.tempfile.async";
+
+   /**
+    * VM property name for disabling the in-memory mode for small runs.
+    */
+   public static final String IN_MEMORY_PROPERTY = "kopeme.tempfile.inMemory";
 
    public static final String EXECUTIONSTART = "\n" + WrittenResultReader.EXECUTIONSTART;
    public static final String COLLECTOR = "\n" + WrittenResultReader.COLLECTOR;
 
-   private final File tempFile;
-   private final BufferedWriter tempFileWriter;
+   protected final boolean warmup;
+   protected File tempFile;
+
+   protected ResultTempWriter(final boolean warmup) throws IOException {
+      this.warmup = warmup;
+      tempFile = createTempFile();
+   }
+
+   /**
+    * Creates a writer whose temporary file is created later by the subclass, if it is needed at all.
+    *
+    * @param warmup Whether the values of a warmup are written
+    */
+   protected ResultTempWriter(final boolean warmup, final File tempFile) {
+      this.warmup = warmup;
+      this.tempFile = tempFile;
+   }
 
-   public ResultTempWriter(final boolean warmup) throws IOException {
-      tempFile = Files.createTempFile(warmup ? "kopeme-warmup-" : "kopeme-", ".tmp").toFile();
-      tempFileWriter = new BufferedWriter(new FileWriter(tempFile));
+   protected final File createTempFile() throws IOException {
+      return Files.createTempFile(warmup ? "kopeme-warmup-" : "kopeme-", ".tmp").toFile();
    }
 
-   public void setDataCollectors(final DataCollector collectors[]) {
-      try {
-         for (int index = 0; index < collectors.length; index++) {
-            DataCollector dc = collectors[index];
-            tempFileWriter.write(WrittenResultReader.COLLECTOR_INDEX + index + "=" + dc.getName() + "\n");
-         }
-      } catch (IOException e) {
-         e.printStackTrace();
+   /**
+    * Creates a writer in the format that is configured by {@value #FORMAT_PROPERTY}, {@value #ASYNC_PROPERTY} and {@value #IN_MEMORY_PROPERTY}.
+    *
+    * @param warmup Whether the values of a warmup are written
+    * @param plannedIterations Count of the planned iterations
+    * @return The writer
+    * @throws IOException Thrown if the temporary file can not be created
+    */
+   public static ResultTempWriter create(final boolean warmup, final int plannedIterations) throws IOException {
+      if ("text".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY))) {
+         return new TextResultTempWriter(warmup);
+      } else if (plannedIterations < TestResult.BOUNDARY_SAVE_FILE && !"false".equalsIgnoreCase(System.getProperty(IN_MEMORY_PROPERTY))) {
+         return new MemoryResultTempWriter(warmup, plannedIterations);
+      } else if (Boolean.getBoolean(ASYNC_PROPERTY)) {
+         return new AsyncResultTempWriter(warmup);
+      } else {
+         return new BinaryResultTempWriter(warmup);
       }
    }
 
@@ -41,38 +83,43 @@ public class ResultTempWriter {
       return tempFile;
    }
 
-   public final void executionStart(final long currentTimeMillis) {
-      try {
-         // tempFileWriter.write(EXECUTIONSTART);
-         tempFileWriter.write(Long.toString(System.currentTimeMillis()));
-         tempFileWriter.write('\n');
-      } catch (IOException e) {
-         e.printStackTrace();
-      }
+   /**
+    * Creates a reader for the written values; should be called after {@link #finalizeCollection()}.
+    *
+    * @return Reader for the written values
+    */
+   public WrittenResultReader createReader() {
+      return new WrittenResultReader(getTempFile());
    }
 
-   public final void writeValues(final DataCollector collectors[]) {
-      try {
-         for (int index = 0; index < collectors.length; index++) {
-            DataCollector dc = collectors[index];
-            // tempFileWriter.write(COLLECTOR);
-            tempFileWriter.write(Integer.toString(index));
-            tempFileWriter.write('=');
-            tempFileWriter.write(Long.toString(dc.getValue()));
-            tempFileWriter.write('\n');
-         }
-      } catch (IOException e) {
-         e.printStackTrace();
+   public void deleteTempFile() {
+      if (tempFile != null && !tempFile.delete()) {
+         System.out.println("Warning: File " + tempFile.getAbsolutePath() + " could not be deleted, existing: " + tempFile.exists() + "!");
       }
    }
 
-   public final void finalizeCollection() {
-      try {
-         tempFileWriter.flush();
-         tempFileWriter.close();
-         LOG.info("Flushing to " + tempFile.getAbsolutePath() + " finished");
-      } catch (IOException e) {
-         e.printStackTrace();
-      }
+   /**
+    * Writes the names of the collectors; the order of the collectors needs to be the same in every following {@link #writeValues(DataCollector[])} call.
+    *
+    * @param collectors Collectors whose values will be written
+    */
+   public abstract void setDataCollectors(final DataCollector collectors[]);
+
+   public abstract void executionStart(final long currentTimeMillis);
+
+   public abstract void writeValues(final DataCollector collectors[]);
+
+   /**
+    * Returns how often the measurement thread had to wait for writing; only the {@link AsyncResultTempWriter} waits.
+    *
+    * @return Count of producer stalls
+    */
+   public long getProducerStalls() {
+      return 0;
    }
+
+   /**
+    * Flushes and closes the file; calling this more than once has no effect.
+    */
+   public abstract void finalizeCollection();
 }
@@ -0,0 +1,80 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+
+/**
+ * Writes the values as <code>index=value</code> lines, which makes the temporary file human readable.
+ *
+ * @author reichelt
+ *
+ */
+public class TextResultTempWriter extends ResultTempWriter {
+
+   private static final Logger LOG = LogManager.getLogger(TextResultTempWriter.class);
+
+   private final BufferedWriter tempFileWriter;
+   private boolean finalized = false;
+
+   public TextResultTempWriter(final boolean warmup) throws IOException {
+      super(warmup);
+      tempFileWriter = new BufferedWriter(new FileWriter(tempFile));
+   }
+
+   @Override
+   public void setDataCollectors(final DataCollector collectors[]) {
+      try {
+         for (int index = 0; index < collectors.length; index++) {
+            DataCollector dc = collectors[index];
+            tempFileWriter.write(WrittenResultReader.COLLECTOR_INDEX + index + "=" + dc.getName() + "\n");
+         }
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   @Override
+   public final void executionStart(final long currentTimeMillis) {
+      try {
+         tempFileWriter.write(Long.toString(currentTimeMillis));
+         tempFileWriter.write('\n');
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   @Override
+   public final void writeValues(final DataCollector collectors[]) {
+      try {
+         for (int index = 0; index < collectors.length; index++) {
+            DataCollector dc = collectors[index];
+            tempFileWriter.write(Integer.toString(index));
+            tempFileWriter.write('=');
+            tempFileWriter.write(Long.toString(dc.getValue()));
+            tempFileWriter.write('\n');
+         }
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   @Override
+   public final void finalizeCollection() {
+      if (!finalized) {
+         try {
+            tempFileWriter.flush();
+            tempFileWriter.close();
+            finalized = true;
+            LOG.info("Flushing to " + tempFile.getAbsolutePath() + " finished");
+         } catch (IOException e) {
+            e.printStackTrace();
+         }
+      }
+   }
+}
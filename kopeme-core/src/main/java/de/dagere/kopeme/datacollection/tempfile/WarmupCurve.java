@@ -0,0 +1,41 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Summary of the warmup of a test: For every collector, the mean of every block of {@link #getBlockSize()} consecutive warmup iterations. The last block may
+ * contain less iterations.
+ *
+ * @author reichelt
+ *
+ */
+public final class WarmupCurve {
+
+   private final int blockSize;
+   private final Map<String, double[]> blockMeans;
+
+   public WarmupCurve(final int blockSize, final Map<String, double[]> blockMeans) {
+      this.blockSize = blockSize;
+      this.blockMeans = Collections.unmodifiableMap(blockMeans);
+   }
+
+   public int getBlockSize() {
+      return blockSize;
+   }
+
+   public Set<String> getCollectors() {
+      return blockMeans.keySet();
+   }
+
+   /**
+    * Returns the means of the blocks of the collector.
+    *
+    * @param collector Name of the collector
+    * @return Means of the blocks in the order of execution, or null if the collector was not measured
+    */
+   public double[] getBlockMeans(final String collector) {
+      return blockMeans.get(collector);
+   }
+}
@@ -0,0 +1,107 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+
+/**
+ * Discards the values of warmup iterations instead of writing them: Neither a file nor a buffer per iteration is used, only the sum of the current block of
+ * iterations and the means of the finished blocks are kept, which form the {@link WarmupCurve}. The block size is set by {@value #BLOCK_SIZE_PROPERTY}; by
+ * default, it is chosen so the curve has at most {@value #MAX_BLOCKS} blocks.
+ *
+ * The reader created by this writer contains no values.
+ *
+ * @author reichelt
+ *
+ */
+public class WarmupResultTempWriter extends ResultTempWriter {
+
+   /**
+    * VM property name for the count of warmup iterations whose values are summarized by one mean.
+    */
+   public static final String BLOCK_SIZE_PROPERTY = "kopeme.warmup.blockSize";
+
+   static final int MAX_BLOCKS = 100;
+
+   private final int blockSize;
+   private String[] collectorNames;
+   private ByteBuffer header;
+   private long[] blockSums;
+   private double[][] blockMeans;
+   private int blockIterations = 0;
+   private int blocks = 0;
+
+   public WarmupResultTempWriter(final int plannedIterations) {
+      super(true, null);
+      final int defaultBlockSize = Math.max(1, (plannedIterations + MAX_BLOCKS - 1) / MAX_BLOCKS);
+      blockSize = Math.max(1, Integer.getInteger(BLOCK_SIZE_PROPERTY, defaultBlockSize));
+   }
+
+   @Override
+   public void setDataCollectors(final DataCollector collectors[]) {
+      collectorNames = new String[collectors.length];
+      for (int index = 0; index < collectors.length; index++) {
+         collectorNames[index] = collectors[index].getName();
+      }
+      final BinaryTempFileFormat format = new BinaryTempFileFormat(collectorNames);
+      header = ByteBuffer.allocate(format.getHeaderLength());
+      format.writeHeader(header);
+      header.flip();
+      blockSums = new long[collectors.length];
+      blockMeans = new double[collectors.length][MAX_BLOCKS];
+   }
+
+   @Override
+   public void executionStart(final long currentTimeMillis) {
+   }
+
+   @Override
+   public void writeValues(final DataCollector collectors[]) {
+      for (int index = 0; index < collectors.length; index++) {
+         blockSums[index] += collectors[index].getValue();
+      }
+      if (++blockIterations == blockSize) {
+         finishBlock();
+      }
+   }
+
+   private void finishBlock() {
+      for (int index = 0; index < blockSums.length; index++) {
+         if (blocks == blockMeans[index].length) {
+            blockMeans[index] = Arrays.copyOf(blockMeans[index], 2 * blocks);
+         }
+         blockMeans[index][blocks] = (double) blockSums[index] / blockIterations;
+         blockSums[index] = 0;
+      }
+      blockIterations = 0;
+      blocks++;
+   }
+
+   @Override
+   public void finalizeCollection() {
+      if (blockIterations > 0) {
+         finishBlock();
+      }
+   }
+
+   @Override
+   public WrittenResultReader createReader() {
+      return new WrittenResultReader(header.duplicate());
+   }
+
+   /**
+    * Returns the means of all finished blocks; should be called after {@link #finalizeCollection()}, so the last block is included.
+    *
+    * @return The warmup curve
+    */
+   public WarmupCurve getWarmupCurve() {
+      final Map<String, double[]> means = new LinkedHashMap<>();
+      for (int index = 0; index < collectorNames.length; index++) {
+         means.put(collectorNames[index], Arrays.copyOf(blockMeans[index], blocks));
+      }
+      return new WarmupCurve(blockSize, means);
+   }
+}
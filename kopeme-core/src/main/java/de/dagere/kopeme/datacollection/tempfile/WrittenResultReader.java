@@ -5,7 +5,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +23,16 @@ import org.apache.logging.log4j.Logger;
 import de.dagere.kopeme.generated.Result.Fulldata;
 import de.dagere.kopeme.generated.Result.Fulldata.Value;
 
+/**
+ * Reads the values written by a {@link ResultTempWriter} or saved in the {@link CompactFulldataFormat}; the format is detected automatically. Values of a
+ * {@link MemoryResultTempWriter} are read directly from its buffer.
+ *
+ * The values are held column-wise, i.e. in one <code>long[]</code> per collector and one <code>long[]</code> for the execution start times, so reading creates
+ * no object per iteration.
+ *
+ * @author reichelt
+ *
+ */
 public class WrittenResultReader {
 
    private static final Logger LOG = LogManager.getLogger(WrittenResultReader.class);
@@ -27,15 +42,37 @@ public class WrittenResultReader {
    public static final String FINAL_VALUE = "f:";
    public static final String COLLECTOR_INDEX = "i:";
 
-   private File file;
-   protected List<Map<String, Long>> realValues = null;
-   protected List<Long> executionStartTimes = null;
+   private static final int RECORDS_PER_READ = 8 * 1024;
+   private static final int INITIAL_TEXT_CAPACITY = 1024;
+
+   private final File file;
+   private final ByteBuffer data;
+   protected long[] executionStartTimes = null;
+   protected Map<String, long[]> values = null;
+   protected int valueCount;
    protected Map<String, Number> finalValues = null;
    protected Map<String, SummaryStatistics> collectorSummaries = null;
+   protected Map<String, QuantileSketch> collectorSketches = null;
+   private final Map<String, long[]> sortedValues = new HashMap<>();
    private Map<Integer, String> collectorsIndexed;
 
    public WrittenResultReader(final File file) {
       this.file = file;
+      this.data = null;
+   }
+
+   /**
+    * Creates a reader for values that are held in memory in the format of {@link BinaryTempFileFormat}.
+    *
+    * @param data Buffer containing header and records between its position and its limit
+    */
+   public WrittenResultReader(final ByteBuffer data) {
+      this.file = null;
+      this.data = data;
+   }
+
+   private boolean isBinary() {
+      return data != null || BinaryTempFileFormat.isBinary(file);
    }
 
    public void read(final Throwable exception, final Set<String> datacollectors) {
@@ -45,20 +82,33 @@ public class WrittenResultReader {
    }
 
    private void checkValues(final Throwable exception) {
-      LOG.debug("Count of executions: {}  Values: {}", executionStartTimes.size(), realValues.size());
-      if (executionStartTimes.size() != realValues.size()) {
-         throw new RuntimeException("Count of executions is wrong, expected: " + executionStartTimes.size() + " but got " + realValues.size(), exception);
+      LOG.debug("Count of executions: {}  Values: {}", executionStartTimes.length, valueCount);
+      if (executionStartTimes.length != valueCount) {
+         throw new RuntimeException("Count of executions is wrong, expected: " + executionStartTimes.length + " but got " + valueCount, exception);
       }
    }
 
    public void readStreaming(final Throwable thrownException, final Set<String> keys) {
       finalValues = new HashMap<>();
       collectorsIndexed = new HashMap<>();
+      collectorSketches = new HashMap<>();
       initSummaries(keys);
 
+      if (isBinary()) {
+         readBinary(false);
+      } else if (CompactFulldataFormat.isCompact(file)) {
+         readCompact(false);
+      } else {
+         readTextStreaming();
+      }
+      for (String key : keys) {
+         finalValues.put(key, collectorSummaries.get(key).getMean());
+      }
+   }
+
+   private void readTextStreaming() {
       try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
          String line;
-         Map<String, Long> currentValues = new HashMap<>();
          while ((line = reader.readLine()) != null) {
             if (line.startsWith(COLLECTOR_INDEX)) {
                String collectorString = line.substring(COLLECTOR_INDEX.length());
@@ -68,22 +118,195 @@ public class WrittenResultReader {
                String[] values = line.split("=");
                int collectorIndex = Integer.parseInt(values[0]);
                String collector = collectorsIndexed.get(collectorIndex);
-               collectorSummaries.get(collector).addValue(Long.parseLong(values[1]));
+               long value = Long.parseLong(values[1]);
+               getOrCreateSummary(collector).addValue(value);
+               getOrCreateSketch(collector).add(value);
             } else {
                // ignore executionstarts when streaming
             }
          }
-         finishIteration(currentValues);
       } catch (FileNotFoundException e) {
          e.printStackTrace();
       } catch (IOException e) {
          e.printStackTrace();
       }
-      for (String key : keys) {
-         finalValues.put(key, collectorSummaries.get(key).getMean());
+   }
+
+   /**
+    * Reads binary values, either from the memory of a {@link MemoryResultTempWriter} or from a binary temp file in chunks of {@value #RECORDS_PER_READ} records,
+    * which are transfered with one bulk get each.
+    *
+    * @param keepValues Whether all values should be kept or only the summaries should be built
+    */
+   private void readBinary(final boolean keepValues) {
+      if (data != null) {
+         try {
+            final ByteBuffer buffer = data.duplicate();
+            final BinaryTempFileFormat format = BinaryTempFileFormat.readHeader(buffer);
+            final BinaryRecords records = new BinaryRecords(format, buffer.remaining(), keepValues);
+            final LongBuffer longs = buffer.asLongBuffer();
+            records.add(longs);
+            if (records.trailingStart) {
+               records.addTrailingStart(longs.get());
+            }
+         } catch (IOException e) {
+            e.printStackTrace();
+         }
+         return;
+      }
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         final BinaryTempFileFormat format = BinaryTempFileFormat.readHeader(channel);
+         final BinaryRecords records = new BinaryRecords(format, channel.size() - format.getHeaderLength(), keepValues);
+         final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORDS_PER_READ * format.getRecordSize());
+         while (records.record < records.recordCount) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), (records.recordCount - records.record) * format.getRecordSize()));
+            BinaryTempFileFormat.readFully(channel, buffer);
+            records.add(buffer.asLongBuffer());
+         }
+         if (records.trailingStart) {
+            final ByteBuffer start = ByteBuffer.allocate(Long.BYTES);
+            BinaryTempFileFormat.readFully(channel, start);
+            records.addTrailingStart(start.getLong());
+         }
+      } catch (IOException e) {
+         e.printStackTrace();
       }
    }
 
+   /**
+    * Reads a fulldata file in the {@link CompactFulldataFormat}, whose values are already column-wise.
+    *
+    * @param keepValues Whether all values should be kept or only the summaries should be built
+    */
+   private void readCompact(final boolean keepValues) {
+      try {
+         final CompactFulldataFormat compact = CompactFulldataFormat.read(file);
+         final String[] collectors = compact.getCollectorNames();
+         for (int index = 0; index < collectors.length; index++) {
+            collectorsIndexed.put(index, collectors[index]);
+            final SummaryStatistics summary = getOrCreateSummary(collectors[index]);
+            final QuantileSketch sketch = keepValues ? null : getOrCreateSketch(collectors[index]);
+            final long[] column = compact.getValues(index);
+            for (long value : column) {
+               summary.addValue(value);
+               if (sketch != null) {
+                  sketch.add(value);
+               }
+            }
+            if (keepValues) {
+               values.put(collectors[index], column);
+               valueCount = column.length;
+            }
+         }
+         if (keepValues) {
+            executionStartTimes = compact.getExecutionStartTimes();
+         }
+      } catch (IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+    * Transfers binary records into the summaries and, if values should be kept, into the columns.
+    */
+   private final class BinaryRecords {
+      private final String[] collectors;
+      private final SummaryStatistics[] summaries;
+      private final QuantileSketch[] sketches;
+      private final long[][] columns;
+      private final boolean keepValues;
+      private final int recordLongs;
+      private final int recordCount;
+      private final boolean trailingStart;
+      private final long[] records;
+      private int record = 0;
+
+      BinaryRecords(final BinaryTempFileFormat format, final long dataBytes, final boolean keepValues) {
+         this.keepValues = keepValues;
+         collectors = format.getCollectorNames();
+         summaries = new SummaryStatistics[collectors.length];
+         sketches = new QuantileSketch[collectors.length];
+         for (int index = 0; index < collectors.length; index++) {
+            collectorsIndexed.put(index, collectors[index]);
+            summaries[index] = getOrCreateSummary(collectors[index]);
+            if (!keepValues) {
+               sketches[index] = getOrCreateSketch(collectors[index]);
+            }
+         }
+
+         recordLongs = format.getRecordLongs();
+         recordCount = (int) (dataBytes / format.getRecordSize());
+         trailingStart = dataBytes % format.getRecordSize() >= Long.BYTES;
+         columns = new long[collectors.length][];
+         if (keepValues) {
+            executionStartTimes = new long[trailingStart ? recordCount + 1 : recordCount];
+            for (int index = 0; index < collectors.length; index++) {
+               columns[index] = new long[recordCount];
+               values.put(collectors[index], columns[index]);
+            }
+            valueCount = recordCount;
+         }
+         records = new long[Math.min(RECORDS_PER_READ, recordCount) * recordLongs];
+      }
+
+      /**
+       * Adds all complete records of the buffer, but not more than the record count.
+       *
+       * @param longs Buffer positioned at the start of a record
+       */
+      void add(final LongBuffer longs) {
+         while (record < recordCount && longs.remaining() >= recordLongs) {
+            final int chunkRecords = Math.min(Math.min(RECORDS_PER_READ, recordCount - record), longs.remaining() / recordLongs);
+            longs.get(records, 0, chunkRecords * recordLongs);
+            for (int chunkRecord = 0; chunkRecord < chunkRecords; chunkRecord++, record++) {
+               final int offset = chunkRecord * recordLongs;
+               if (keepValues) {
+                  executionStartTimes[record] = records[offset];
+               }
+               for (int index = 0; index < collectors.length; index++) {
+                  final long value = records[offset + 1 + index];
+                  summaries[index].addValue(value);
+                  if (keepValues) {
+                     columns[index][record] = value;
+                  } else {
+                     sketches[index].add(value);
+                  }
+               }
+            }
+         }
+      }
+
+      /**
+       * Adds the start of the last execution, which was started, but whose values have not been written.
+       *
+       * @param start Start time of the execution
+       */
+      void addTrailingStart(final long start) {
+         if (keepValues) {
+            executionStartTimes[recordCount] = start;
+         }
+      }
+   }
+
+   private SummaryStatistics getOrCreateSummary(final String collector) {
+      SummaryStatistics summary = collectorSummaries.get(collector);
+      if (summary == null) {
+         summary = new SummaryStatistics();
+         collectorSummaries.put(collector, summary);
+      }
+      return summary;
+   }
+
+   private QuantileSketch getOrCreateSketch(final String collector) {
+      QuantileSketch sketch = collectorSketches.get(collector);
+      if (sketch == null) {
+         sketch = new QuantileSketch();
+         collectorSketches.put(collector, sketch);
+      }
+      return sketch;
+   }
+
    private void initSummaries(final Set<String> datacollectors) {
       collectorSummaries = new HashMap<>();
       for (String datacollector : datacollectors) {
@@ -92,74 +315,166 @@ public class WrittenResultReader {
    }
 
    private void readValues() {
-      realValues = new ArrayList<>();
-      executionStartTimes = new ArrayList<>();
+      executionStartTimes = new long[0];
+      values = new HashMap<>();
+      sortedValues.clear();
+      valueCount = 0;
       finalValues = new HashMap<>();
       collectorsIndexed = new HashMap<>();
 
+      if (isBinary()) {
+         readBinary(true);
+      } else if (CompactFulldataFormat.isCompact(file)) {
+         readCompact(true);
+      } else {
+         readTextValues();
+      }
+      if (valueCount > 0) {
+         for (String key : values.keySet()) {
+            finalValues.put(key, collectorSummaries.get(key).getMean());
+         }
+      }
+   }
+
+   private void readTextValues() {
+      long[] starts = new long[INITIAL_TEXT_CAPACITY];
+      long[][] columns = new long[0][];
+      int execution = -1;
       try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
          String line;
-         Map<String, Long> currentValues = new HashMap<>();
          while ((line = reader.readLine()) != null) {
             if (line.startsWith(COLLECTOR_INDEX)) {
                String collectorString = line.substring(COLLECTOR_INDEX.length());
                String[] values = collectorString.split("=");
                collectorsIndexed.put(Integer.parseInt(values[0]), values[1]);
+               columns = new long[collectorsIndexed.size()][INITIAL_TEXT_CAPACITY];
             } else if (line.contains("=")) {
                String[] values = line.split("=");
                int collectorIndex = Integer.parseInt(values[0]);
-               String collector = collectorsIndexed.get(collectorIndex);
-               currentValues.put(collector, Long.parseLong(values[1]));
-               collectorSummaries.get(collector).addValue(Long.parseLong(values[1]));
+               long value = Long.parseLong(values[1]);
+               columns[collectorIndex][execution] = value;
+               getOrCreateSummary(collectorsIndexed.get(collectorIndex)).addValue(value);
+               if (collectorIndex == columns.length - 1) {
+                  valueCount = execution + 1;
+               }
             } else {
-               currentValues = finishIteration(currentValues);
-               Long start = Long.parseLong(line);
-               executionStartTimes.add(start);
+               execution++;
+               if (execution == starts.length) {
+                  starts = Arrays.copyOf(starts, starts.length * 2);
+                  for (int index = 0; index < columns.length; index++) {
+                     columns[index] = Arrays.copyOf(columns[index], starts.length);
+                  }
+               }
+               starts[execution] = Long.parseLong(line);
+               if (columns.length == 0) {
+                  valueCount = execution + 1;
+               }
             }
          }
-         finishIteration(currentValues);
       } catch (FileNotFoundException e) {
          e.printStackTrace();
       } catch (IOException e) {
          e.printStackTrace();
       }
-      if (realValues.size() > 0) {
-         for (String key : realValues.get(0).keySet()) {
-            finalValues.put(key, collectorSummaries.get(key).getMean());
-         }
+      executionStartTimes = Arrays.copyOf(starts, execution + 1);
+      for (int index = 0; index < columns.length; index++) {
+         values.put(collectorsIndexed.get(index), Arrays.copyOf(columns[index], valueCount));
       }
    }
 
    public Fulldata createFulldata(final int warmup, final String currentDatacollector) {
       Fulldata result = new Fulldata();
-      for (int i = warmup; i < realValues.size(); i++) {
-         final Long executionStartTime = executionStartTimes.get(i);
-         final Long value = realValues.get(i).get(currentDatacollector);
+      final long[] collectorValues = getValues(currentDatacollector);
+      final List<Value> fulldataValues = result.getValue();
+      for (int i = warmup; i < collectorValues.length; i++) {
          final Value fulldataValue = new Value();
-         fulldataValue.setStart(executionStartTime);
-         fulldataValue.setValue(value);
-         result.getValue().add(fulldataValue);
+         fulldataValue.setStart(executionStartTimes[i]);
+         fulldataValue.setValue(collectorValues[i]);
+         fulldataValues.add(fulldataValue);
       }
       return result;
    }
 
-   private Map<String, Long> finishIteration(Map<String, Long> currentValues) {
-      if (!currentValues.isEmpty()) {
-         realValues.add(currentValues);
-         currentValues = new HashMap<>();
+   public SummaryStatistics getCollectorSummary(final String collectorName) {
+      return collectorSummaries.get(collectorName);
+   }
+
+   /**
+    * Returns a percentile of the values of one collector by the nearest rank, i.e. the smallest value that is at least as big as the given percentage of the
+    * values. If all values have been read, the percentile is calculated exactly from a sorted copy of the values, which is created once per collector; after
+    * streaming, it is estimated by a {@link QuantileSketch} with the same definition.
+    *
+    * @param collectorName Name of the collector
+    * @param percentile Percentage greater than 0 and at most 100
+    * @return The percentile, or {@link Double#NaN} if no values are present
+    */
+   public double getPercentile(final String collectorName, final double percentile) {
+      final long[] collectorValues = values != null ? values.get(collectorName) : null;
+      if (collectorValues != null) {
+         if (collectorValues.length == 0) {
+            return Double.NaN;
+         }
+         if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile needs to be between 0 and 100, but was " + percentile);
+         }
+         long[] sorted = sortedValues.get(collectorName);
+         if (sorted == null) {
+            sorted = collectorValues.clone();
+            Arrays.sort(sorted);
+            sortedValues.put(collectorName, sorted);
+         }
+         final int rank = Math.max(1, (int) Math.ceil(percentile / 100 * sorted.length));
+         return sorted[rank - 1];
       }
-      return currentValues;
+      final QuantileSketch sketch = collectorSketches != null ? collectorSketches.get(collectorName) : null;
+      return sketch != null ? sketch.getPercentile(percentile) : Double.NaN;
    }
 
-   public SummaryStatistics getCollectorSummary(final String collectorName) {
-      return collectorSummaries.get(collectorName);
+   /**
+    * Returns the values of one collector; the array is not copied, so changes are visible to this reader, but only
+    * {@link #setValues(String, long[])} updates the values of {@link #getPercentile(String, double)}.
+    *
+    * @param collectorName Name of the collector
+    * @return Values of the collector, or an empty array if no values are present
+    */
+   public long[] getValues(final String collectorName) {
+      final long[] collectorValues = values != null ? values.get(collectorName) : null;
+      return collectorValues != null ? collectorValues : new long[0];
    }
 
-   public List<Map<String, Long>> getRealValues() {
-      return realValues;
+   /**
+    * Replaces the values of one collector; the count of values may not exceed the count of executions.
+    *
+    * @param collectorName Name of the collector
+    * @param collectorValues New values of the collector
+    */
+   public void setValues(final String collectorName, final long[] collectorValues) {
+      if (collectorValues.length > executionStartTimes.length) {
+         throw new RuntimeException("Internal Error: Count of new values should not exceed count of executions");
+      }
+      values.put(collectorName, collectorValues);
+      sortedValues.remove(collectorName);
    }
 
-   public List<Long> getExecutionStartTimes() {
+   /**
+    * Returns the names of all collectors whose values have been read.
+    *
+    * @return Names of the collectors
+    */
+   public Set<String> getCollectors() {
+      return values != null ? values.keySet() : Collections.<String> emptySet();
+   }
+
+   /**
+    * Returns the count of executions whose values have been written completely.
+    *
+    * @return Count of executions with values
+    */
+   public int getValueCount() {
+      return valueCount;
+   }
+
+   public long[] getExecutionStartTimes() {
       return executionStartTimes;
    }
 
@@ -168,15 +483,13 @@ public class WrittenResultReader {
    }
 
    public void clear(final String key) {
-      if (realValues != null) {
-         for (int i = 0; i < realValues.size(); i++) {
-            realValues.get(i).remove(key);
-         }
+      if (values != null) {
+         values.remove(key);
       }
    }
 
    public void deleteTempFile() {
-      if (!file.delete()) {
+      if (file != null && !file.delete()) {
          System.out.println("Warning: File " + file.getAbsolutePath() + " could not be deleted, existing: " + file.exists() + "!");
       }
    }
@@ -0,0 +1,66 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+
+/**
+ * Manages the storing of resultdata in the binary format (see {@link BinaryResultFile}). Every call of {@link #storeValues(Map, String)} appends one record
+ * to the result file, so storing neither reads nor rewrites the existing results.
+ *
+ * @author reichelt
+ *
+ */
+public final class BinaryDataStorer implements DataStorer {
+
+   private static final Logger LOG = LogManager.getLogger(BinaryDataStorer.class);
+
+   private final File file;
+
+   /**
+    * Initializes a BinaryDataStorer.
+    *
+    * @param foldername Folder where the result should be saved
+    * @param classname Name of the test class which was executed
+    * @param methodname Name of the method which was executed
+    * @throws IOException Thrown if the result file can not be created
+    */
+   public BinaryDataStorer(final File foldername, final String classname, final String methodname) throws IOException {
+      file = new File(foldername, methodname + BinaryResultFormat.EXTENSION);
+      if (!file.exists()) {
+         try (ResultFileLock lock = ResultFileLock.lock(file)) {
+            // Another process may have created the file meanwhile
+            if (!file.exists()) {
+               final Kopemedata data = new Kopemedata();
+               data.setTestcases(new Testcases());
+               data.getTestcases().setClazz(classname);
+               BinaryResultFile.store(file, data);
+            }
+         }
+      }
+   }
+
+   @Override
+   public void storeValue(final Result result, final String testcase, final String collectorName) {
+      storeValues(Collections.singletonMap(collectorName, result), testcase);
+   }
+
+   @Override
+   public void storeValues(final Map<String, Result> results, final String testcase) {
+      final Kopemedata entry = XMLDataStorer.createEntry(file, results, testcase);
+      LOG.info("Appending {} results to: {}", results.size(), file.getAbsoluteFile());
+      try {
+         BinaryResultFile.append(file, entry);
+      } catch (final IOException e) {
+         throw new RuntimeException(e);
+      }
+   }
+}
@@ -0,0 +1,639 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.ConfigType;
+import de.dagere.kopeme.generated.FlightRecording;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Configurations;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.Result.Params;
+import de.dagere.kopeme.generated.Result.Params.Param;
+import de.dagere.kopeme.generated.Result.Percentiles;
+import de.dagere.kopeme.generated.Result.Percentiles.Percentile;
+import de.dagere.kopeme.generated.Result.WarmupCurve;
+import de.dagere.kopeme.generated.Summary;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector.Chunk;
+import de.dagere.kopeme.generated.Versioninfo;
+
+/**
+ * Binary encoding of the complete {@link Kopemedata} model. A file consists of magic (int) and version (byte), followed by records, each consisting of its
+ * length (int) and a document. Like the entries of the {@link ResultJournal}, every record contains complete testcases with their collectors, and the records
+ * are merged in the order of the file; so new results are stored by appending a record, and a damaged last record, e.g. because the writing process crashed,
+ * is skipped. Files of another version are rejected, so a record is never appended in an encoding that drops parts of the model.
+ *
+ * Inside a record, longs and counts are zig-zag encoded variable-length numbers, doubles are written with 8 bytes, and every string is written once and
+ * afterwards referenced by its index, since cpu, memory, java version and params are repeated in every result. Optional values are preceded by a presence
+ * byte.
+ *
+ * @author reichelt
+ *
+ */
+final class BinaryResultFile {
+
+   private static final Logger LOG = LogManager.getLogger(BinaryResultFile.class);
+
+   static final int MAGIC = 0x004B5052;
+   static final byte VERSION = 1;
+
+   private static final int HEADER_LENGTH = 5;
+
+   private static final long NULL_STRING = -1;
+   private static final long NEW_STRING = -2;
+
+   private BinaryResultFile() {
+
+   }
+
+   /**
+    * Loads all records of the file; like all accesses, loading locks the file by a {@link ResultFileLock}.
+    *
+    * @param file Binary result file
+    * @return Merged data of all records
+    * @throws IOException Thrown if the file can not be read or is no binary result file
+    */
+   static Kopemedata load(final File file) throws IOException {
+      try (ResultFileLock lock = ResultFileLock.lock(file);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+         if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is no binary result file");
+         }
+         final byte version = in.readByte();
+         if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of " + file);
+         }
+         final Kopemedata data = new Kopemedata();
+         data.setTestcases(new Testcases());
+         final KopemedataMerger merger = new KopemedataMerger(data);
+         long remaining = file.length() - HEADER_LENGTH;
+         int records = 0;
+         while (remaining > 0) {
+            final int length = remaining >= 4 ? in.readInt() : -1;
+            remaining -= 4;
+            if (length < 0 || length > remaining) {
+               LOG.warn("Binary result file {} is damaged after {} records, skipping the rest", file.getAbsolutePath(), records);
+               break;
+            }
+            final byte[] record = new byte[length];
+            in.readFully(record);
+            remaining -= length;
+            final Kopemedata entry;
+            try {
+               entry = new RecordReader(record).readDocument();
+            } catch (final IOException | RuntimeException e) {
+               LOG.warn("Binary result file {} is damaged after {} records, skipping the rest: {}", file.getAbsolutePath(), records, e.toString());
+               break;
+            }
+            if (records == 0) {
+               data.getTestcases().setClazz(entry.getTestcases() != null ? entry.getTestcases().getClazz() : null);
+            }
+            merger.add(entry);
+            records++;
+         }
+         return data;
+      }
+   }
+
+   /**
+    * Returns the end of the last complete record, i.e. the position after the header and all records whose length fits into the file.
+    */
+   private static long findEndOfRecords(final FileChannel channel) throws IOException {
+      final long size = channel.size();
+      final ByteBuffer length = ByteBuffer.allocate(4);
+      long position = HEADER_LENGTH;
+      while (size - position >= 4) {
+         length.clear();
+         readFully(channel, length, position);
+         final int recordLength = length.getInt(0);
+         if (recordLength < 0 || recordLength > size - position - 4) {
+            break;
+         }
+         position += 4 + recordLength;
+      }
+      return position;
+   }
+
+   private static boolean readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+      while (buffer.hasRemaining()) {
+         if (channel.read(buffer, position + buffer.position()) == -1) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Replaces the content of the file by one record containing the data; the file is replaced atomically.
+    *
+    * @param file Binary result file
+    * @param data Data to save
+    * @throws IOException Thrown if the file can not be written
+    */
+   static void store(final File file, final Kopemedata data) throws IOException {
+      final byte[] record = encode(data);
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         ResultFileLock.writeAtomically(file, target -> {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(target))) {
+               out.writeInt(MAGIC);
+               out.writeByte(VERSION);
+               out.writeInt(record.length);
+               out.write(record);
+            }
+         });
+      }
+   }
+
+   /**
+    * Appends one record containing the entry to the file. A damaged last record, e.g. because the writing process
+    * crashed, is removed before, since its length would otherwise cover the new record.
+    *
+    * @param file Existing binary result file
+    * @param entry Data containing the new results
+    * @throws IOException Thrown if the file can not be written
+    */
+   static void append(final File file, final Kopemedata entry) throws IOException {
+      try (ResultFileLock lock = ResultFileLock.lock(file);
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+         final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+         if (!readFully(channel, header, 0) || header.getInt(0) != MAGIC || header.get(4) != VERSION) {
+            throw new IOException(file + " is no binary result file of version " + VERSION);
+         }
+         long position = findEndOfRecords(channel);
+         if (position < channel.size()) {
+            LOG.warn("Removing damaged last record of {}", file.getAbsolutePath());
+            channel.truncate(position);
+         }
+         final byte[] record = encode(entry);
+         final ByteBuffer serialized = ByteBuffer.allocate(record.length + 4);
+         serialized.putInt(record.length).put(record).flip();
+         while (serialized.hasRemaining()) {
+            position += channel.write(serialized, position);
+         }
+      }
+   }
+
+   private static byte[] encode(final Kopemedata data) throws IOException {
+      final RecordWriter writer = new RecordWriter();
+      writer.writeDocument(data);
+      return writer.toByteArray();
+   }
+
+   private static final class RecordWriter {
+      private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      private final DataOutputStream out = new DataOutputStream(bytes);
+      private final Map<String, Integer> strings = new HashMap<>();
+
+      byte[] toByteArray() {
+         return bytes.toByteArray();
+      }
+
+      void writeDocument(final Kopemedata data) throws IOException {
+         final Configurations configurations = data.getConfigurations();
+         if (writePresence(configurations)) {
+            writeVarLong(configurations.getConfiguration().size());
+            for (final ConfigType configuration : configurations.getConfiguration()) {
+               writeString(configuration.getName());
+               writeString(configuration.getCpu());
+               writeString(configuration.getRam());
+               writeString(configuration.getGovernor());
+               writeString(configuration.getKernel());
+               writeString(configuration.getJvm());
+               writeString(configuration.getJvmFlags());
+               writeString(configuration.getGc());
+            }
+         }
+         final Testcases testcases = data.getTestcases();
+         if (writePresence(testcases)) {
+            writeString(testcases.getClazz());
+            writeVarLong(testcases.getTestcase().size());
+            for (final TestcaseType testcase : testcases.getTestcase()) {
+               writeString(testcase.getName());
+               writeVarLong(testcase.getDatacollector().size());
+               for (final Datacollector collector : testcase.getDatacollector()) {
+                  writeCollector(collector);
+               }
+            }
+         }
+      }
+
+      private void writeCollector(final Datacollector collector) throws IOException {
+         writeString(collector.getName());
+         final Summary summary = collector.getSummary();
+         if (writePresence(summary)) {
+            writeVarLong(summary.getCount());
+            out.writeDouble(summary.getMean());
+            out.writeDouble(summary.getVariance());
+            out.writeDouble(summary.getMin());
+            out.writeDouble(summary.getMax());
+            writeNullableLong(summary.getFirstDate());
+            writeNullableLong(summary.getLastDate());
+            writeVarLong(summary.getBucket().size());
+            for (final Summary.Bucket bucket : summary.getBucket()) {
+               writeVarLong(bucket.getIndex());
+               writeVarLong(bucket.getValue());
+            }
+         }
+         writeVarLong(collector.getChunk().size());
+         for (final Chunk chunk : collector.getChunk()) {
+            writeNullableLong(chunk.getChunkStartTime());
+            writeResults(chunk.getResult());
+         }
+         writeResults(collector.getResult());
+      }
+
+      private void writeResults(final List<Result> results) throws IOException {
+         writeVarLong(results.size());
+         for (final Result result : results) {
+            writeResult(result);
+         }
+      }
+
+      private void writeResult(final Result result) throws IOException {
+         out.writeDouble(result.getValue());
+         out.writeDouble(result.getDeviation());
+         writeVarLong(result.getWarmup());
+         writeVarLong(result.getIterations());
+         writeVarLong(result.getRepetitions());
+         final Versioninfo version = result.getVersion();
+         if (writePresence(version)) {
+            writeString(version.getGitversion());
+            writeString(version.getCommitter());
+            writeNullableLong(version.getTime());
+         }
+         writeNullableDouble(result.getMin());
+         writeNullableDouble(result.getMax());
+         final Percentiles percentiles = result.getPercentiles();
+         if (writePresence(percentiles)) {
+            writeVarLong(percentiles.getPercentile().size());
+            for (final Percentile percentile : percentiles.getPercentile()) {
+               writeNullableDouble(percentile.getP());
+               out.writeDouble(percentile.getValue());
+            }
+         }
+         final WarmupCurve warmupCurve = result.getWarmupCurve();
+         if (writePresence(warmupCurve)) {
+            writeNullableLong(warmupCurve.getBlockSize() != null ? warmupCurve.getBlockSize().longValue() : null);
+            writeVarLong(warmupCurve.getMean().size());
+            for (final Double mean : warmupCurve.getMean()) {
+               out.writeDouble(mean);
+            }
+         }
+         writeNullableBoolean(result.isShowStart());
+         writeNullableBoolean(result.isExecuteBeforeClassInMeasurement());
+         writeNullableBoolean(result.isRedirectToTemp());
+         writeNullableBoolean(result.isRedirectToNull());
+         writeNullableBoolean(result.isUseKieker());
+         writeString(result.getJavaVersion());
+         final Params params = result.getParams();
+         if (writePresence(params)) {
+            writeVarLong(params.getParam().size());
+            for (final Param param : params.getParam()) {
+               writeString(param.getKey());
+               writeString(param.getValue());
+            }
+         }
+         final Fulldata fulldata = result.getFulldata();
+         if (writePresence(fulldata)) {
+            writeVarLong(fulldata.getValue().size());
+            for (final Fulldata.Value value : fulldata.getValue()) {
+               writeVarLong(value.getValue());
+               writeNullableLong(value.getStart());
+            }
+            writeString(fulldata.getFileName());
+         }
+         writeString(result.getCpu());
+         writeString(result.getMemory());
+         writeNullableLong(result.getDate());
+         writeNullableBoolean(result.isFailure());
+         writeNullableBoolean(result.isError());
+         writeNullableLong(result.getCputemperature());
+         writeString(result.getEnvironment());
+         writeFlightRecording(result.getFlightRecording());
+      }
+
+      private void writeFlightRecording(final FlightRecording flightRecording) throws IOException {
+         if (writePresence(flightRecording)) {
+            writeVarLong(flightRecording.getGcPauses());
+            writeVarLong(flightRecording.getGcPauseTime());
+            writeVarLong(flightRecording.getSafepoints());
+            writeVarLong(flightRecording.getSafepointTime());
+            writeVarLong(flightRecording.getThreadParks());
+            writeVarLong(flightRecording.getThreadParkTime());
+            writeString(flightRecording.getFile());
+            writeVarLong(flightRecording.getAllocationSite().size());
+            for (final FlightRecording.AllocationSite site : flightRecording.getAllocationSite()) {
+               writeString(site.getFrame());
+               writeVarLong(site.getSamples());
+               writeVarLong(site.getBytes());
+            }
+            writeVarLong(flightRecording.getContendedMonitor().size());
+            for (final FlightRecording.ContendedMonitor monitor : flightRecording.getContendedMonitor()) {
+               writeString(monitor.getClazz());
+               writeVarLong(monitor.getCount());
+               writeVarLong(monitor.getDuration());
+            }
+         }
+      }
+
+      private boolean writePresence(final Object value) throws IOException {
+         out.writeBoolean(value != null);
+         return value != null;
+      }
+
+      private void writeNullableLong(final Long value) throws IOException {
+         if (writePresence(value)) {
+            writeVarLong(value);
+         }
+      }
+
+      private void writeNullableDouble(final Double value) throws IOException {
+         if (writePresence(value)) {
+            out.writeDouble(value);
+         }
+      }
+
+      private void writeNullableBoolean(final Boolean value) throws IOException {
+         out.writeByte(value == null ? 0 : (value ? 2 : 1));
+      }
+
+      private void writeString(final String value) throws IOException {
+         if (value == null) {
+            writeVarLong(NULL_STRING);
+         } else {
+            final Integer index = strings.get(value);
+            if (index != null) {
+               writeVarLong(index);
+            } else {
+               strings.put(value, strings.size());
+               writeVarLong(NEW_STRING);
+               out.writeUTF(value);
+            }
+         }
+      }
+
+      private void writeVarLong(final long value) throws IOException {
+         long zigzag = (value << 1) ^ (value >> 63);
+         while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+         }
+         out.writeByte((int) zigzag);
+      }
+   }
+
+   private static final class RecordReader {
+      private final DataInputStream in;
+      private final List<String> strings = new ArrayList<>();
+
+      RecordReader(final byte[] record) {
+         in = new DataInputStream(new ByteArrayInputStream(record));
+      }
+
+      Kopemedata readDocument() throws IOException {
+         final Kopemedata data = new Kopemedata();
+         if (in.readBoolean()) {
+            final Configurations configurations = new Configurations();
+            final int count = readCount();
+            for (int i = 0; i < count; i++) {
+               final ConfigType configuration = new ConfigType();
+               configuration.setName(readString());
+               configuration.setCpu(readString());
+               configuration.setRam(readString());
+               configuration.setGovernor(readString());
+               configuration.setKernel(readString());
+               configuration.setJvm(readString());
+               configuration.setJvmFlags(readString());
+               configuration.setGc(readString());
+               configurations.getConfiguration().add(configuration);
+            }
+            data.setConfigurations(configurations);
+         }
+         if (in.readBoolean()) {
+            final Testcases testcases = new Testcases();
+            testcases.setClazz(readString());
+            final int testcaseCount = readCount();
+            for (int i = 0; i < testcaseCount; i++) {
+               final TestcaseType testcase = new TestcaseType();
+               testcase.setName(readString());
+               final int collectorCount = readCount();
+               for (int j = 0; j < collectorCount; j++) {
+                  testcase.getDatacollector().add(readCollector());
+               }
+               testcases.getTestcase().add(testcase);
+            }
+            data.setTestcases(testcases);
+         }
+         return data;
+      }
+
+      private Datacollector readCollector() throws IOException {
+         final Datacollector collector = new Datacollector();
+         collector.setName(readString());
+         if (in.readBoolean()) {
+            final Summary summary = new Summary();
+            summary.setCount(readVarLong());
+            summary.setMean(in.readDouble());
+            summary.setVariance(in.readDouble());
+            summary.setMin(in.readDouble());
+            summary.setMax(in.readDouble());
+            summary.setFirstDate(readNullableLong());
+            summary.setLastDate(readNullableLong());
+            final int bucketCount = readCount();
+            for (int i = 0; i < bucketCount; i++) {
+               final Summary.Bucket bucket = new Summary.Bucket();
+               bucket.setIndex((int) readVarLong());
+               bucket.setValue(readVarLong());
+               summary.getBucket().add(bucket);
+            }
+            collector.setSummary(summary);
+         }
+         final int chunkCount = readCount();
+         for (int i = 0; i < chunkCount; i++) {
+            final Chunk chunk = new Chunk();
+            chunk.setChunkStartTime(readNullableLong());
+            readResults(chunk.getResult());
+            collector.getChunk().add(chunk);
+         }
+         readResults(collector.getResult());
+         return collector;
+      }
+
+      private void readResults(final List<Result> results) throws IOException {
+         final int count = readCount();
+         for (int i = 0; i < count; i++) {
+            results.add(readResult());
+         }
+      }
+
+      private Result readResult() throws IOException {
+         final Result result = new Result();
+         result.setValue(in.readDouble());
+         result.setDeviation(in.readDouble());
+         result.setWarmup(readVarLong());
+         result.setIterations(readVarLong());
+         result.setRepetitions(readVarLong());
+         if (in.readBoolean()) {
+            final Versioninfo version = new Versioninfo();
+            version.setGitversion(readString());
+            version.setCommitter(readString());
+            version.setTime(readNullableLong());
+            result.setVersion(version);
+         }
+         result.setMin(readNullableDouble());
+         result.setMax(readNullableDouble());
+         if (in.readBoolean()) {
+            final Percentiles percentiles = new Percentiles();
+            final int count = readCount();
+            for (int i = 0; i < count; i++) {
+               final Percentile percentile = new Percentile();
+               percentile.setP(readNullableDouble());
+               percentile.setValue(in.readDouble());
+               percentiles.getPercentile().add(percentile);
+            }
+            result.setPercentiles(percentiles);
+         }
+         if (in.readBoolean()) {
+            final WarmupCurve warmupCurve = new WarmupCurve();
+            final Long blockSize = readNullableLong();
+            warmupCurve.setBlockSize(blockSize != null ? blockSize.intValue() : null);
+            final int count = readCount();
+            for (int i = 0; i < count; i++) {
+               warmupCurve.getMean().add(in.readDouble());
+            }
+            result.setWarmupCurve(warmupCurve);
+         }
+         result.setShowStart(readNullableBoolean());
+         result.setExecuteBeforeClassInMeasurement(readNullableBoolean());
+         result.setRedirectToTemp(readNullableBoolean());
+         result.setRedirectToNull(readNullableBoolean());
+         result.setUseKieker(readNullableBoolean());
+         result.setJavaVersion(readString());
+         if (in.readBoolean()) {
+            final Params params = new Params();
+            final int count = readCount();
+            for (int i = 0; i < count; i++) {
+               final Param param = new Param();
+               param.setKey(readString());
+               param.setValue(readString());
+               params.getParam().add(param);
+            }
+            result.setParams(params);
+         }
+         if (in.readBoolean()) {
+            final Fulldata fulldata = new Fulldata();
+            final int count = readCount();
+            for (int i = 0; i < count; i++) {
+               final Fulldata.Value value = new Fulldata.Value();
+               value.setValue(readVarLong());
+               value.setStart(readNullableLong());
+               fulldata.getValue().add(value);
+            }
+            fulldata.setFileName(readString());
+            result.setFulldata(fulldata);
+         }
+         result.setCpu(readString());
+         result.setMemory(readString());
+         result.setDate(readNullableLong());
+         result.setFailure(readNullableBoolean());
+         result.setError(readNullableBoolean());
+         result.setCputemperature(readNullableLong());
+         result.setEnvironment(readString());
+         if (in.readBoolean()) {
+            result.setFlightRecording(readFlightRecording());
+         }
+         return result;
+      }
+
+      private FlightRecording readFlightRecording() throws IOException {
+         final FlightRecording flightRecording = new FlightRecording();
+         flightRecording.setGcPauses(readVarLong());
+         flightRecording.setGcPauseTime(readVarLong());
+         flightRecording.setSafepoints(readVarLong());
+         flightRecording.setSafepointTime(readVarLong());
+         flightRecording.setThreadParks(readVarLong());
+         flightRecording.setThreadParkTime(readVarLong());
+         flightRecording.setFile(readString());
+         final int sites = readCount();
+         for (int i = 0; i < sites; i++) {
+            final FlightRecording.AllocationSite site = new FlightRecording.AllocationSite();
+            site.setFrame(readString());
+            site.setSamples(readVarLong());
+            site.setBytes(readVarLong());
+            flightRecording.getAllocationSite().add(site);
+         }
+         final int monitors = readCount();
+         for (int i = 0; i < monitors; i++) {
+            final FlightRecording.ContendedMonitor monitor = new FlightRecording.ContendedMonitor();
+            monitor.setClazz(readString());
+            monitor.setCount(readVarLong());
+            monitor.setDuration(readVarLong());
+            flightRecording.getContendedMonitor().add(monitor);
+         }
+         return flightRecording;
+      }
+
+      private int readCount() throws IOException {
+         return (int) readVarLong();
+      }
+
+      private Long readNullableLong() throws IOException {
+         return in.readBoolean() ? readVarLong() : null;
+      }
+
+      private Double readNullableDouble() throws IOException {
+         return in.readBoolean() ? in.readDouble() : null;
+      }
+
+      private Boolean readNullableBoolean() throws IOException {
+         final byte value = in.readByte();
+         return value == 0 ? null : value == 2;
+      }
+
+      private String readString() throws IOException {
+         final long code = readVarLong();
+         if (code == NULL_STRING) {
+            return null;
+         } else if (code == NEW_STRING) {
+            final String value = in.readUTF();
+            strings.add(value);
+            return value;
+         } else {
+            return strings.get((int) code);
+         }
+      }
+
+      private long readVarLong() throws IOException {
+         long zigzag = 0;
+         int shift = 0;
+         byte current;
+         do {
+            current = in.readByte();
+            zigzag |= (long) (current & 0x7F) << shift;
+            shift += 7;
+         } while ((current & 0x80) != 0);
+         return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+   }
+}
@@ -0,0 +1,44 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.dagere.kopeme.generated.Kopemedata;
+
+/**
+ * Compact binary format, which is much smaller and faster to load and store than XML; see {@link BinaryResultFile} for the layout.
+ *
+ * @author reichelt
+ *
+ */
+public final class BinaryResultFormat implements ResultFormat {
+
+   public static final String NAME = "binary";
+
+   public static final String EXTENSION = ".kopeme";
+
+   @Override
+   public String getName() {
+      return NAME;
+   }
+
+   @Override
+   public String getFileExtension() {
+      return EXTENSION;
+   }
+
+   @Override
+   public DataStorer createStorer(final File folder, final String classname, final String methodname) throws IOException {
+      return new BinaryDataStorer(folder, classname, methodname);
+   }
+
+   @Override
+   public Kopemedata load(final File file) throws IOException {
+      return BinaryResultFile.load(file);
+   }
+
+   @Override
+   public void store(final File file, final Kopemedata data) throws IOException {
+      BinaryResultFile.store(file, data);
+   }
+}
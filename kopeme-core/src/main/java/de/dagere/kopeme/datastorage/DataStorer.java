@@ -1,5 +1,7 @@
 package de.dagere.kopeme.datastorage;
 
+import java.util.Map;
+
 import de.dagere.kopeme.generated.Result;
 
 /**
@@ -11,4 +13,17 @@ import de.dagere.kopeme.generated.Result;
 public interface DataStorer {
 
    void storeValue(Result performanceDataMeasure, String testcase, String collectorName);
+
+   /**
+    * Stores the results of all collectors of one test execution at once. By default, every result is stored separately; storers should override this to
+    * write all results in one step.
+    * 
+    * @param results Results, mapped from the name of their collector
+    * @param testcase Name of the testcase
+    */
+   default void storeValues(final Map<String, Result> results, final String testcase) {
+      for (final Map.Entry<String, Result> result : results.entrySet()) {
+         storeValue(result.getValue(), testcase, result.getKey());
+      }
+   }
 }
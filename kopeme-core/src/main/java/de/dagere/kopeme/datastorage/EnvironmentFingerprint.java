@@ -0,0 +1,190 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.ConfigType;
+
+/**
+ * Description of the environment of the current process: cpu model, memory, cpufreq governor, kernel, JVM, JVM flags and garbage collectors. It is read once
+ * per process from <code>/proc</code>, <code>/sys</code> and the management beans without starting processes, so storing results does not disturb measurements
+ * running in parallel. Results reference the description by its hash (see {@link de.dagere.kopeme.generated.Result#getEnvironment()}), and every result file
+ * contains the description once as configuration named by the hash.
+ *
+ * @author reichelt
+ *
+ */
+public final class EnvironmentFingerprint {
+
+   private static final Logger LOG = LogManager.getLogger(EnvironmentFingerprint.class);
+
+   private static final File CPUINFO = new File("/proc/cpuinfo");
+   private static final File MEMINFO = new File("/proc/meminfo");
+   private static final File GOVERNOR = new File("/sys/devices/system/cpu/cpu0/cpufreq/scaling_governor");
+
+   private static EnvironmentFingerprint instance;
+
+   private final String cpu;
+   private final String memory;
+   private final String governor;
+   private final String kernel;
+   private final String jvm;
+   private final String jvmFlags;
+   private final String gc;
+   private final String hash;
+
+   /**
+    * Returns the description of the current process, which is determined on the first call.
+    *
+    * @return Environment fingerprint
+    */
+   public static synchronized EnvironmentFingerprint getInstance() {
+      if (instance == null) {
+         instance = new EnvironmentFingerprint();
+      }
+      return instance;
+   }
+
+   private EnvironmentFingerprint() {
+      final String os = System.getProperty("os.name");
+      if (!os.startsWith("Windows") && !os.startsWith("Mac")) {
+         cpu = readLines(CPUINFO, "model name", true);
+         memory = readLines(MEMINFO, "MemTotal", false);
+         final String governorLine = readLines(GOVERNOR, "", false);
+         governor = governorLine.isEmpty() ? null : governorLine;
+      } else {
+         cpu = "";
+         memory = "";
+         governor = null;
+      }
+      kernel = os + " " + System.getProperty("os.version") + " " + System.getProperty("os.arch");
+      jvm = System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version");
+      jvmFlags = getJVMFlags();
+      gc = getGarbageCollectors();
+      hash = createHash(cpu, memory, governor, kernel, jvm, jvmFlags, gc);
+   }
+
+   /**
+    * Returns the lines of the file starting with the prefix, formatted like the output of <code>grep prefix file | uniq</code> without tabs, double spaces and
+    * line breaks, which was stored by earlier versions.
+    */
+   private static String readLines(final File file, final String prefix, final boolean unique) {
+      if (!file.canRead()) {
+         return "";
+      }
+      try {
+         final StringBuilder lines = new StringBuilder();
+         String last = null;
+         for (final String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith(prefix) && (!unique || !line.equals(last))) {
+               lines.append(line).append('\n');
+               last = line;
+            }
+         }
+         return lines.toString().replace("\t", " ").replace("  ", "").replace("\n", "");
+      } catch (final IOException e) {
+         LOG.warn("Could not read {}: {}", file, e.getMessage());
+         return "";
+      }
+   }
+
+   /**
+    * Returns the -X flags of the JVM; other arguments like system properties and agents often contain paths that change with every run.
+    */
+   private static String getJVMFlags() {
+      final List<String> flags = new ArrayList<>();
+      for (final String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+         if (argument.startsWith("-X")) {
+            flags.add(argument);
+         }
+      }
+      return String.join(" ", flags);
+   }
+
+   private static String getGarbageCollectors() {
+      final List<String> collectors = new ArrayList<>();
+      for (final GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+         collectors.add(bean.getName());
+      }
+      return String.join(", ", collectors);
+   }
+
+   private static String createHash(final String... values) {
+      try {
+         final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         for (final String value : values) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+         }
+         final StringBuilder hex = new StringBuilder();
+         final byte[] bytes = digest.digest();
+         for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+         }
+         return hex.toString();
+      } catch (final NoSuchAlgorithmException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Creates the configuration describing the environment, named by the hash.
+    *
+    * @return Configuration
+    */
+   public ConfigType toConfiguration() {
+      final ConfigType configuration = new ConfigType();
+      configuration.setName(hash);
+      configuration.setCpu(cpu);
+      configuration.setRam(memory);
+      configuration.setGovernor(governor);
+      configuration.setKernel(kernel);
+      configuration.setJvm(jvm);
+      configuration.setJvmFlags(jvmFlags);
+      configuration.setGc(gc);
+      return configuration;
+   }
+
+   public String getHash() {
+      return hash;
+   }
+
+   public String getCpu() {
+      return cpu;
+   }
+
+   public String getMemory() {
+      return memory;
+   }
+
+   public String getGovernor() {
+      return governor;
+   }
+
+   public String getKernel() {
+      return kernel;
+   }
+
+   public String getJvm() {
+      return jvm;
+   }
+
+   public String getJvmFlags() {
+      return jvmFlags;
+   }
+
+   public String getGc() {
+      return gc;
+   }
+}
@@ -0,0 +1,42 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects all errors that occured while reading fulldata files, so one broken file does not hide the errors of other files. Every cause is added as suppressed
+ * exception.
+ * 
+ * @author reichelt
+ *
+ */
+public class FulldataLoadingException extends RuntimeException {
+
+   private static final long serialVersionUID = 1L;
+
+   private final Map<File, Throwable> failedFiles = new LinkedHashMap<>();
+
+   public FulldataLoadingException() {
+      super("Fulldata files could not be read");
+   }
+
+   public void addFailure(final File dataFile, final Throwable cause) {
+      failedFiles.put(dataFile, cause);
+      addSuppressed(cause);
+   }
+
+   /**
+    * Returns all files that could not be read, in the order of their results, mapped to the reason.
+    * 
+    * @return Failed files and their errors
+    */
+   public Map<File, Throwable> getFailedFiles() {
+      return failedFiles;
+   }
+
+   @Override
+   public String getMessage() {
+      return super.getMessage() + ": " + failedFiles.keySet();
+   }
+}
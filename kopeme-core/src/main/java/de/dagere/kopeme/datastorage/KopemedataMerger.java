@@ -0,0 +1,412 @@
+package de.dagere.kopeme.datastorage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import de.dagere.kopeme.generated.ConfigType;
+import de.dagere.kopeme.generated.FlightRecording;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Configurations;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.Result.Params;
+import de.dagere.kopeme.generated.Result.Params.Param;
+import de.dagere.kopeme.generated.Result.Percentiles;
+import de.dagere.kopeme.generated.Result.Percentiles.Percentile;
+import de.dagere.kopeme.generated.Result.WarmupCurve;
+import de.dagere.kopeme.generated.Summary;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector.Chunk;
+import de.dagere.kopeme.generated.Versioninfo;
+
+/**
+ * Adds the results of other documents to a target document. Configurations, testcases, collectors and chunks of the target are indexed by hash maps once, so adding many
+ * documents, e.g. all entries of a journal, does not scan the target again for every document. Additionally, provides a structural deep copy of the model,
+ * which is much cheaper than marshalling and unmarshalling.
+ *
+ * @author reichelt
+ *
+ */
+public final class KopemedataMerger {
+
+   private final Kopemedata data;
+   private final boolean deduplicate;
+   private final Map<String, ConfigType> configurations = new HashMap<>();
+   private final Map<String, TestcaseType> testcases = new HashMap<>();
+   private final Map<TestcaseType, Map<String, Datacollector>> collectors = new IdentityHashMap<>();
+   private final Map<Datacollector, Map<Long, Chunk>> chunks = new IdentityHashMap<>();
+   private final Map<List<Result>, Set<ResultKey>> resultKeys = new IdentityHashMap<>();
+
+   /**
+    * Key of a result for detecting results that are contained in both merged documents.
+    */
+   private static final class ResultKey {
+      private final long date;
+      private final String params;
+
+      ResultKey(final Result result) {
+         date = result.getDate();
+         params = ParamNameHelper.paramsToString(result.getParams());
+      }
+
+      @Override
+      public boolean equals(final Object obj) {
+         if (!(obj instanceof ResultKey)) {
+            return false;
+         }
+         final ResultKey other = (ResultKey) obj;
+         return date == other.date && Objects.equals(params, other.params);
+      }
+
+      @Override
+      public int hashCode() {
+         return Long.hashCode(date) * 31 + Objects.hashCode(params);
+      }
+   }
+
+   /**
+    * Creates a merger that appends all results to the target.
+    *
+    * @param data Target document, which is changed by adding documents
+    */
+   public KopemedataMerger(final Kopemedata data) {
+      this(data, false);
+   }
+
+   /**
+    * Creates a merger.
+    *
+    * @param data Target document, which is changed by adding documents
+    * @param deduplicate Whether results with the same date and params as a result of the same collector or chunk of the target should be skipped
+    */
+   public KopemedataMerger(final Kopemedata data, final boolean deduplicate) {
+      this.data = data;
+      this.deduplicate = deduplicate;
+      if (data.getTestcases() == null) {
+         data.setTestcases(new Testcases());
+      }
+      for (final TestcaseType testcase : data.getTestcases().getTestcase()) {
+         testcases.putIfAbsent(testcase.getName(), testcase);
+      }
+      if (data.getConfigurations() != null) {
+         for (final ConfigType configuration : data.getConfigurations().getConfiguration()) {
+            configurations.putIfAbsent(configuration.getName(), configuration);
+         }
+      }
+   }
+
+   /**
+    * Returns a document containing copies of all content of both documents; results of the second document that have the same date and params as a result of
+    * the first document are skipped. Neither document is changed.
+    *
+    * @param first First document; its class and configurations are used
+    * @param second Second document
+    * @return Merged document
+    */
+   public static Kopemedata merge(final Kopemedata first, final Kopemedata second) {
+      final Kopemedata merged = copy(first);
+      new KopemedataMerger(merged, true).add(copy(second));
+      return merged;
+   }
+
+   /**
+    * Adds all testcases, collectors, chunks and results of the entry to the target, creating those that do not exist yet; summaries of compacted results are
+    * merged, and configurations are added if the target contains no configuration with the same name. The objects of the entry are reused, so the entry
+    * should not be used afterwards.
+    *
+    * @param entry Document containing the new results
+    */
+   public void add(final Kopemedata entry) {
+      if (entry.getConfigurations() != null) {
+         for (final ConfigType configuration : entry.getConfigurations().getConfiguration()) {
+            if (!configurations.containsKey(configuration.getName())) {
+               if (data.getConfigurations() == null) {
+                  data.setConfigurations(new Configurations());
+               }
+               data.getConfigurations().getConfiguration().add(configuration);
+               configurations.put(configuration.getName(), configuration);
+            }
+         }
+      }
+      if (entry.getTestcases() == null) {
+         return;
+      }
+      for (final TestcaseType entryTestcase : entry.getTestcases().getTestcase()) {
+         final TestcaseType testcase = getTestcase(entryTestcase.getName());
+         for (final Datacollector entryCollector : entryTestcase.getDatacollector()) {
+            final Datacollector collector = getCollector(testcase, entryCollector.getName());
+            for (final Chunk entryChunk : entryCollector.getChunk()) {
+               addResults(getChunk(collector, entryChunk.getChunkStartTime()).getResult(), entryChunk.getResult());
+            }
+            addResults(collector.getResult(), entryCollector.getResult());
+            if (entryCollector.getSummary() != null) {
+               if (collector.getSummary() == null) {
+                  collector.setSummary(entryCollector.getSummary());
+               } else {
+                  ResultCompactor.merge(collector.getSummary(), entryCollector.getSummary());
+               }
+            }
+         }
+      }
+   }
+
+   private void addResults(final List<Result> target, final List<Result> results) {
+      if (!deduplicate) {
+         target.addAll(results);
+         return;
+      }
+      Set<ResultKey> keys = resultKeys.get(target);
+      if (keys == null) {
+         keys = new HashSet<>();
+         for (final Result result : target) {
+            if (result.getDate() != null) {
+               keys.add(new ResultKey(result));
+            }
+         }
+         resultKeys.put(target, keys);
+      }
+      for (final Result result : results) {
+         if (result.getDate() == null || keys.add(new ResultKey(result))) {
+            target.add(result);
+         }
+      }
+   }
+
+   private TestcaseType getTestcase(final String name) {
+      TestcaseType testcase = testcases.get(name);
+      if (testcase == null) {
+         testcase = new TestcaseType();
+         testcase.setName(name);
+         data.getTestcases().getTestcase().add(testcase);
+         testcases.put(name, testcase);
+      }
+      return testcase;
+   }
+
+   private Datacollector getCollector(final TestcaseType testcase, final String name) {
+      Map<String, Datacollector> testcaseCollectors = collectors.get(testcase);
+      if (testcaseCollectors == null) {
+         testcaseCollectors = new HashMap<>();
+         for (final Datacollector collector : testcase.getDatacollector()) {
+            testcaseCollectors.putIfAbsent(collector.getName(), collector);
+         }
+         collectors.put(testcase, testcaseCollectors);
+      }
+      Datacollector collector = testcaseCollectors.get(name);
+      if (collector == null) {
+         collector = new Datacollector();
+         collector.setName(name);
+         testcase.getDatacollector().add(collector);
+         testcaseCollectors.put(name, collector);
+      }
+      return collector;
+   }
+
+   private Chunk getChunk(final Datacollector collector, final Long start) {
+      Map<Long, Chunk> collectorChunks = chunks.get(collector);
+      if (collectorChunks == null) {
+         collectorChunks = new HashMap<>();
+         for (final Chunk chunk : collector.getChunk()) {
+            collectorChunks.putIfAbsent(chunk.getChunkStartTime(), chunk);
+         }
+         chunks.put(collector, collectorChunks);
+      }
+      Chunk chunk = collectorChunks.get(start);
+      if (chunk == null) {
+         chunk = new Chunk();
+         chunk.setChunkStartTime(start);
+         collector.getChunk().add(chunk);
+         collectorChunks.put(start, chunk);
+      }
+      return chunk;
+   }
+
+   /**
+    * Creates a deep copy of the document.
+    *
+    * @param data Document
+    * @return Copy sharing no mutable objects with the document
+    */
+   public static Kopemedata copy(final Kopemedata data) {
+      final Kopemedata copy = new Kopemedata();
+      if (data.getConfigurations() != null) {
+         final Configurations configurations = new Configurations();
+         for (final ConfigType configuration : data.getConfigurations().getConfiguration()) {
+            final ConfigType configurationCopy = new ConfigType();
+            configurationCopy.setName(configuration.getName());
+            configurationCopy.setCpu(configuration.getCpu());
+            configurationCopy.setRam(configuration.getRam());
+            configurationCopy.setGovernor(configuration.getGovernor());
+            configurationCopy.setKernel(configuration.getKernel());
+            configurationCopy.setJvm(configuration.getJvm());
+            configurationCopy.setJvmFlags(configuration.getJvmFlags());
+            configurationCopy.setGc(configuration.getGc());
+            configurations.getConfiguration().add(configurationCopy);
+         }
+         copy.setConfigurations(configurations);
+      }
+      if (data.getTestcases() != null) {
+         final Testcases testcasesCopy = new Testcases();
+         testcasesCopy.setClazz(data.getTestcases().getClazz());
+         for (final TestcaseType testcase : data.getTestcases().getTestcase()) {
+            final TestcaseType testcaseCopy = new TestcaseType();
+            testcaseCopy.setName(testcase.getName());
+            for (final Datacollector collector : testcase.getDatacollector()) {
+               testcaseCopy.getDatacollector().add(copy(collector));
+            }
+            testcasesCopy.getTestcase().add(testcaseCopy);
+         }
+         copy.setTestcases(testcasesCopy);
+      }
+      return copy;
+   }
+
+   private static Datacollector copy(final Datacollector collector) {
+      final Datacollector copy = new Datacollector();
+      copy.setName(collector.getName());
+      if (collector.getSummary() != null) {
+         copy.setSummary(copy(collector.getSummary()));
+      }
+      for (final Chunk chunk : collector.getChunk()) {
+         final Chunk chunkCopy = new Chunk();
+         chunkCopy.setChunkStartTime(chunk.getChunkStartTime());
+         for (final Result result : chunk.getResult()) {
+            chunkCopy.getResult().add(copy(result));
+         }
+         copy.getChunk().add(chunkCopy);
+      }
+      for (final Result result : collector.getResult()) {
+         copy.getResult().add(copy(result));
+      }
+      return copy;
+   }
+
+   private static Summary copy(final Summary summary) {
+      final Summary copy = new Summary();
+      copy.setCount(summary.getCount());
+      copy.setMean(summary.getMean());
+      copy.setVariance(summary.getVariance());
+      copy.setMin(summary.getMin());
+      copy.setMax(summary.getMax());
+      copy.setFirstDate(summary.getFirstDate());
+      copy.setLastDate(summary.getLastDate());
+      for (final Summary.Bucket bucket : summary.getBucket()) {
+         final Summary.Bucket bucketCopy = new Summary.Bucket();
+         bucketCopy.setIndex(bucket.getIndex());
+         bucketCopy.setValue(bucket.getValue());
+         copy.getBucket().add(bucketCopy);
+      }
+      return copy;
+   }
+
+   private static FlightRecording copy(final FlightRecording flightRecording) {
+      final FlightRecording copy = new FlightRecording();
+      copy.setGcPauses(flightRecording.getGcPauses());
+      copy.setGcPauseTime(flightRecording.getGcPauseTime());
+      copy.setSafepoints(flightRecording.getSafepoints());
+      copy.setSafepointTime(flightRecording.getSafepointTime());
+      copy.setThreadParks(flightRecording.getThreadParks());
+      copy.setThreadParkTime(flightRecording.getThreadParkTime());
+      copy.setFile(flightRecording.getFile());
+      for (final FlightRecording.AllocationSite site : flightRecording.getAllocationSite()) {
+         final FlightRecording.AllocationSite siteCopy = new FlightRecording.AllocationSite();
+         siteCopy.setFrame(site.getFrame());
+         siteCopy.setSamples(site.getSamples());
+         siteCopy.setBytes(site.getBytes());
+         copy.getAllocationSite().add(siteCopy);
+      }
+      for (final FlightRecording.ContendedMonitor monitor : flightRecording.getContendedMonitor()) {
+         final FlightRecording.ContendedMonitor monitorCopy = new FlightRecording.ContendedMonitor();
+         monitorCopy.setClazz(monitor.getClazz());
+         monitorCopy.setCount(monitor.getCount());
+         monitorCopy.setDuration(monitor.getDuration());
+         copy.getContendedMonitor().add(monitorCopy);
+      }
+      return copy;
+   }
+
+   /**
+    * Creates a deep copy of the result.
+    *
+    * @param result Result
+    * @return Copy sharing no mutable objects with the result
+    */
+   public static Result copy(final Result result) {
+      final Result copy = new Result();
+      copy.setValue(result.getValue());
+      copy.setDeviation(result.getDeviation());
+      copy.setWarmup(result.getWarmup());
+      copy.setIterations(result.getIterations());
+      copy.setRepetitions(result.getRepetitions());
+      if (result.getVersion() != null) {
+         final Versioninfo version = new Versioninfo();
+         version.setGitversion(result.getVersion().getGitversion());
+         version.setCommitter(result.getVersion().getCommitter());
+         version.setTime(result.getVersion().getTime());
+         copy.setVersion(version);
+      }
+      copy.setMin(result.getMin());
+      copy.setMax(result.getMax());
+      if (result.getPercentiles() != null) {
+         final Percentiles percentiles = new Percentiles();
+         for (final Percentile percentile : result.getPercentiles().getPercentile()) {
+            final Percentile percentileCopy = new Percentile();
+            percentileCopy.setP(percentile.getP());
+            percentileCopy.setValue(percentile.getValue());
+            percentiles.getPercentile().add(percentileCopy);
+         }
+         copy.setPercentiles(percentiles);
+      }
+      if (result.getWarmupCurve() != null) {
+         final WarmupCurve warmupCurve = new WarmupCurve();
+         warmupCurve.setBlockSize(result.getWarmupCurve().getBlockSize());
+         warmupCurve.getMean().addAll(result.getWarmupCurve().getMean());
+         copy.setWarmupCurve(warmupCurve);
+      }
+      copy.setShowStart(result.isShowStart());
+      copy.setExecuteBeforeClassInMeasurement(result.isExecuteBeforeClassInMeasurement());
+      copy.setRedirectToTemp(result.isRedirectToTemp());
+      copy.setRedirectToNull(result.isRedirectToNull());
+      copy.setUseKieker(result.isUseKieker());
+      copy.setJavaVersion(result.getJavaVersion());
+      if (result.getParams() != null) {
+         final Params params = new Params();
+         for (final Param param : result.getParams().getParam()) {
+            final Param paramCopy = new Param();
+            paramCopy.setKey(param.getKey());
+            paramCopy.setValue(param.getValue());
+            params.getParam().add(paramCopy);
+         }
+         copy.setParams(params);
+      }
+      if (result.getFulldata() != null) {
+         final Fulldata fulldata = new Fulldata();
+         for (final Fulldata.Value value : result.getFulldata().getValue()) {
+            final Fulldata.Value valueCopy = new Fulldata.Value();
+            valueCopy.setValue(value.getValue());
+            valueCopy.setStart(value.getStart());
+            fulldata.getValue().add(valueCopy);
+         }
+         fulldata.setFileName(result.getFulldata().getFileName());
+         copy.setFulldata(fulldata);
+      }
+      copy.setCpu(result.getCpu());
+      copy.setMemory(result.getMemory());
+      copy.setEnvironment(result.getEnvironment());
+      copy.setDate(result.getDate());
+      copy.setFailure(result.isFailure());
+      copy.setError(result.isError());
+      copy.setCputemperature(result.getCputemperature());
+      if (result.getFlightRecording() != null) {
+         copy.setFlightRecording(copy(result.getFlightRecording()));
+      }
+      return copy;
+   }
+}
@@ -0,0 +1,297 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.datacollection.tempfile.QuantileSketch;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Summary;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector.Chunk;
+
+/**
+ * Folds old results of result files into the {@link Summary} of their collector, so result files do not grow forever. A result is folded if it is older than
+ * the retention time and not one of the newest results that should be kept of its collector; results without date are always kept. The summary contains
+ * count, mean, variance, minimum and maximum of the values of the folded results and a {@link QuantileSketch} of the values rounded to longs; summaries are
+ * merged like by {@link org.apache.commons.math3.stat.descriptive.AggregateSummaryStatistics}, so compacting again extends the existing summary.
+ *
+ * The result file is locked from reading until writing (see {@link ResultFileLock}), so compaction can run while other processes store results.
+ *
+ * @author reichelt
+ *
+ */
+public final class ResultCompactor {
+
+   private static final Logger LOG = LogManager.getLogger(ResultCompactor.class);
+
+   private static final long DAY = 24L * 60 * 60 * 1000;
+
+   private final long retention;
+   private final int keptResults;
+
+   /**
+    * Initializes the compactor.
+    *
+    * @param retention Time in milliseconds for which results are kept
+    * @param keptResults Count of newest results of every collector that are kept regardless of their age
+    */
+   public ResultCompactor(final long retention, final int keptResults) {
+      this.retention = retention;
+      this.keptResults = keptResults;
+   }
+
+   /**
+    * Compacts the result file; XML and all other {@link ResultFormat}s are supported. The journal of an XML result file is written into the result file even if
+    * no result is folded.
+    *
+    * @param file Result file
+    * @return Count of results that have been folded
+    * @throws IOException Thrown if the file can not be read or written
+    */
+   public int compact(final File file) throws IOException {
+      final long cutoff = System.currentTimeMillis() - retention;
+      final ResultFormat format = ResultFormats.getFormat(file);
+      if (format instanceof XMLResultFormat) {
+         ResultRepository.getInstance().flush(file);
+      }
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         final Kopemedata data = format instanceof XMLResultFormat ? XMLDataLoader.readData(file) : format.load(file);
+         final int folded = fold(data, cutoff);
+         // The results of the journal are always written into the result file, so compacting also stops the journal from growing
+         final boolean hasJournal = format instanceof XMLResultFormat && ResultJournal.getJournalFile(file).exists();
+         if (folded > 0 || hasJournal) {
+            LOG.info("Folded {} results of {}", folded, file);
+            if (format instanceof XMLResultFormat) {
+               XMLDataStorer.writeData(file, data);
+            } else {
+               format.store(file, data);
+            }
+         }
+         return folded;
+      } catch (final JAXBException e) {
+         throw new IOException(e);
+      }
+   }
+
+   /**
+    * Folds the results of the data that are older than the cutoff.
+    *
+    * @param data Data that should be compacted
+    * @param cutoff Date before which results are folded
+    * @return Count of results that have been folded
+    */
+   public int fold(final Kopemedata data, final long cutoff) {
+      int folded = 0;
+      for (final TestcaseType testcase : data.getTestcases().getTestcase()) {
+         for (final Datacollector collector : testcase.getDatacollector()) {
+            folded += fold(collector, cutoff);
+         }
+      }
+      return folded;
+   }
+
+   private int fold(final Datacollector collector, final long cutoff) {
+      final Set<Result> kept = getNewestResults(collector);
+      final SummaryBuilder builder = new SummaryBuilder();
+      for (final Iterator<Chunk> chunks = collector.getChunk().iterator(); chunks.hasNext();) {
+         final Chunk chunk = chunks.next();
+         foldResults(chunk.getResult(), cutoff, kept, builder);
+         if (chunk.getResult().isEmpty()) {
+            chunks.remove();
+         }
+      }
+      foldResults(collector.getResult(), cutoff, kept, builder);
+      if (builder.count > 0) {
+         final Summary summary = builder.build();
+         if (collector.getSummary() != null) {
+            merge(collector.getSummary(), summary);
+         } else {
+            collector.setSummary(summary);
+         }
+      }
+      return (int) builder.count;
+   }
+
+   private Set<Result> getNewestResults(final Datacollector collector) {
+      final List<Result> results = new ArrayList<>();
+      for (final Chunk chunk : collector.getChunk()) {
+         results.addAll(chunk.getResult());
+      }
+      results.addAll(collector.getResult());
+      results.removeIf(result -> result.getDate() == null);
+      results.sort((first, second) -> Long.compare(second.getDate(), first.getDate()));
+      final Set<Result> newest = Collections.newSetFromMap(new IdentityHashMap<>());
+      newest.addAll(results.subList(0, Math.min(keptResults, results.size())));
+      return newest;
+   }
+
+   private static void foldResults(final List<Result> results, final long cutoff, final Set<Result> kept, final SummaryBuilder builder) {
+      for (final Iterator<Result> iterator = results.iterator(); iterator.hasNext();) {
+         final Result result = iterator.next();
+         if (result.getDate() != null && result.getDate() < cutoff && !kept.contains(result)) {
+            builder.add(result);
+            iterator.remove();
+         }
+      }
+   }
+
+   /**
+    * Adds the values of the other summary to the target summary, using the pairwise update of mean and variance by Chan et al.
+    *
+    * @param target Summary that should be extended
+    * @param other Summary whose values should be added
+    */
+   public static void merge(final Summary target, final Summary other) {
+      final long count = target.getCount() + other.getCount();
+      if (other.getCount() == 0) {
+         return;
+      } else if (target.getCount() == 0) {
+         target.setMean(other.getMean());
+         target.setVariance(other.getVariance());
+         target.setMin(other.getMin());
+         target.setMax(other.getMax());
+      } else {
+         final double delta = other.getMean() - target.getMean();
+         final double m2 = getSquaredDeviations(target) + getSquaredDeviations(other) + delta * delta * target.getCount() * other.getCount() / count;
+         target.setMean(target.getMean() + delta * other.getCount() / count);
+         target.setVariance(count > 1 ? m2 / (count - 1) : 0);
+         target.setMin(Math.min(target.getMin(), other.getMin()));
+         target.setMax(Math.max(target.getMax(), other.getMax()));
+      }
+      target.setCount(count);
+      target.setFirstDate(combineDates(target.getFirstDate(), other.getFirstDate(), true));
+      target.setLastDate(combineDates(target.getLastDate(), other.getLastDate(), false));
+
+      final QuantileSketch sketch = getSketch(target);
+      sketch.merge(getSketch(other));
+      setSketch(target, sketch);
+   }
+
+   private static double getSquaredDeviations(final Summary summary) {
+      return summary.getVariance() * (summary.getCount() - 1);
+   }
+
+   private static Long combineDates(final Long first, final Long second, final boolean minimum) {
+      if (first == null || second == null) {
+         return first != null ? first : second;
+      }
+      return minimum ? Math.min(first, second) : Math.max(first, second);
+   }
+
+   /**
+    * Restores the quantile sketch of the summary, e.g. for estimating percentiles of the folded results.
+    *
+    * @param summary Summary
+    * @return Sketch of the values of the summary
+    */
+   public static QuantileSketch getSketch(final Summary summary) {
+      final QuantileSketch sketch = new QuantileSketch();
+      for (final Summary.Bucket bucket : summary.getBucket()) {
+         sketch.addBucketCount(bucket.getIndex(), bucket.getValue());
+      }
+      return sketch;
+   }
+
+   private static void setSketch(final Summary summary, final QuantileSketch sketch) {
+      summary.getBucket().clear();
+      for (final Map.Entry<Integer, Long> bucketCount : sketch.getBucketCounts().entrySet()) {
+         final Summary.Bucket bucket = new Summary.Bucket();
+         bucket.setIndex(bucketCount.getKey());
+         bucket.setValue(bucketCount.getValue());
+         summary.getBucket().add(bucket);
+      }
+   }
+
+   /**
+    * Collects the values of folded results by Welford's algorithm.
+    */
+   private static final class SummaryBuilder {
+      private final QuantileSketch sketch = new QuantileSketch();
+      private long count = 0;
+      private double mean = 0;
+      private double m2 = 0;
+      private double min = Double.POSITIVE_INFINITY;
+      private double max = Double.NEGATIVE_INFINITY;
+      private long firstDate = Long.MAX_VALUE;
+      private long lastDate = Long.MIN_VALUE;
+
+      void add(final Result result) {
+         final double value = result.getValue();
+         count++;
+         final double delta = value - mean;
+         mean += delta / count;
+         m2 += delta * (value - mean);
+         min = Math.min(min, value);
+         max = Math.max(max, value);
+         firstDate = Math.min(firstDate, result.getDate());
+         lastDate = Math.max(lastDate, result.getDate());
+         sketch.add(Math.round(value));
+      }
+
+      Summary build() {
+         final Summary summary = new Summary();
+         summary.setCount(count);
+         summary.setMean(mean);
+         summary.setVariance(count > 1 ? m2 / (count - 1) : 0);
+         summary.setMin(min);
+         summary.setMax(max);
+         summary.setFirstDate(firstDate);
+         summary.setLastDate(lastDate);
+         setSketch(summary, sketch);
+         return summary;
+      }
+   }
+
+   /**
+    * Compacts result files from the command line.
+    *
+    * @param args Retention in days, count of kept results per collector, and result files or folders containing result files
+    * @throws IOException Thrown if a file can not be compacted
+    */
+   public static void main(final String[] args) throws IOException {
+      if (args.length < 3) {
+         System.err.println("Usage: ResultCompactor <retention days> <kept results per collector> <result file or folder>...");
+         System.exit(1);
+      }
+      final ResultCompactor compactor = new ResultCompactor(Long.parseLong(args[0]) * DAY, Integer.parseInt(args[1]));
+      for (int i = 2; i < args.length; i++) {
+         compactor.compactAll(new File(args[i]));
+      }
+   }
+
+   private void compactAll(final File file) throws IOException {
+      if (file.isDirectory()) {
+         final File[] children = file.listFiles();
+         if (children != null) {
+            for (final File child : children) {
+               compactAll(child);
+            }
+         }
+      } else if (isResultFile(file)) {
+         System.out.println(file + ": " + compact(file) + " results folded");
+      }
+   }
+
+   private static boolean isResultFile(final File file) {
+      for (final ResultFormat format : ResultFormats.getFormats()) {
+         if (file.getName().endsWith(format.getFileExtension())) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -0,0 +1,108 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock of one result file, which is held while its content or its journal is written or read. Processes are excluded by a {@link FileLock} on the
+ * lock file <code>&lt;result file&gt;.lock</code>, threads of one JVM by a {@link ReentrantLock}, since a JVM can only hold one {@link FileLock} per file. The
+ * lock is reentrant, so e.g. {@link XMLDataStorer#compact(File)} can load and store the file under one lock. Lock files are never deleted, since deleting
+ * them would allow two processes to lock different files.
+ *
+ * @author reichelt
+ *
+ */
+final class ResultFileLock implements AutoCloseable {
+
+   static final String LOCK_SUFFIX = ".lock";
+
+   private static final Map<File, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+   private final ReentrantLock threadLock;
+   private final FileChannel channel;
+   private final FileLock fileLock;
+
+   private ResultFileLock(final ReentrantLock threadLock, final FileChannel channel, final FileLock fileLock) {
+      this.threadLock = threadLock;
+      this.channel = channel;
+      this.fileLock = fileLock;
+   }
+
+   /**
+    * Waits until the result file is locked by the current thread.
+    *
+    * @param resultFile Result file that should be locked
+    * @return The lock, which needs to be closed
+    * @throws IOException Thrown if the lock file can not be created
+    */
+   static ResultFileLock lock(final File resultFile) throws IOException {
+      final File key = resultFile.getAbsoluteFile();
+      final ReentrantLock threadLock = LOCKS.computeIfAbsent(key, file -> new ReentrantLock());
+      threadLock.lock();
+      if (threadLock.getHoldCount() > 1) {
+         return new ResultFileLock(threadLock, null, null);
+      }
+      FileChannel channel = null;
+      try {
+         key.getParentFile().mkdirs();
+         channel = FileChannel.open(new File(key.getParentFile(), key.getName() + LOCK_SUFFIX).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         return new ResultFileLock(threadLock, channel, channel.lock());
+      } catch (final IOException | RuntimeException e) {
+         if (channel != null) {
+            channel.close();
+         }
+         threadLock.unlock();
+         throw e;
+      }
+   }
+
+   /**
+    * Writes the file by writing a temp file in the same folder and renaming it afterwards, so readers never see an incomplete file; should be called while the
+    * file is locked.
+    *
+    * @param file File that should be written
+    * @param writer Writer of the content
+    * @throws IOException Thrown if writing or renaming fails
+    */
+   static void writeAtomically(final File file, final ContentWriter writer) throws IOException {
+      final File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+      try {
+         writer.write(tempFile);
+         try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         }
+      } finally {
+         Files.deleteIfExists(tempFile.toPath());
+      }
+   }
+
+   /**
+    * Writes the content of a file.
+    */
+   interface ContentWriter {
+      void write(File target) throws IOException;
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         if (fileLock != null) {
+            fileLock.release();
+            channel.close();
+         }
+      } finally {
+         threadLock.unlock();
+      }
+   }
+}
@@ -0,0 +1,62 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.dagere.kopeme.generated.Kopemedata;
+
+/**
+ * Storage format of result files. Formats are discovered by the {@link java.util.ServiceLoader}, so further formats can be added by registering an
+ * implementation in <code>META-INF/services/de.dagere.kopeme.datastorage.ResultFormat</code>; see {@link ResultFormats} for the selection of a format.
+ *
+ * All formats store the complete {@link Kopemedata} model, so a result file can be converted losslessly to every other format by
+ * {@link ResultFormats#convert(File, File)}.
+ *
+ * @author reichelt
+ *
+ */
+public interface ResultFormat {
+
+   /**
+    * Returns the name by which the format is selected, e.g. <code>xml</code>.
+    *
+    * @return Name of the format
+    */
+   String getName();
+
+   /**
+    * Returns the extension of the result files of this format, including the dot.
+    *
+    * @return Extension of result files
+    */
+   String getFileExtension();
+
+   /**
+    * Creates a storer for the result file of the given method, creating the result file if it does not exist yet.
+    *
+    * @param folder Folder where the result should be saved
+    * @param classname Name of the test class which was executed
+    * @param methodname Name of the method which was executed
+    * @return Storer writing to the result file
+    * @throws IOException Thrown if the result file can not be created
+    */
+   DataStorer createStorer(File folder, String classname, String methodname) throws IOException;
+
+   /**
+    * Loads all results of the result file.
+    *
+    * @param file Result file
+    * @return Data of the result file
+    * @throws IOException Thrown if the file can not be read or contains errors
+    */
+   Kopemedata load(File file) throws IOException;
+
+   /**
+    * Stores the data in the result file, replacing everything that was stored before.
+    *
+    * @param file Result file
+    * @param data Data to save
+    * @throws IOException Thrown if the file can not be written
+    */
+   void store(File file, Kopemedata data) throws IOException;
+}
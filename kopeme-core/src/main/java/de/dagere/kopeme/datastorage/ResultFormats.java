@@ -0,0 +1,104 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.Kopemedata;
+
+/**
+ * Registry of all {@link ResultFormat}s that are found by the {@link ServiceLoader}. The format of new results is chosen by the <code>dataFormat</code> of the
+ * {@link de.dagere.kopeme.annotations.PerformanceTest} annotation, or else by the VM property {@value #FORMAT_PROPERTY}; by default, XML is used.
+ *
+ * @author reichelt
+ *
+ */
+public final class ResultFormats {
+
+   private static final Logger LOG = LogManager.getLogger(ResultFormats.class);
+
+   /**
+    * VM property name for the format of new result files, e.g. <code>xml</code> (default) or <code>binary</code>.
+    */
+   public static final String FORMAT_PROPERTY = "kopeme.dataFormat";
+
+   public static final String DEFAULT_FORMAT = XMLResultFormat.NAME;
+
+   private static final Map<String, ResultFormat> FORMATS = loadFormats();
+
+   private ResultFormats() {
+
+   }
+
+   private static Map<String, ResultFormat> loadFormats() {
+      final Map<String, ResultFormat> formats = new LinkedHashMap<>();
+      for (final ResultFormat format : ServiceLoader.load(ResultFormat.class, ResultFormats.class.getClassLoader())) {
+         LOG.debug("Found result format {}", format.getName());
+         formats.put(format.getName(), format);
+      }
+      return Collections.unmodifiableMap(formats);
+   }
+
+   public static Collection<ResultFormat> getFormats() {
+      return FORMATS.values();
+   }
+
+   /**
+    * Returns the format that should be used if no format is specified by the test.
+    *
+    * @return Name of the default format
+    */
+   public static String getDefaultFormatName() {
+      return System.getProperty(FORMAT_PROPERTY, DEFAULT_FORMAT);
+   }
+
+   /**
+    * Returns the format with the given name.
+    *
+    * @param name Name of the format
+    * @return The format
+    * @throws IllegalArgumentException Thrown if no format with this name is available
+    */
+   public static ResultFormat getFormat(final String name) {
+      final ResultFormat format = FORMATS.get(name);
+      if (format == null) {
+         throw new IllegalArgumentException("Result format " + name + " is not available, available formats: " + FORMATS.keySet());
+      }
+      return format;
+   }
+
+   /**
+    * Returns the format of the result file, determined by its extension.
+    *
+    * @param file Result file
+    * @return The format
+    * @throws IllegalArgumentException Thrown if no format uses the extension of the file
+    */
+   public static ResultFormat getFormat(final File file) {
+      for (final ResultFormat format : FORMATS.values()) {
+         if (file.getName().endsWith(format.getFileExtension())) {
+            return format;
+         }
+      }
+      throw new IllegalArgumentException("No result format for " + file.getName() + " available");
+   }
+
+   /**
+    * Converts the source result file to the target result file; the formats are determined by the extensions of the files.
+    *
+    * @param source Existing result file
+    * @param target Result file that should be written
+    * @throws IOException Thrown if reading or writing fails
+    */
+   public static void convert(final File source, final File target) throws IOException {
+      final Kopemedata data = getFormat(source).load(source);
+      getFormat(target).store(target, data);
+   }
+}
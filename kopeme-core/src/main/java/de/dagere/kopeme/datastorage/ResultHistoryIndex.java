@@ -0,0 +1,368 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.Result;
+
+/**
+ * Index of the history of all results of one project, so trends can be queried without reading the result files. The index file
+ * {@value #INDEX_FILE_NAME} is located in the project folder, i.e. the parent of the result folders of the test classes, and is extended by every store of
+ * {@link de.dagere.kopeme.PerformanceTestUtils#saveData(SaveableTestData)}; it can be disabled by setting the VM property {@value #INDEX_PROPERTY} to false.
+ *
+ * The index file is append-only: Every store appends one record per collector, consisting of its length (int), class, testcase, collector and params, followed
+ * by date, value, deviation, iterations, java version and the path of the result file relative to the project folder. Since the exact position of a result in a
+ * journaled or binary result file is only known after writing, the result is referenced by its file and date. An index instance keeps all series in memory and
+ * only reads the records that have been appended since the last query, also by other processes. Records are appended while the index file is locked (see
+ * {@link ResultFileLock}); an incomplete last record, e.g. of a crashed process, is truncated before appending, so it does not hide the following records. A
+ * complete record that can not be read is skipped.
+ *
+ * @author reichelt
+ *
+ */
+public final class ResultHistoryIndex {
+
+   private static final Logger LOG = LogManager.getLogger(ResultHistoryIndex.class);
+
+   /**
+    * VM property name for enabling the history index (default true).
+    */
+   public static final String INDEX_PROPERTY = "kopeme.historyIndex";
+
+   public static final String INDEX_FILE_NAME = "history.kopemeindex";
+
+   private static final Map<File, ResultHistoryIndex> INDEXES = new ConcurrentHashMap<>();
+
+   /**
+    * Identifies one series of results.
+    */
+   public static final class SeriesKey {
+      private final String clazz;
+      private final String testcase;
+      private final String collector;
+      private final String params;
+
+      public SeriesKey(final String clazz, final String testcase, final String collector, final String params) {
+         this.clazz = clazz;
+         this.testcase = testcase;
+         this.collector = collector;
+         this.params = params != null ? params : "";
+      }
+
+      public String getClazz() {
+         return clazz;
+      }
+
+      public String getTestcase() {
+         return testcase;
+      }
+
+      public String getCollector() {
+         return collector;
+      }
+
+      /**
+       * Returns the params in the format of {@link ParamNameHelper#paramsToString}, or an empty string for tests without params.
+       */
+      public String getParams() {
+         return params;
+      }
+
+      @Override
+      public boolean equals(final Object obj) {
+         if (!(obj instanceof SeriesKey)) {
+            return false;
+         }
+         final SeriesKey other = (SeriesKey) obj;
+         return clazz.equals(other.clazz) && testcase.equals(other.testcase) && collector.equals(other.collector) && params.equals(other.params);
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(clazz, testcase, collector, params);
+      }
+
+      @Override
+      public String toString() {
+         return clazz + "#" + testcase + "(" + params + ")@" + collector;
+      }
+   }
+
+   /**
+    * Results of one series in the order of storing; all getters return copies.
+    */
+   public static final class HistorySeries {
+      private long[] dates = new long[16];
+      private double[] values = new double[16];
+      private double[] deviations = new double[16];
+      private long[] iterations = new long[16];
+      private String[] javaVersions = new String[16];
+      private String[] files = new String[16];
+      private int size = 0;
+
+      private void add(final long date, final double value, final double deviation, final long iteration, final String javaVersion, final String file) {
+         if (size == dates.length) {
+            final int capacity = 2 * size;
+            dates = Arrays.copyOf(dates, capacity);
+            values = Arrays.copyOf(values, capacity);
+            deviations = Arrays.copyOf(deviations, capacity);
+            iterations = Arrays.copyOf(iterations, capacity);
+            javaVersions = Arrays.copyOf(javaVersions, capacity);
+            files = Arrays.copyOf(files, capacity);
+         }
+         dates[size] = date;
+         values[size] = value;
+         deviations[size] = deviation;
+         iterations[size] = iteration;
+         javaVersions[size] = javaVersion;
+         files[size] = file;
+         size++;
+      }
+
+      /**
+       * Returns the last results of the series.
+       *
+       * @param count Maximum count of results
+       * @return Series containing at most the given count of results
+       */
+      public synchronized HistorySeries last(final int count) {
+         final HistorySeries last = new HistorySeries();
+         for (int i = Math.max(0, size - count); i < size; i++) {
+            last.add(dates[i], values[i], deviations[i], iterations[i], javaVersions[i], files[i]);
+         }
+         return last;
+      }
+
+      public synchronized long[] getDates() {
+         return Arrays.copyOf(dates, size);
+      }
+
+      public synchronized double[] getValues() {
+         return Arrays.copyOf(values, size);
+      }
+
+      public synchronized double[] getDeviations() {
+         return Arrays.copyOf(deviations, size);
+      }
+
+      public synchronized long[] getIterations() {
+         return Arrays.copyOf(iterations, size);
+      }
+
+      public synchronized String[] getJavaVersions() {
+         return Arrays.copyOf(javaVersions, size);
+      }
+
+      /**
+       * Returns the paths of the result files containing the results, relative to the project folder.
+       */
+      public synchronized String[] getFiles() {
+         return Arrays.copyOf(files, size);
+      }
+
+      public synchronized int size() {
+         return size;
+      }
+   }
+
+   private final File projectFolder;
+   private final File indexFile;
+   private final Map<SeriesKey, HistorySeries> series = new LinkedHashMap<>();
+   private long readPosition = 0;
+   private boolean incompleteTail = false;
+
+   ResultHistoryIndex(final File projectFolder) {
+      this.projectFolder = projectFolder;
+      this.indexFile = new File(projectFolder, INDEX_FILE_NAME);
+   }
+
+   /**
+    * Returns the index of the project folder; instances are shared inside the JVM.
+    *
+    * @param projectFolder Folder containing the result folders of all test classes of a project
+    * @return The index
+    */
+   public static ResultHistoryIndex getIndex(final File projectFolder) {
+      return INDEXES.computeIfAbsent(projectFolder.getAbsoluteFile(), ResultHistoryIndex::new);
+   }
+
+   public static boolean isEnabled() {
+      return Boolean.parseBoolean(System.getProperty(INDEX_PROPERTY, "true"));
+   }
+
+   public File getIndexFile() {
+      return indexFile;
+   }
+
+   /**
+    * Appends the results of one test execution to the index.
+    *
+    * @param clazz Name of the test class
+    * @param testcase Name of the testcase
+    * @param results Results, mapped from the name of their collector
+    * @param resultFile File where the results are stored
+    */
+   public synchronized void add(final String clazz, final String testcase, final Map<String, Result> results, final File resultFile) {
+      final String file = projectFolder.getAbsoluteFile().toPath().relativize(resultFile.getAbsoluteFile().toPath()).toString();
+      try {
+         final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+         final DataOutputStream out = new DataOutputStream(serialized);
+         for (final Map.Entry<String, Result> collectorResult : results.entrySet()) {
+            final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            final DataOutputStream record = new DataOutputStream(recordBytes);
+            final Result result = collectorResult.getValue();
+            final String params = result.getParams() != null ? ParamNameHelper.paramsToString(result.getParams()) : "";
+            record.writeUTF(clazz);
+            record.writeUTF(testcase);
+            record.writeUTF(collectorResult.getKey());
+            record.writeUTF(params);
+            record.writeLong(result.getDate() != null ? result.getDate() : 0);
+            record.writeDouble(result.getValue());
+            record.writeDouble(result.getDeviation());
+            record.writeLong(result.getIterations());
+            record.writeUTF(result.getJavaVersion() != null ? result.getJavaVersion() : "");
+            record.writeUTF(file);
+            out.writeInt(recordBytes.size());
+            recordBytes.writeTo(out);
+         }
+         projectFolder.mkdirs();
+         try (ResultFileLock lock = ResultFileLock.lock(indexFile);
+               FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // While the file is locked, no record is being written, so an incomplete record at the end has been left by a crashed process
+            update();
+            if (incompleteTail) {
+               LOG.warn("Index {} ends with {} bytes of an incomplete record, truncating it", indexFile, channel.size() - readPosition);
+               channel.truncate(readPosition);
+               incompleteTail = false;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(serialized.toByteArray());
+            long position = channel.size();
+            while (buffer.hasRemaining()) {
+               position += channel.write(buffer, position);
+            }
+         }
+      } catch (final IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+    * Returns the keys of all series of the index.
+    *
+    * @return Copy of the keys of all series
+    */
+   public synchronized Set<SeriesKey> getKeys() {
+      update();
+      return Collections.unmodifiableSet(new LinkedHashSet<>(series.keySet()));
+   }
+
+   /**
+    * Returns all results of the series.
+    *
+    * @param key Key of the series
+    * @return The series, which is empty if no result has been indexed
+    */
+   public synchronized HistorySeries getSeries(final SeriesKey key) {
+      update();
+      final HistorySeries keySeries = series.get(key);
+      return keySeries != null ? keySeries.last(Integer.MAX_VALUE) : new HistorySeries();
+   }
+
+   /**
+    * Returns the last results of the series.
+    *
+    * @param key Key of the series
+    * @param count Maximum count of results, e.g. 200 for the last 200 runs
+    * @return The series, which is empty if no result has been indexed
+    */
+   public synchronized HistorySeries getSeries(final SeriesKey key, final int count) {
+      update();
+      final HistorySeries keySeries = series.get(key);
+      return keySeries != null ? keySeries.last(count) : new HistorySeries();
+   }
+
+   /**
+    * Reads all records that have been appended since the last read; damaged records are skipped, and reading stops before an incomplete last record or a
+    * length that can not be valid.
+    */
+   private void update() {
+      final long fileLength = indexFile.length();
+      incompleteTail = false;
+      if (!indexFile.exists() || fileLength == readPosition) {
+         return;
+      }
+      try (InputStream stream = new FileInputStream(indexFile)) {
+         long skipped = 0;
+         while (skipped < readPosition) {
+            skipped += stream.skip(readPosition - skipped);
+         }
+         final DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+         while (true) {
+            final long remaining = fileLength - readPosition - 4;
+            if (remaining < 0) {
+               incompleteTail = readPosition < fileLength;
+               break;
+            }
+            final int length = in.readInt();
+            if (length < 0) {
+               LOG.warn("Index {} contains an invalid record length at {}, the following records can not be read", indexFile, readPosition);
+               break;
+            }
+            if (length > remaining) {
+               // The last record is not completely written yet; it is read by the next update or truncated by the next add
+               incompleteTail = true;
+               break;
+            }
+            final byte[] record = new byte[length];
+            in.readFully(record);
+            try {
+               readRecord(record);
+            } catch (final IOException e) {
+               LOG.warn("Index {} contains a damaged record at {}, skipping it: {}", indexFile, readPosition, e.toString());
+            }
+            readPosition += 4 + length;
+         }
+      } catch (final IOException e) {
+         e.printStackTrace();
+      }
+      LOG.debug("Read index {} up to {}", indexFile, readPosition);
+   }
+
+   private void readRecord(final byte[] record) throws IOException {
+      final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+      final SeriesKey key = new SeriesKey(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+      final long date = in.readLong();
+      final double value = in.readDouble();
+      final double deviation = in.readDouble();
+      final long iterations = in.readLong();
+      final String javaVersion = in.readUTF();
+      final String file = in.readUTF();
+      HistorySeries keySeries = series.get(key);
+      if (keySeries == null) {
+         keySeries = new HistorySeries();
+         series.put(key, keySeries);
+      }
+      keySeries.add(date, value, deviation, iterations, javaVersion.isEmpty() ? null : javaVersion, file);
+   }
+}
@@ -0,0 +1,132 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.Kopemedata;
+
+/**
+ * Sidecar of a result file, to which new results are appended instead of rewriting the result file. Every entry is a small {@link Kopemedata} document
+ * containing the new result together with its testcase, collector and chunk. The entries belong to the result file as long as it exists: They are applied by the
+ * {@link XMLDataLoader} and folded into the result file by {@link XMLDataStorer#compact(File)}. Entries are written by the {@link ResultRepository}.
+ *
+ * @author reichelt
+ *
+ */
+final class ResultJournal {
+
+   private static final Logger LOG = LogManager.getLogger(ResultJournal.class);
+
+   static final String JOURNAL_SUFFIX = ".journal";
+
+   private static final String ENTRY_ELEMENT = "kopemedata";
+   private static final byte[] JOURNAL_START = "<journal>".getBytes(StandardCharsets.UTF_8);
+   private static final byte[] JOURNAL_END = "</journal>".getBytes(StandardCharsets.UTF_8);
+
+   private ResultJournal() {
+
+   }
+
+   static File getJournalFile(final File resultFile) {
+      return new File(resultFile.getParentFile(), resultFile.getName() + JOURNAL_SUFFIX);
+   }
+
+   /**
+    * Appends the entries to the journal of the result file while the result file is locked; all entries are written by one write call, so a crash can only
+    * damage the last entry.
+    *
+    * @param resultFile Result file the entries belong to
+    * @param entries Entries containing the new results
+    */
+   static void append(final File resultFile, final List<Kopemedata> entries) {
+      try {
+         final Marshaller marshaller = XMLDataLoader.jc.createMarshaller();
+         marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+         final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+         for (final Kopemedata entry : entries) {
+            marshaller.marshal(entry, serialized);
+            serialized.write('\n');
+         }
+         try (ResultFileLock lock = ResultFileLock.lock(resultFile); FileOutputStream stream = new FileOutputStream(getJournalFile(resultFile), true)) {
+            serialized.writeTo(stream);
+         }
+      } catch (final JAXBException | IOException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Reads all entries of the journal of the result file. A damaged last entry, e.g. because the writing process crashed, is skipped.
+    *
+    * @param resultFile Result file the entries belong to
+    * @return All complete entries in the order of writing
+    */
+   static List<Kopemedata> readEntries(final File resultFile) throws JAXBException {
+      final File journalFile = getJournalFile(resultFile);
+      if (!resultFile.exists() || !journalFile.exists()) {
+         return Collections.emptyList();
+      }
+      final List<Kopemedata> entries = new ArrayList<>();
+      final Unmarshaller unmarshaller = XMLDataLoader.jc.createUnmarshaller();
+      try (InputStream stream = openJournal(journalFile)) {
+         final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(stream);
+         try {
+            while (reader.hasNext()) {
+               if (reader.isStartElement() && ENTRY_ELEMENT.equals(reader.getLocalName())) {
+                  entries.add(unmarshaller.unmarshal(reader, Kopemedata.class).getValue());
+               } else {
+                  reader.next();
+               }
+            }
+         } catch (final XMLStreamException | JAXBException e) {
+            LOG.warn("Journal {} is damaged after {} entries, skipping the rest: {}", journalFile.getAbsolutePath(), entries.size(), e.getMessage());
+         } finally {
+            reader.close();
+         }
+      } catch (final XMLStreamException | IOException e) {
+         throw new JAXBException(e);
+      }
+      return entries;
+   }
+
+   /**
+    * Opens the journal as one XML document, whose root element contains the entries.
+    *
+    * @param journalFile The journal
+    * @return Stream of the document
+    * @throws FileNotFoundException Thrown if the journal does not exist
+    */
+   static InputStream openJournal(final File journalFile) throws FileNotFoundException {
+      return new SequenceInputStream(Collections.enumeration(Arrays.asList(new ByteArrayInputStream(JOURNAL_START), new FileInputStream(journalFile),
+            new ByteArrayInputStream(JOURNAL_END))));
+   }
+
+   static void delete(final File resultFile) {
+      final File journalFile = getJournalFile(resultFile);
+      if (journalFile.exists() && !journalFile.delete()) {
+         LOG.error("Journal {} could not be deleted", journalFile.getAbsolutePath());
+      }
+   }
+}
@@ -0,0 +1,173 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.Kopemedata;
+
+/**
+ * Process-wide write-behind of results. New results are held in memory and appended to the journal of their result file when {@link #flush()} is called at
+ * the end of a test class and on shutdown of the JVM. Test frameworks without a callback at the end of a test class report every finished test by
+ * {@link #testFinished(String, int)} instead. Results are only written between tests and never by a background thread, so writing does not disturb the
+ * measurement of the next test. At most {@value #MAX_DOCUMENTS_PROPERTY} result files have pending results; if results of another file are added, the
+ * pending results of the least recently used file are written. Loading a result file by the
+ * {@link XMLDataLoader} flushes its pending results first, so results are always visible to readers in the same JVM. If a journal grows beyond the size
+ * given by {@value #COMPACTION_SIZE_PROPERTY} (1 MiB by default), it is written into its result file, so the journal does not grow forever.
+ *
+ * @author reichelt
+ *
+ */
+public final class ResultRepository {
+
+   private static final Logger LOG = LogManager.getLogger(ResultRepository.class);
+
+   /**
+    * VM property name for the count of result files whose results are held in memory; 0 disables the write-behind, so every result is written immediately.
+    */
+   public static final String MAX_DOCUMENTS_PROPERTY = "kopeme.repository.maxDocuments";
+
+   /**
+    * VM property name for the size of a journal in bytes above which the journal is written into its result file by {@link XMLDataStorer#compact(File)} after
+    * flushing; a negative size disables the compaction.
+    */
+   public static final String COMPACTION_SIZE_PROPERTY = "kopeme.repository.compactionSize";
+
+   private static final ResultRepository INSTANCE = new ResultRepository(Integer.getInteger(MAX_DOCUMENTS_PROPERTY, 32),
+         Long.getLong(COMPACTION_SIZE_PROPERTY, 1024 * 1024));
+
+   private final int maxDocuments;
+   private final long compactionSize;
+   private final Map<File, List<Kopemedata>> pendingEntries;
+   private final Map<String, Integer> finishedTests = new HashMap<>();
+   private String lastTestClass;
+   private boolean shutdownHookAdded = false;
+
+   ResultRepository(final int maxDocuments, final long compactionSize) {
+      this.maxDocuments = maxDocuments;
+      this.compactionSize = compactionSize;
+      pendingEntries = new LinkedHashMap<File, List<Kopemedata>>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(final Map.Entry<File, List<Kopemedata>> eldest) {
+            if (size() > maxDocuments) {
+               LOG.debug("Evicting {}", eldest.getKey());
+               write(eldest.getKey(), eldest.getValue());
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   public static ResultRepository getInstance() {
+      return INSTANCE;
+   }
+
+   /**
+    * Adds the results of the entry to the result file; they are written by the next flush.
+    *
+    * @param file Result file
+    * @param entry Data containing the new results
+    */
+   public synchronized void add(final File file, final Kopemedata entry) {
+      final File key = file.getAbsoluteFile();
+      List<Kopemedata> entries = pendingEntries.get(key);
+      if (entries == null) {
+         entries = new ArrayList<>();
+         pendingEntries.put(key, entries);
+      }
+      entries.add(entry);
+      if (maxDocuments <= 0) {
+         flush(key);
+      } else if (!shutdownHookAdded) {
+         Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "kopeme-result-shutdown"));
+         shutdownHookAdded = true;
+      }
+   }
+
+   /**
+    * Marks a test of the test class as finished. All pending results are written if all tests of the class are finished or if the previous test belonged to
+    * another class, so results of a test class are written at its end even if the test framework does not report the end of the class.
+    *
+    * @param testClass Name of the test class
+    * @param testCount Count of the tests of the class
+    */
+   public synchronized void testFinished(final String testClass, final int testCount) {
+      if (lastTestClass != null && !lastTestClass.equals(testClass)) {
+         finishedTests.remove(lastTestClass);
+         flush();
+      }
+      lastTestClass = testClass;
+      final int finished = finishedTests.merge(testClass, 1, Integer::sum);
+      if (finished >= testCount) {
+         finishedTests.remove(testClass);
+         flush();
+      }
+   }
+
+   /**
+    * Drops everything that is known about the result file without writing it, e.g. because the result file has been created anew.
+    *
+    * @param file Result file
+    */
+   public synchronized void discard(final File file) {
+      pendingEntries.remove(file.getAbsoluteFile());
+   }
+
+   /**
+    * Writes the pending results of the result file.
+    *
+    * @param file Result file
+    */
+   public synchronized void flush(final File file) {
+      final File key = file.getAbsoluteFile();
+      final List<Kopemedata> entries = pendingEntries.remove(key);
+      if (entries != null) {
+         write(key, entries);
+      }
+   }
+
+   /**
+    * Writes the pending results of all result files.
+    */
+   public synchronized void flush() {
+      for (final Map.Entry<File, List<Kopemedata>> entry : pendingEntries.entrySet()) {
+         write(entry.getKey(), entry.getValue());
+      }
+      pendingEntries.clear();
+   }
+
+   private void write(final File file, final List<Kopemedata> entries) {
+      if (!file.exists()) {
+         LOG.warn("Result file {} has been deleted, discarding {} pending entries", file, entries.size());
+      } else {
+         LOG.debug("Writing {} entries to {}", entries.size(), file);
+         ResultJournal.append(file, entries);
+         if (compactionSize >= 0 && ResultJournal.getJournalFile(file).length() > compactionSize) {
+            try {
+               XMLDataStorer.compact(file);
+            } catch (final JAXBException e) {
+               e.printStackTrace();
+            }
+         }
+      }
+   }
+
+   private void flushQuietly() {
+      try {
+         flush();
+      } catch (final RuntimeException e) {
+         e.printStackTrace();
+      }
+   }
+}
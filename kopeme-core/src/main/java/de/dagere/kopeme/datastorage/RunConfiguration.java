@@ -7,6 +7,7 @@ public class RunConfiguration {
    private final int warmupExecutions, repetitions;
    private final boolean showStart, redirectToTemp, redirectToNull;
    private boolean saveValues, executeBeforeClassInMeasurement;
+   private String dataFormat = ResultFormats.getDefaultFormatName();
 
    public RunConfiguration(final int warmupExecutions, final int repetitions, final boolean showStart, final boolean redirectToTemp,
          final boolean redirectToNull, final boolean saveValues, final boolean executeBeforeClassInMeasurement) {
@@ -27,6 +28,9 @@ public class RunConfiguration {
       redirectToNull = annotation.redirectToNull();
       saveValues = annotation.logFullData();
       executeBeforeClassInMeasurement = annotation.executeBeforeClassInMeasurement();
+      if (!annotation.dataFormat().isEmpty()) {
+         dataFormat = annotation.dataFormat();
+      }
       
       AnnotationChecker.check(annotation);
    }
@@ -62,4 +66,12 @@ public class RunConfiguration {
    public void setSaveValues(final boolean saveValues) {
       this.saveValues = saveValues;
    }
+
+   public String getDataFormat() {
+      return dataFormat;
+   }
+
+   public void setDataFormat(final String dataFormat) {
+      this.dataFormat = dataFormat;
+   }
 }
@@ -0,0 +1,331 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads selected results of a result file by a {@link XMLStreamReader}, without building the JAXB tree. Testcases, collectors and results that do not match the
+ * {@link ResultFilter} are skipped as a whole, and fulldata are always skipped; only the aggregated values of the matching results are passed to a
+ * {@link ResultConsumer} as primitive values. Results in the journal of the file are read, too.
+ *
+ * @author reichelt
+ *
+ */
+public final class StreamingDataLoader {
+
+   private static final Logger LOG = LogManager.getLogger(StreamingDataLoader.class);
+
+   private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+   /**
+    * Selects results; every criterion that is not set matches all results.
+    */
+   public static final class ResultFilter {
+      private String testcase;
+      private String collector;
+      private long minDate = Long.MIN_VALUE;
+      private long maxDate = Long.MAX_VALUE;
+      private Map<String, String> params;
+
+      public ResultFilter testcase(final String testcase) {
+         this.testcase = testcase;
+         return this;
+      }
+
+      public ResultFilter collector(final String collector) {
+         this.collector = collector;
+         return this;
+      }
+
+      /**
+       * Selects results whose date is between the given dates, both inclusive.
+       */
+      public ResultFilter dateRange(final long minDate, final long maxDate) {
+         this.minDate = minDate;
+         this.maxDate = maxDate;
+         return this;
+      }
+
+      /**
+       * Selects results that have at least the given params with the given values.
+       */
+      public ResultFilter params(final Map<String, String> params) {
+         this.params = params;
+         return this;
+      }
+
+      boolean matchesTestcase(final String name) {
+         return testcase == null || testcase.equals(name);
+      }
+
+      boolean matchesCollector(final String name) {
+         return collector == null || collector.equals(name);
+      }
+
+      boolean matchesDate(final long date) {
+         return date >= minDate && date <= maxDate;
+      }
+
+      boolean matchesParams(final Map<String, String> resultParams) {
+         return params == null || resultParams.entrySet().containsAll(params.entrySet());
+      }
+   }
+
+   /**
+    * Consumes the aggregated values of one result.
+    */
+   public interface ResultConsumer {
+      void accept(String testcase, String collector, long date, double value, double deviation, long iterations);
+   }
+
+   /**
+    * Dates and values of the results of one testcase, in the order of the file.
+    */
+   public static final class ResultSeries {
+      private long[] dates = new long[16];
+      private double[] values = new double[16];
+      private int size = 0;
+
+      void add(final long date, final double value) {
+         if (size == dates.length) {
+            dates = Arrays.copyOf(dates, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+         }
+         dates[size] = date;
+         values[size] = value;
+         size++;
+      }
+
+      public long[] getDates() {
+         return Arrays.copyOf(dates, size);
+      }
+
+      public double[] getValues() {
+         return Arrays.copyOf(values, size);
+      }
+
+      public int size() {
+         return size;
+      }
+   }
+
+   private StreamingDataLoader() {
+
+   }
+
+   /**
+    * Passes all results of the file that match the filter to the consumer.
+    *
+    * @param file Result file
+    * @param filter Filter selecting the results
+    * @param consumer Consumer of the results
+    * @throws IOException Thrown if the file can not be read
+    * @throws XMLStreamException Thrown if the file contains errors
+    */
+   public static void stream(final File file, final ResultFilter filter, final ResultConsumer consumer) throws IOException, XMLStreamException {
+      ResultRepository.getInstance().flush(file);
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         try (InputStream stream = new FileInputStream(file)) {
+            new ResultHandler(filter, consumer).read(stream);
+         }
+         final File journalFile = ResultJournal.getJournalFile(file);
+         if (journalFile.exists()) {
+            try (InputStream stream = ResultJournal.openJournal(journalFile)) {
+               new ResultHandler(filter, consumer).read(stream);
+            } catch (final XMLStreamException e) {
+               LOG.warn("Journal {} is damaged, skipping the rest: {}", journalFile.getAbsolutePath(), e.getMessage());
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns the dates and values of all matching results, mapped from their testcase.
+    *
+    * @param file Result file
+    * @param filter Filter selecting the results; usually, a collector should be selected
+    * @return Series of every testcase that has matching results
+    * @throws IOException Thrown if the file can not be read
+    * @throws XMLStreamException Thrown if the file contains errors
+    */
+   public static Map<String, ResultSeries> getSeries(final File file, final ResultFilter filter) throws IOException, XMLStreamException {
+      final Map<String, ResultSeries> series = new LinkedHashMap<>();
+      stream(file, filter, (testcase, collector, date, value, deviation, iterations) -> {
+         ResultSeries testcaseSeries = series.get(testcase);
+         if (testcaseSeries == null) {
+            testcaseSeries = new ResultSeries();
+            series.put(testcase, testcaseSeries);
+         }
+         testcaseSeries.add(date, value);
+      });
+      return series;
+   }
+
+   /**
+    * Returns the names of all collectors of the file, without reading any result.
+    *
+    * @param file Result file
+    * @return Names of all collectors
+    * @throws IOException Thrown if the file can not be read
+    * @throws XMLStreamException Thrown if the file contains errors
+    */
+   public static Set<String> getCollectors(final File file) throws IOException, XMLStreamException {
+      ResultRepository.getInstance().flush(file);
+      final Set<String> collectors = new LinkedHashSet<>();
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         try (InputStream stream = new FileInputStream(file)) {
+            readCollectors(stream, collectors);
+         }
+         final File journalFile = ResultJournal.getJournalFile(file);
+         if (journalFile.exists()) {
+            try (InputStream stream = ResultJournal.openJournal(journalFile)) {
+               readCollectors(stream, collectors);
+            } catch (final XMLStreamException e) {
+               LOG.warn("Journal {} is damaged, skipping the rest: {}", journalFile.getAbsolutePath(), e.getMessage());
+            }
+         }
+      }
+      return collectors;
+   }
+
+   private static void readCollectors(final InputStream stream, final Set<String> collectors) throws XMLStreamException {
+      final XMLStreamReader reader = FACTORY.createXMLStreamReader(stream);
+      try {
+         while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && "datacollector".equals(reader.getLocalName())) {
+               collectors.add(reader.getAttributeValue(null, "name"));
+               skipElement(reader);
+            }
+         }
+      } finally {
+         reader.close();
+      }
+   }
+
+   /**
+    * Skips the current element including all children; afterwards, the reader is positioned at its end tag.
+    */
+   private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+         final int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT) {
+            depth++;
+         } else if (event == XMLStreamConstants.END_ELEMENT) {
+            depth--;
+         }
+      }
+   }
+
+   /**
+    * Reads one document; the state of the current testcase and collector is kept while descending.
+    */
+   private static final class ResultHandler {
+      private final ResultFilter filter;
+      private final ResultConsumer consumer;
+      private String testcase;
+      private String collector;
+
+      ResultHandler(final ResultFilter filter, final ResultConsumer consumer) {
+         this.filter = filter;
+         this.consumer = consumer;
+      }
+
+      void read(final InputStream stream) throws XMLStreamException {
+         final XMLStreamReader reader = FACTORY.createXMLStreamReader(stream);
+         try {
+            while (reader.hasNext()) {
+               if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                  startElement(reader);
+               }
+            }
+         } finally {
+            reader.close();
+         }
+      }
+
+      private void startElement(final XMLStreamReader reader) throws XMLStreamException {
+         switch (reader.getLocalName()) {
+         case "testcase":
+            testcase = reader.getAttributeValue(null, "name");
+            if (!filter.matchesTestcase(testcase)) {
+               skipElement(reader);
+            }
+            break;
+         case "datacollector":
+            collector = reader.getAttributeValue(null, "name");
+            if (!filter.matchesCollector(collector)) {
+               skipElement(reader);
+            }
+            break;
+         case "result":
+            readResult(reader);
+            break;
+         default:
+            break;
+         }
+      }
+
+      private void readResult(final XMLStreamReader reader) throws XMLStreamException {
+         final String dateValue = reader.getAttributeValue(null, "date");
+         final long date = dateValue != null ? Long.parseLong(dateValue) : 0;
+         if (!filter.matchesDate(date)) {
+            skipElement(reader);
+            return;
+         }
+         double value = Double.NaN;
+         double deviation = Double.NaN;
+         long iterations = 0;
+         final Map<String, String> params = filter.params != null ? new HashMap<>() : null;
+         while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+            case "value":
+               value = Double.parseDouble(reader.getElementText());
+               break;
+            case "deviation":
+               deviation = Double.parseDouble(reader.getElementText());
+               break;
+            case "iterations":
+               iterations = Long.parseLong(reader.getElementText());
+               break;
+            case "params":
+               if (params != null) {
+                  readParams(reader, params);
+               } else {
+                  skipElement(reader);
+               }
+               break;
+            default:
+               skipElement(reader);
+               break;
+            }
+         }
+         if (params == null || filter.matchesParams(params)) {
+            consumer.accept(testcase, collector, date, value, deviation, iterations);
+         }
+      }
+
+      private void readParams(final XMLStreamReader reader, final Map<String, String> params) throws XMLStreamException {
+         while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            final String key = reader.getAttributeValue(null, "key");
+            params.put(key, reader.getElementText());
+         }
+      }
+   }
+}
@@ -1,12 +1,21 @@
 package de.dagere.kopeme.datastorage;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -17,7 +26,7 @@ import org.apache.logging.log4j.Logger;
 
 import com.sun.xml.bind.v2.ContextFactory;
 
-import de.dagere.kopeme.datacollection.tempfile.WrittenResultReader;
+import de.dagere.kopeme.datacollection.tempfile.MappedFulldataReader;
 import de.dagere.kopeme.generated.Kopemedata;
 import de.dagere.kopeme.generated.Kopemedata.Testcases;
 import de.dagere.kopeme.generated.ObjectFactory;
@@ -35,6 +44,12 @@ import de.dagere.kopeme.generated.TestcaseType.Datacollector.Chunk;
  */
 public final class XMLDataLoader implements DataLoader {
    private static final Logger LOG = LogManager.getLogger(XMLDataLoader.class);
+
+   /**
+    * VM property name for the count of threads that read fulldata files in {@link #readFulldataValues()}.
+    */
+   public static final String PARALLELISM_PROPERTY = "kopeme.fulldata.parallelism";
+
    private final File file;
    private Kopemedata data;
 
@@ -68,8 +83,7 @@ public final class XMLDataLoader implements DataLoader {
     */
    private void loadData() throws JAXBException {
       if (file.exists()) {
-         final Unmarshaller unmarshaller = jc.createUnmarshaller();
-         data = (Kopemedata) unmarshaller.unmarshal(file);
+         data = loadData(file);
          LOG.trace("Daten geladen, Daten: {}", data);
       } else {
          LOG.info("Datei {} existiert nicht", file.getAbsolutePath());
@@ -150,81 +164,196 @@ public final class XMLDataLoader implements DataLoader {
       return data;
    }
 
+   /**
+    * Loads the data of the file, including all results that were appended to its journal or are pending in the {@link ResultRepository}.
+    * 
+    * @param dataFile XML file that should be loaded
+    * @return Loaded data
+    * @throws JAXBException Thrown if the file contains errors
+    */
    public static Kopemedata loadData(final File dataFile) throws JAXBException {
+      ResultRepository.getInstance().flush(dataFile);
+      try (ResultFileLock lock = ResultFileLock.lock(dataFile)) {
+         return readData(dataFile);
+      } catch (final IOException e) {
+         throw new JAXBException(e);
+      }
+   }
+
+   /**
+    * Reads the file and its journal; the caller needs to hold the lock of the file, so the journal can not be compacted between reading both.
+    */
+   static Kopemedata readData(final File dataFile) throws JAXBException {
       final Unmarshaller unmarshaller = jc.createUnmarshaller();
       final Kopemedata data = (Kopemedata) unmarshaller.unmarshal(dataFile);
+      applyJournal(dataFile, data);
       return data;
    }
 
-   public static Kopemedata loadWarmedupData(final File dataFile) throws JAXBException {
-      final Unmarshaller unmarshaller = jc.createUnmarshaller();
-      final Kopemedata data = (Kopemedata) unmarshaller.unmarshal(dataFile);
-      for (TestcaseType testcase : data.getTestcases().getTestcase()) {
-         for (Result result : testcase.getDatacollector().get(0).getResult()) {
-            if (result.getFulldata().getFileName() != null) {
-               Fulldata replacedFulldata = readFulldata(dataFile, (int) (result.getIterations() / 2), testcase, result);
-               result.setFulldata(replacedFulldata);
-            }
-         }
+   private static void applyJournal(final File dataFile, final Kopemedata data) throws JAXBException {
+      final KopemedataMerger merger = new KopemedataMerger(data);
+      for (final Kopemedata entry : ResultJournal.readEntries(dataFile)) {
+         merger.add(entry);
       }
+   }
+
+   /**
+    * Loads the data and the values of all fulldata files, skipping the first half of the iterations of every result as warmup. Fulldata files that can not be
+    * read are reported and their results keep the reference to the file.
+    * 
+    * @param dataFile XML file that should be loaded
+    * @return Loaded data
+    * @throws JAXBException Thrown if the file contains errors
+    */
+   public static Kopemedata loadWarmedupData(final File dataFile) throws JAXBException {
+      final Kopemedata data = loadData(dataFile);
+      readFulldataQuietly(dataFile, data, result -> (int) (result.getIterations() / 2));
       return data;
    }
 
+   /**
+    * Loads the data and the values of all fulldata files, skipping the given count of warmup iterations. Fulldata files that can not be read are reported and
+    * their results keep the reference to the file.
+    * 
+    * @param dataFile XML file that should be loaded
+    * @param warmup Count of iterations that should be skipped
+    * @return Loaded data
+    * @throws JAXBException Thrown if the file contains errors
+    */
    public static Kopemedata loadData(final File dataFile, final int warmup) throws JAXBException {
-      final Unmarshaller unmarshaller = jc.createUnmarshaller();
-      final Kopemedata data = (Kopemedata) unmarshaller.unmarshal(dataFile);
-      for (TestcaseType testcase : data.getTestcases().getTestcase()) {
-         for (Result result : testcase.getDatacollector().get(0).getResult()) {
-            if (result.getFulldata().getFileName() != null) {
-               Fulldata replacedFulldata = readFulldata(dataFile, warmup, testcase, result);
-               result.setFulldata(replacedFulldata);
-            }
-         }
-      }
-
+      final Kopemedata data = loadData(dataFile);
+      readFulldataQuietly(dataFile, data, result -> warmup);
       return data;
    }
 
+   private static void readFulldataQuietly(final File dataFile, final Kopemedata data, final ToIntFunction<Result> warmup) {
+      try {
+         readFulldata(dataFile, data, warmup, getDefaultParallelism());
+      } catch (final FulldataLoadingException e) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+    * Replaces all fulldata references of the loaded data by the values of the referenced files; the files are read in parallel by as many threads as given by
+    * {@value #PARALLELISM_PROPERTY}, which defaults to the count of available processors.
+    * 
+    * @throws FulldataLoadingException Thrown if at least one file could not be read; all other results contain their values nevertheless
+    */
    public void readFulldataValues() {
+      readFulldataValues(getDefaultParallelism());
+   }
+
+   /**
+    * Replaces all fulldata references of the loaded data by the values of the referenced files.
+    * 
+    * @param parallelism Count of threads that read files in parallel
+    * @throws FulldataLoadingException Thrown if at least one file could not be read; all other results contain their values nevertheless
+    */
+   public void readFulldataValues(final int parallelism) {
+      readFulldata(file, data, result -> 0, parallelism);
+   }
+
+   private static int getDefaultParallelism() {
+      return Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Reads every referenced fulldata file once and replaces the references of all results of all collectors that share the file.
+    */
+   private static void readFulldata(final File xmlFile, final Kopemedata data, final ToIntFunction<Result> warmup, final int parallelism) {
+      final Map<File, FulldataReading> readingsByFile = new LinkedHashMap<>();
       for (TestcaseType testcase : data.getTestcases().getTestcase()) {
          for (Datacollector collector : testcase.getDatacollector()) {
             for (Chunk chunk : collector.getChunk()) {
                for (Result result : chunk.getResult()) {
-                  replaceFulldata(collector, result);
+                  addReading(readingsByFile, xmlFile, collector, result, warmup);
                }
             }
             for (Result result : collector.getResult()) {
-               replaceFulldata(collector, result);
+               addReading(readingsByFile, xmlFile, collector, result, warmup);
             }
          }
       }
+      final List<FulldataReading> readings = new ArrayList<>(readingsByFile.values());
+
+      final List<Map<String, Fulldata>> replacedFulldata = new ArrayList<>(Collections.nCopies(readings.size(), (Map<String, Fulldata>) null));
+      final FulldataLoadingException failures = new FulldataLoadingException();
+      if (parallelism <= 1 || readings.size() <= 1) {
+         for (int index = 0; index < readings.size(); index++) {
+            try {
+               replacedFulldata.set(index, readings.get(index).call());
+            } catch (IOException | RuntimeException e) {
+               failures.addFailure(readings.get(index).dataFile, e);
+            }
+         }
+      } else {
+         final ForkJoinPool pool = new ForkJoinPool(parallelism);
+         try {
+            final List<Future<Map<String, Fulldata>>> futures = pool.invokeAll(readings);
+            for (int index = 0; index < readings.size(); index++) {
+               try {
+                  replacedFulldata.set(index, futures.get(index).get());
+               } catch (ExecutionException e) {
+                  failures.addFailure(readings.get(index).dataFile, e.getCause());
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  failures.addFailure(readings.get(index).dataFile, e);
+               }
+            }
+         } finally {
+            pool.shutdown();
+         }
+      }
+
+      for (int index = 0; index < readings.size(); index++) {
+         if (replacedFulldata.get(index) != null) {
+            readings.get(index).attach(replacedFulldata.get(index));
+         }
+      }
+      if (!failures.getFailedFiles().isEmpty()) {
+         throw failures;
+      }
    }
 
-   private void replaceFulldata(final Datacollector collector, final Result result) {
+   private static void addReading(final Map<File, FulldataReading> readingsByFile, final File xmlFile, final Datacollector collector, final Result result,
+         final ToIntFunction<Result> warmup) {
       if (result.getFulldata() != null && result.getFulldata().getFileName() != null) {
-         File dataFile = new File(file.getParentFile(), result.getFulldata().getFileName());
-
-         Fulldata replacedFulldata = executeReading(collector.getName(), dataFile, 0);
-         result.setFulldata(replacedFulldata);
+         final File dataFile = new File(xmlFile.getParentFile(), new File(result.getFulldata().getFileName()).getName());
+         FulldataReading reading = readingsByFile.get(dataFile);
+         if (reading == null) {
+            reading = new FulldataReading(dataFile, warmup.applyAsInt(result));
+            readingsByFile.put(dataFile, reading);
+         }
+         reading.collectorNames.add(collector.getName());
+         reading.results.add(result);
       }
    }
 
-   private static Fulldata readFulldata(final File xmlFile, final int warmup, final TestcaseType testcase, final Result result) {
-      final File file = new File(result.getFulldata().getFileName());
-      final File dataFile = new File(xmlFile.getParentFile(), file.getName());
+   /**
+    * Reads one fulldata file, which may be referenced by the results of several collectors, in a single pass.
+    */
+   private static final class FulldataReading implements Callable<Map<String, Fulldata>> {
+      private final File dataFile;
+      private final int warmup;
+      private final List<String> collectorNames = new ArrayList<>();
+      private final List<Result> results = new ArrayList<>();
 
-      Fulldata replacedFulldata = executeReading(testcase.getDatacollector().get(0).getName(), dataFile, warmup);
-      return replacedFulldata;
-   }
+      FulldataReading(final File dataFile, final int warmup) {
+         this.dataFile = dataFile;
+         this.warmup = warmup;
+      }
 
-   private static Fulldata executeReading(final String currentDatacollector, final File dataFile, final int warmup) {
-      final WrittenResultReader reader = new WrittenResultReader(dataFile);
-      final Set<String> dataCollectors = new HashSet<>();
-      dataCollectors.add(currentDatacollector);
-      reader.read(null, dataCollectors);
+      @Override
+      public Map<String, Fulldata> call() throws IOException {
+         return new MappedFulldataReader(dataFile).createFulldata(warmup);
+      }
 
-      Fulldata replacedFulldata = reader.createFulldata(warmup, currentDatacollector);
-      return replacedFulldata;
+      void attach(final Map<String, Fulldata> fulldataByCollector) {
+         for (int index = 0; index < results.size(); index++) {
+            final Fulldata fulldata = fulldataByCollector.get(collectorNames.get(index));
+            results.get(index).setFulldata(fulldata != null ? fulldata : new Fulldata());
+         }
+      }
    }
-
 }
@@ -2,19 +2,19 @@ package de.dagere.kopeme.datastorage;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.PropertyException;
-import javax.xml.bind.Unmarshaller;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.dagere.kopeme.datacollection.tempfile.CompactFulldataFormat;
 import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Configurations;
 import de.dagere.kopeme.generated.Kopemedata.Testcases;
 import de.dagere.kopeme.generated.Result;
 import de.dagere.kopeme.generated.TestcaseType;
@@ -22,7 +22,8 @@ import de.dagere.kopeme.generated.TestcaseType.Datacollector;
 import de.dagere.kopeme.generated.TestcaseType.Datacollector.Chunk;
 
 /**
- * Manages the storing of resultdata of KoPeMe-tests in the KoPeMe-XML-format.
+ * Manages the storing of resultdata of KoPeMe-tests in the KoPeMe-XML-format. New results are appended to the journal of the result file (see
+ * {@link ResultJournal}) by the {@link ResultRepository}, so storing a result neither reads nor rewrites the existing results; {@link #compact(File)} writes the journal into the result file.
  * 
  * @author reichelt
  *
@@ -31,7 +32,6 @@ public final class XMLDataStorer implements DataStorer {
 
    private static final Logger LOG = LogManager.getLogger(XMLDataStorer.class);
    private final File file;
-   private Kopemedata data;
 
    /**
     * Initializes an XMLDataStorer.
@@ -44,132 +44,182 @@ public final class XMLDataStorer implements DataStorer {
    public XMLDataStorer(final File foldername, final String classname, final String methodname) throws JAXBException {
       final String filename = methodname + ".xml";
       file = new File(foldername, filename);
-      if (file.exists()) {
-         final XMLDataLoader loader = new XMLDataLoader(file);
-         data = loader.getFullData();
-      } else {
-         createXMLData(classname);
+      if (!file.exists()) {
+         ResultRepository.getInstance().discard(file);
+         try (ResultFileLock lock = ResultFileLock.lock(file)) {
+            // Another process may have created the file meanwhile
+            if (!file.exists()) {
+               createXMLData(classname);
+            }
+         } catch (final IOException e) {
+            throw new JAXBException(e);
+         }
       }
    }
 
    /**
-    * Initializes XML-Data.
+    * Initializes XML-Data; a journal that remained from a deleted result file is removed.
     * 
     * @param classname Name of the testclass
     */
-   private void createXMLData(final String classname) {
-      data = new Kopemedata();
+   private void createXMLData(final String classname) throws IOException {
+      final Kopemedata data = new Kopemedata();
       data.setTestcases(new Testcases());
       final Testcases tc = data.getTestcases();
       tc.setClazz(classname);
-      storeData();
+      writeData(file, data);
    }
 
    @Override
    public void storeValue(final Result result, final String testcase, final String collectorName) {
-      if (data.getTestcases() == null) {
-         data.setTestcases(new Testcases());
-      }
-      final TestcaseType test = getOrCreateTestcase(result, testcase);
-
-      final Datacollector dc = getOrCreateDatacollector(collectorName, test);
-
-      if (System.getenv("KOPEME_CHUNKSTARTTIME") != null) {
-         final Chunk current = findChunk(dc);
-         current.getResult().add(result);
-      } else {
-         dc.getResult().add(result);
-      }
-      if (result.getFulldata() != null && result.getFulldata().getFileName() != null) {
-         saveFulldata(result);
-      }
-      result.setCpu(EnvironmentUtil.getCPU());
-      result.setMemory(EnvironmentUtil.getMemory());
-      storeData();
+      storeValues(Collections.singletonMap(collectorName, result), testcase);
    }
 
-   private void saveFulldata(final Result result) {
-      File fulldataFile = new File(result.getFulldata().getFileName());
-      final File targetFile = new File(file.getParentFile(), fulldataFile.getName());
-      try {
-         Files.move(fulldataFile.toPath(), targetFile.toPath());
-         result.getFulldata().setFileName(targetFile.getName());
-      } catch (IOException e) {
-         e.printStackTrace();
-      }
+   /**
+    * Stores the results of all collectors as one journal entry, which is written by the {@link ResultRepository}; the environment is only determined once.
+    */
+   @Override
+   public void storeValues(final Map<String, Result> results, final String testcase) {
+      final Kopemedata entry = createEntry(file, results, testcase);
+      LOG.info("Appending {} results to: {}", results.size(), file.getAbsoluteFile());
+      ResultRepository.getInstance().add(file, entry);
    }
 
-   private Chunk findChunk(final Datacollector dc) {
-      final long start = Long.parseLong(System.getenv("KOPEME_CHUNKSTARTTIME"));
-      Chunk current = null;
-      for (final Chunk chunk : dc.getChunk()) {
-         if (chunk.getChunkStartTime() == start) {
-            current = chunk;
+   /**
+    * Creates a document containing only the new results of one testcase, adding the environment to the results and saving their fulldata files next to the
+    * result file. The description of the environment is added as configuration, which the results reference by its name.
+    * 
+    * @param file Result file the entry belongs to
+    * @param results Results, mapped from the name of their collector
+    * @param testcase Name of the testcase
+    * @return Document containing the new results
+    */
+   static Kopemedata createEntry(final File file, final Map<String, Result> results, final String testcase) {
+      final Kopemedata entry = new Kopemedata();
+      entry.setTestcases(new Testcases());
+      final TestcaseType test = new TestcaseType();
+      test.setName(testcase);
+      entry.getTestcases().getTestcase().add(test);
+      final EnvironmentFingerprint environment = EnvironmentFingerprint.getInstance();
+      entry.setConfigurations(new Configurations());
+      entry.getConfigurations().getConfiguration().add(environment.toConfiguration());
+
+      for (final Map.Entry<String, Result> collectorResult : results.entrySet()) {
+         final Result result = collectorResult.getValue();
+         final Datacollector dc = new Datacollector();
+         dc.setName(collectorResult.getKey());
+         test.getDatacollector().add(dc);
+         if (System.getenv("KOPEME_CHUNKSTARTTIME") != null) {
+            final Chunk current = new Chunk();
+            current.setChunkStartTime(Long.parseLong(System.getenv("KOPEME_CHUNKSTARTTIME")));
+            current.getResult().add(result);
+            dc.getChunk().add(current);
+         } else {
+            dc.getResult().add(result);
          }
+         if (result.getFulldata() != null && result.getFulldata().getFileName() != null) {
+            saveFulldata(file, result);
+         }
+         result.setCpu(environment.getCpu());
+         result.setMemory(environment.getMemory());
+         result.setEnvironment(environment.getHash());
       }
-      if (current == null) {
-         current = new Chunk();
-         current.setChunkStartTime(start);
-         dc.getChunk().add(current);
-      }
-      return current;
+      return entry;
    }
 
-   private Datacollector getOrCreateDatacollector(final String collector, final TestcaseType test) {
-      Datacollector dc = null;
-      for (final Datacollector dc2 : test.getDatacollector()) {
-         LOG.trace("Name: {} Collectorname: {}", dc2.getName(), collector);
-         if (dc2.getName().equals(collector)) {
-            LOG.trace("Equals");
-            dc = dc2;
+   /**
+    * Writes all results of the journal of the result file into the result file and removes the journal. Since the whole document is rewritten, this should be
+    * done rarely; the {@link ResultRepository} calls it if the journal exceeds {@link ResultRepository#COMPACTION_SIZE_PROPERTY}, and
+    * {@link ResultCompactor#compact(File)} also writes the journal into the result file. The file stays locked from loading until writing, so no result that
+    * other processes append meanwhile is lost.
+    * 
+    * @param file Result file
+    * @throws JAXBException Thrown if the result file or the journal contain errors
+    */
+   public static void compact(final File file) throws JAXBException {
+      ResultRepository.getInstance().flush(file);
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         if (file.exists() && ResultJournal.getJournalFile(file).exists()) {
+            writeData(file, XMLDataLoader.readData(file));
          }
+      } catch (final IOException e) {
+         throw new JAXBException(e);
       }
-
-      if (dc == null) {
-         LOG.trace("Erstelle neu");
-         dc = new Datacollector();
-         dc.setName(collector);
-         test.getDatacollector().add(dc);
-      }
-      return dc;
    }
 
-   private TestcaseType getOrCreateTestcase(final Result performanceDataMeasure, final String testcase) {
-      TestcaseType test = null;
-      for (final TestcaseType tc : data.getTestcases().getTestcase()) {
-         if (tc.getName().equals(testcase)) {
-            test = tc;
+   /**
+    * Adds the results of the data to the result file. The current content of the result file is read after locking it, so results that were written by other
+    * processes, e.g. other shards of a chunked run, are kept; if the file does not exist, it is created with the data.
+    * 
+    * @param file Result file
+    * @param newData Data containing the new results
+    * @throws JAXBException Thrown if the result file or its journal contain errors
+    */
+   public static void mergeData(final File file, final Kopemedata newData) throws JAXBException {
+      ResultRepository.getInstance().flush(file);
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         if (file.exists()) {
+            final Kopemedata current = XMLDataLoader.readData(file);
+            addEntry(current, newData);
+            writeData(file, current);
+         } else {
+            writeData(file, newData);
          }
+      } catch (final IOException e) {
+         throw new JAXBException(e);
       }
-      if (test == null) {
-         LOG.trace("Test == null, füge hinzu");
-         test = new TestcaseType();
-         test.setName(testcase);
-         data.getTestcases().getTestcase().add(test);
-      }
-      return test;
    }
 
-   private void storeData() {
+   /**
+    * Adds all results of the entry to the data, creating the testcases, collectors and chunks that do not exist yet; summaries of compacted results are merged.
+    * 
+    * @param data Data that should be extended
+    * @param entry Data containing the new results
+    */
+   static void addEntry(final Kopemedata data, final Kopemedata entry) {
+      new KopemedataMerger(data).add(entry);
+   }
+
+   private static void saveFulldata(final File file, final Result result) {
+      File fulldataFile = new File(result.getFulldata().getFileName());
+      final File targetFile = new File(file.getParentFile(), fulldataFile.getName());
       try {
-         LOG.info("Storing data to: {}", file.getAbsoluteFile());
-         final Marshaller jaxbMarshaller = XMLDataLoader.jc.createMarshaller();
-         jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-         jaxbMarshaller.marshal(data, file);
-      } catch (final JAXBException e) {
-         throw new RuntimeException(e);
+         // All collectors of one test share the temp file, so it only needs to be saved for the first collector
+         if (!targetFile.exists() || fulldataFile.exists()) {
+            CompactFulldataFormat.save(fulldataFile, targetFile);
+         }
+         result.getFulldata().setFileName(targetFile.getName());
+      } catch (IOException e) {
+         e.printStackTrace();
       }
    }
 
    /**
-    * Stores the data in the given file.
+    * Stores the data in the given file; since the data replace everything that was stored before, the journal of the file and the results of the file that
+    * are pending in the {@link ResultRepository} are removed. The file is written to a temp file and renamed while it is locked, so readers and other
+    * processes never see an incomplete file.
     * 
     * @param file File for saving
     * @param currentdata Data to save
     */
    public static void storeData(final File file, final Kopemedata currentdata) {
+      LOG.info("Storing external data to: {}", file.getAbsoluteFile());
+      ResultRepository.getInstance().discard(file);
+      try (ResultFileLock lock = ResultFileLock.lock(file)) {
+         writeData(file, currentdata);
+      } catch (final IOException e) {
+         LOG.error("An exception occured", e);
+         throw new RuntimeException(e);
+      }
+      LOG.trace("Storing finished.");
+   }
+
+   /**
+    * Writes the data and removes the journal; the caller needs to hold the lock of the file. The {@link ResultRepository} must not be used while holding the
+    * lock, since its flushing thread locks result files while holding the repository.
+    */
+   static void writeData(final File file, final Kopemedata currentdata) throws IOException {
       try {
-         LOG.info("Storing external data to: {}", file.getAbsoluteFile());
          final Marshaller jaxbMarshaller = XMLDataLoader.jc.createMarshaller();
          try {
             jaxbMarshaller.setProperty("com.sun.xml.bind.indentString", " ");
@@ -179,26 +229,26 @@ public final class XMLDataStorer implements DataStorer {
 
          jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
 
-         jaxbMarshaller.marshal(currentdata, file);
+         ResultFileLock.writeAtomically(file, target -> {
+            try {
+               jaxbMarshaller.marshal(currentdata, target);
+            } catch (final JAXBException e) {
+               throw new IOException(e);
+            }
+         });
+         ResultJournal.delete(file);
       } catch (final JAXBException e) {
-         LOG.error("An exception occured", e);
-         throw new RuntimeException(e);
+         throw new IOException(e);
       }
-      LOG.trace("Storing finished.");
    }
    
    /**
-    * According to https://stackoverflow.com/questions/930840/how-do-i-clone-a-jaxb-object, this
-    * is the one solution to clone an jaxb object; making the objects serializable or even letting xjc 
-    * create a copy method would be nicer
-    * @throws JAXBException 
+    * Creates a deep copy of the data.
+    * 
+    * @deprecated Use {@link KopemedataMerger#copy(Kopemedata)}, which neither marshals the data nor throws exceptions
     */
+   @Deprecated
    public static Kopemedata clone(final Kopemedata jaxbObject) throws IOException, JAXBException {
-      StringWriter xml = new StringWriter();
-      Marshaller marshaller = XMLDataLoader.jc.createMarshaller();
-      marshaller.marshal(jaxbObject, xml);
-      StringReader reader = new StringReader(xml.toString());
-      Unmarshaller unmarshaller = XMLDataLoader.jc.createUnmarshaller();
-      return (Kopemedata) unmarshaller.unmarshal(reader);
-    }
+      return KopemedataMerger.copy(jaxbObject);
+   }
 }
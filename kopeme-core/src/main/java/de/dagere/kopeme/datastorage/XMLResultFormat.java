@@ -0,0 +1,52 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+
+import de.dagere.kopeme.generated.Kopemedata;
+
+/**
+ * The KoPeMe-XML-format, stored by {@link XMLDataStorer} and loaded by {@link XMLDataLoader}.
+ *
+ * @author reichelt
+ *
+ */
+public final class XMLResultFormat implements ResultFormat {
+
+   public static final String NAME = "xml";
+
+   @Override
+   public String getName() {
+      return NAME;
+   }
+
+   @Override
+   public String getFileExtension() {
+      return ".xml";
+   }
+
+   @Override
+   public DataStorer createStorer(final File folder, final String classname, final String methodname) throws IOException {
+      try {
+         return new XMLDataStorer(folder, classname, methodname);
+      } catch (final JAXBException e) {
+         throw new IOException(e);
+      }
+   }
+
+   @Override
+   public Kopemedata load(final File file) throws IOException {
+      try {
+         return XMLDataLoader.loadData(file);
+      } catch (final JAXBException e) {
+         throw new IOException(e);
+      }
+   }
+
+   @Override
+   public void store(final File file, final Kopemedata data) {
+      XMLDataStorer.storeData(file, data);
+   }
+}
@@ -0,0 +1,158 @@
+package de.dagere.kopeme.jfr;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dagere.kopeme.generated.FlightRecording;
+import de.dagere.kopeme.generated.FlightRecording.AllocationSite;
+import de.dagere.kopeme.generated.FlightRecording.ContendedMonitor;
+
+/**
+ * Reads the events of a recording file by reflection on <code>jdk.jfr.consumer</code> and summarizes them: counts and total durations of garbage collection
+ * pauses, safepoints and thread parks, and the allocation sites and monitor classes with the most allocated bytes and the longest contention.
+ *
+ * @author reichelt
+ *
+ */
+final class FlightRecordingSummarizer {
+
+   /**
+    * Count of allocation sites and monitors that are saved.
+    */
+   static final int TOP_ENTRIES = 5;
+
+   private static final String UNKNOWN_FRAME = "unknown";
+
+   private final Method readAllEvents;
+   private final Method getEventType;
+   private final Method getEventTypeName;
+   private final Method getDuration;
+   private final Method getValue;
+   private final Method getFrames;
+
+   /**
+    * Index 0 contains the count of samples, index 1 the allocated bytes.
+    */
+   private final Map<String, long[]> allocationSites = new HashMap<>();
+   /**
+    * Index 0 contains the count of contended enters, index 1 the duration.
+    */
+   private final Map<String, long[]> monitors = new HashMap<>();
+
+   FlightRecordingSummarizer() throws ReflectiveOperationException {
+      readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+      final Class<?> eventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+      getEventType = eventClass.getMethod("getEventType");
+      getEventTypeName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+      getDuration = eventClass.getMethod("getDuration");
+      getValue = Class.forName("jdk.jfr.consumer.RecordedObject").getMethod("getValue", String.class);
+      getFrames = Class.forName("jdk.jfr.consumer.RecordedStackTrace").getMethod("getFrames");
+   }
+
+   FlightRecording summarize(final Path file) throws ReflectiveOperationException {
+      final FlightRecording summary = new FlightRecording();
+      for (final Object event : (List<?>) readAllEvents.invoke(null, file)) {
+         final String name = (String) getEventTypeName.invoke(getEventType.invoke(event));
+         switch (name) {
+         case KoPeMeFlightRecording.ALLOCATION_SAMPLE:
+            addAllocation(event, "weight");
+            break;
+         case KoPeMeFlightRecording.ALLOCATION_IN_NEW_TLAB:
+            addAllocation(event, "tlabSize");
+            break;
+         case KoPeMeFlightRecording.ALLOCATION_OUTSIDE_TLAB:
+            addAllocation(event, "allocationSize");
+            break;
+         case KoPeMeFlightRecording.GC_PAUSE:
+            summary.setGcPauses(summary.getGcPauses() + 1);
+            summary.setGcPauseTime(summary.getGcPauseTime() + getNanos(event));
+            break;
+         case KoPeMeFlightRecording.SAFEPOINT:
+            summary.setSafepoints(summary.getSafepoints() + 1);
+            summary.setSafepointTime(summary.getSafepointTime() + getNanos(event));
+            break;
+         case KoPeMeFlightRecording.THREAD_PARK:
+            summary.setThreadParks(summary.getThreadParks() + 1);
+            summary.setThreadParkTime(summary.getThreadParkTime() + getNanos(event));
+            break;
+         case KoPeMeFlightRecording.MONITOR_ENTER:
+            final Object monitorClass = getValue.invoke(event, "monitorClass.name");
+            add(monitors, monitorClass != null ? toClassName(monitorClass) : UNKNOWN_FRAME, getNanos(event));
+            break;
+         default:
+            break;
+         }
+      }
+      for (final Map.Entry<String, long[]> site : getTopEntries(allocationSites)) {
+         final AllocationSite allocationSite = new AllocationSite();
+         allocationSite.setFrame(site.getKey());
+         allocationSite.setSamples(site.getValue()[0]);
+         allocationSite.setBytes(site.getValue()[1]);
+         summary.getAllocationSite().add(allocationSite);
+      }
+      for (final Map.Entry<String, long[]> monitor : getTopEntries(monitors)) {
+         final ContendedMonitor contendedMonitor = new ContendedMonitor();
+         contendedMonitor.setClazz(monitor.getKey());
+         contendedMonitor.setCount(monitor.getValue()[0]);
+         contendedMonitor.setDuration(monitor.getValue()[1]);
+         summary.getContendedMonitor().add(contendedMonitor);
+      }
+      return summary;
+   }
+
+   private void addAllocation(final Object event, final String sizeField) throws ReflectiveOperationException {
+      final Object size = getValue.invoke(event, sizeField);
+      add(allocationSites, getTopFrame(event), size instanceof Number ? ((Number) size).longValue() : 0);
+   }
+
+   private static void add(final Map<String, long[]> entries, final String key, final long value) {
+      long[] entry = entries.get(key);
+      if (entry == null) {
+         entry = new long[2];
+         entries.put(key, entry);
+      }
+      entry[0]++;
+      entry[1] += value;
+   }
+
+   /**
+    * Returns the method and line of the top frame of the stack trace of the event.
+    */
+   private String getTopFrame(final Object event) throws ReflectiveOperationException {
+      final Object stackTrace = getValue.invoke(event, "stackTrace");
+      if (stackTrace == null) {
+         return UNKNOWN_FRAME;
+      }
+      final List<?> frames = (List<?>) getFrames.invoke(stackTrace);
+      if (frames.isEmpty()) {
+         return UNKNOWN_FRAME;
+      }
+      final Object frame = frames.get(0);
+      return toClassName(getValue.invoke(frame, "method.type.name")) + "." + getValue.invoke(frame, "method.name") + ":" + getValue.invoke(frame, "lineNumber");
+   }
+
+   /**
+    * Converts the internal class name of the recording, e.g. <code>java/lang/Object</code>, into the usual class name.
+    */
+   private static String toClassName(final Object internalName) {
+      return String.valueOf(internalName).replace('/', '.');
+   }
+
+   private long getNanos(final Object event) throws ReflectiveOperationException {
+      return ((Duration) getDuration.invoke(event)).toNanos();
+   }
+
+   /**
+    * Returns the {@link #TOP_ENTRIES} entries with the highest second value, descending.
+    */
+   private static List<Map.Entry<String, long[]>> getTopEntries(final Map<String, long[]> entries) {
+      final List<Map.Entry<String, long[]>> sorted = new ArrayList<>(entries.entrySet());
+      sorted.sort((first, second) -> Long.compare(second.getValue()[1], first.getValue()[1]));
+      return sorted.subList(0, Math.min(TOP_ENTRIES, sorted.size()));
+   }
+}
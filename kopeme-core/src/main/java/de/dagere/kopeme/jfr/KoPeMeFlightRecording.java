@@ -0,0 +1,211 @@
+package de.dagere.kopeme.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.dagere.kopeme.generated.FlightRecording;
+
+/**
+ * A Java Flight Recorder recording of the measured executions of one test, which records allocation samples, garbage collection pauses, contended monitors,
+ * thread parks and safepoints and is summarized after stopping (see {@link FlightRecording}). Recording is enabled by the VM property
+ * {@link #RECORDING_PROPERTY} and needs Java 11 or newer; since KoPeMe is compiled for Java 8, the recorder is only accessed by reflection, and on older JVMs
+ * no recording is made.
+ *
+ * @author reichelt
+ *
+ */
+public final class KoPeMeFlightRecording {
+
+   private static final Logger LOG = LogManager.getLogger(KoPeMeFlightRecording.class);
+
+   /**
+    * VM property name for recording the measured executions of every test.
+    */
+   public static final String RECORDING_PROPERTY = "kopeme.jfr";
+
+   /**
+    * VM property name for keeping the recording next to the result file instead of only saving its summary.
+    */
+   public static final String KEEP_FILE_PROPERTY = "kopeme.jfr.keepFile";
+
+   static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+   static final String ALLOCATION_IN_NEW_TLAB = "jdk.ObjectAllocationInNewTLAB";
+   static final String ALLOCATION_OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+   static final String GC_PAUSE = "jdk.GCPhasePause";
+   static final String SAFEPOINT = "jdk.SafepointBegin";
+   static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+   static final String THREAD_PARK = "jdk.ThreadPark";
+
+   /**
+    * Minimal duration of recorded monitor enters and thread parks; shorter ones happen too often to record them with low overhead.
+    */
+   private static final String THRESHOLD = "1 ms";
+
+   private static final boolean AVAILABLE = checkAvailable();
+
+   private final Object recording;
+   private FlightRecording summary;
+   private File file;
+   private boolean stopped = false;
+
+   private KoPeMeFlightRecording(final Object recording) {
+      this.recording = recording;
+   }
+
+   private static boolean checkAvailable() {
+      try {
+         return (Boolean) Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable").invoke(null);
+      } catch (final ClassNotFoundException e) {
+         if (Boolean.getBoolean(RECORDING_PROPERTY)) {
+            LOG.warn("Java Flight Recorder is not available in Java {}, tests are not recorded", System.getProperty("java.version"));
+         }
+      } catch (final ReflectiveOperationException | RuntimeException e) {
+         LOG.warn("Could not check availability of the Java Flight Recorder: {}", e.toString());
+      }
+      return false;
+   }
+
+   /**
+    * Returns whether the JVM is able to record, i.e. runs Java 11 or newer with the Java Flight Recorder.
+    */
+   public static boolean isAvailable() {
+      return AVAILABLE;
+   }
+
+   /**
+    * Starts a recording if recording is enabled by {@link #RECORDING_PROPERTY}.
+    *
+    * @return The started recording, or null if recording is disabled or not possible
+    */
+   public static KoPeMeFlightRecording start() {
+      if (!Boolean.getBoolean(RECORDING_PROPERTY) || !AVAILABLE) {
+         return null;
+      }
+      try {
+         final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+         final Object recording = recordingClass.getConstructor().newInstance();
+         recordingClass.getMethod("setSettings", Map.class).invoke(recording, getSettings());
+         recordingClass.getMethod("start").invoke(recording);
+         LOG.debug("Flight recording started");
+         return new KoPeMeFlightRecording(recording);
+      } catch (final ReflectiveOperationException | RuntimeException e) {
+         LOG.warn("Could not start flight recording: {}", getCause(e).toString());
+         return null;
+      }
+   }
+
+   private static Map<String, String> getSettings() {
+      final Map<String, String> settings = new HashMap<>();
+      if (getJavaVersion() >= 16) {
+         enable(settings, ALLOCATION_SAMPLE, true);
+         settings.put(ALLOCATION_SAMPLE + "#throttle", "150/s");
+      } else {
+         enable(settings, ALLOCATION_IN_NEW_TLAB, true);
+         enable(settings, ALLOCATION_OUTSIDE_TLAB, true);
+      }
+      enable(settings, GC_PAUSE, false);
+      settings.put(GC_PAUSE + "#threshold", "0 ms");
+      enable(settings, SAFEPOINT, false);
+      settings.put(SAFEPOINT + "#threshold", "0 ms");
+      enable(settings, MONITOR_ENTER, true);
+      settings.put(MONITOR_ENTER + "#threshold", THRESHOLD);
+      enable(settings, THREAD_PARK, true);
+      settings.put(THREAD_PARK + "#threshold", THRESHOLD);
+      return settings;
+   }
+
+   private static void enable(final Map<String, String> settings, final String event, final boolean stackTrace) {
+      settings.put(event + "#enabled", "true");
+      settings.put(event + "#stackTrace", Boolean.toString(stackTrace));
+   }
+
+   private static int getJavaVersion() {
+      final String version = System.getProperty("java.specification.version");
+      return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+   }
+
+   private static Throwable getCause(final Exception e) {
+      return e instanceof InvocationTargetException ? ((InvocationTargetException) e).getCause() : e;
+   }
+
+   /**
+    * Stops the recording and summarizes its events; further calls only return the summary. The recording is deleted afterwards, unless
+    * {@link #KEEP_FILE_PROPERTY} is set; then it is available by {@link #getFile()}.
+    *
+    * @return The summary, or null if the recording could not be read
+    */
+   public FlightRecording stop() {
+      if (stopped) {
+         return summary;
+      }
+      stopped = true;
+      Path path = null;
+      try {
+         final Class<?> recordingClass = recording.getClass();
+         recordingClass.getMethod("stop").invoke(recording);
+         path = Files.createTempFile("kopeme", ".jfr");
+         recordingClass.getMethod("dump", Path.class).invoke(recording, path);
+         recordingClass.getMethod("close").invoke(recording);
+         summary = new FlightRecordingSummarizer().summarize(path);
+      } catch (final ReflectiveOperationException | RuntimeException e) {
+         LOG.warn("Could not summarize flight recording: {}", getCause(e).toString());
+      } catch (final IOException e) {
+         e.printStackTrace();
+      }
+      if (path != null) {
+         if (Boolean.getBoolean(KEEP_FILE_PROPERTY)) {
+            file = path.toFile();
+         } else {
+            path.toFile().delete();
+         }
+      }
+      return summary;
+   }
+
+   /**
+    * Moves the kept recording file, e.g. next to the result file, and saves the name of the file in the summary.
+    *
+    * @param destination New file of the recording
+    */
+   public void moveFile(final File destination) {
+      if (file == null) {
+         return;
+      }
+      try {
+         Files.move(file.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         file = destination;
+         if (summary != null) {
+            summary.setFile(destination.getName());
+         }
+      } catch (final IOException e) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+    * Returns the summary of the recording.
+    *
+    * @return The summary, or null if the recording has not been stopped or could not be read
+    */
+   public FlightRecording getSummary() {
+      return summary;
+   }
+
+   /**
+    * Returns the file of the stopped recording.
+    *
+    * @return The file, or null if it is not kept
+    */
+   public File getFile() {
+      return file;
+   }
+}
@@ -0,0 +1,49 @@
+package de.dagere.kopeme.datacollection;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAllocatedBytesCollector {
+
+   private static final int SIZE = 1024 * 1024;
+
+   private volatile byte[] data;
+
+   @Test
+   public void testMeasuringThread() {
+      final AllocatedBytesCollector collector = new AllocatedBytesCollector();
+      collector.startCollection();
+      data = new byte[SIZE];
+      collector.stopCollection();
+
+      Assert.assertTrue("Allocated: " + collector.getValue(), collector.getValue() >= SIZE);
+      Assert.assertTrue("Allocated: " + collector.getValue(), collector.getValue() < SIZE + 1024);
+   }
+
+   @Test
+   public void testThreadGroup() throws InterruptedException {
+      final ThreadGroupAllocatedBytesCollector collector = new ThreadGroupAllocatedBytesCollector();
+      final CountDownLatch allocated = new CountDownLatch(1);
+      final CountDownLatch measured = new CountDownLatch(1);
+      collector.startCollection();
+      final Thread thread = new Thread(() -> {
+         data = new byte[SIZE];
+         allocated.countDown();
+         try {
+            // The thread needs to be alive when the collection is stopped
+            measured.await();
+         } catch (final InterruptedException e) {
+            e.printStackTrace();
+         }
+      });
+      thread.start();
+      allocated.await();
+      collector.stopCollection();
+      measured.countDown();
+      thread.join();
+
+      Assert.assertTrue("Allocated: " + collector.getValue(), collector.getValue() >= SIZE);
+   }
+}
@@ -0,0 +1,72 @@
+package de.dagere.kopeme.datacollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCollectorOrder {
+
+   private static final List<String> EVENTS = new ArrayList<>();
+
+   public static class OuterCollector extends DataCollector {
+
+      @Override
+      public int getPriority() {
+         return BEFORE_TIME_COLLECTOR_PRIORITY;
+      }
+
+      @Override
+      public void startCollection() {
+         EVENTS.add("start outer");
+      }
+
+      @Override
+      public void stopCollection() {
+         EVENTS.add("stop outer");
+      }
+
+      @Override
+      public long getValue() {
+         return 0;
+      }
+   }
+
+   public static class InnerCollector extends DataCollector {
+
+      @Override
+      public int getPriority() {
+         return Integer.MAX_VALUE;
+      }
+
+      @Override
+      public void startCollection() {
+         EVENTS.add("start inner");
+      }
+
+      @Override
+      public void stopCollection() {
+         EVENTS.add("stop inner");
+      }
+
+      @Override
+      public long getValue() {
+         return 0;
+      }
+   }
+
+   @Test
+   public void testNestedWindows() {
+      final DataCollectorList collectors = new DataCollectorList();
+      collectors.addDataCollector(InnerCollector.class);
+      collectors.addDataCollector(OuterCollector.class);
+      final TestResult tr = new TestResult("testMethod", 1, collectors, true);
+      EVENTS.clear();
+      tr.startCollection();
+      tr.stopCollection();
+
+      Assert.assertEquals(Arrays.asList("start outer", "start inner", "stop inner", "stop outer"), EVENTS);
+   }
+}
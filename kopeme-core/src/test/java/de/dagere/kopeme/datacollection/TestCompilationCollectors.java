@@ -0,0 +1,98 @@
+package de.dagere.kopeme.datacollection;
+
+import java.nio.file.Files;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class TestCompilationCollectors {
+
+   private static final int EXECUTIONS = 20;
+
+   private long sum;
+
+   /**
+    * A method that is only called by this test, so it is interpreted in the first executions and compiled in later ones.
+    */
+   private long compiledWorkload(final long value) {
+      return value * 31 + (value >>> 3);
+   }
+
+   private void runWorkload() {
+      for (int i = 0; i < 20000; i++) {
+         sum += compiledWorkload(i);
+      }
+   }
+
+   @Test
+   public void testDetection() {
+      final TestResult tr = new TestResult("testMethod", EXECUTIONS, DataCollectorList.COMPILATION, false);
+      for (int i = 0; i < EXECUTIONS; i++) {
+         tr.startCollection();
+         runWorkload();
+         tr.stopCollection();
+      }
+      tr.setRealExecutions(EXECUTIONS);
+      tr.finalizeCollection();
+
+      final long[] counts = tr.getValues(CompilationCountCollector.class.getName());
+      Assume.assumeTrue("Count of compilations not available", counts[0] != -1);
+      long compilations = 0;
+      for (final long count : counts) {
+         compilations += count;
+      }
+      Assert.assertTrue("Compilations: " + compilations, compilations > 0);
+
+      final boolean[] flags = tr.getCompilationFlags();
+      Assert.assertEquals(EXECUTIONS, flags.length);
+      int unflagged = 0;
+      for (int i = 0; i < EXECUTIONS; i++) {
+         unflagged += flags[i] ? 0 : 1;
+      }
+      Assert.assertTrue("Unflagged: " + unflagged, unflagged < EXECUTIONS);
+      Assert.assertEquals(unflagged, tr.getCollectorSummary(TimeDataCollector.class.getName(), true).getN());
+      Assert.assertEquals(EXECUTIONS, tr.getCollectorSummary(TimeDataCollector.class.getName(), false).getN());
+   }
+
+   @Test
+   public void testPerfDataWithOtherTmpdir() throws Exception {
+      Assume.assumeTrue(System.getProperty("os.name").toLowerCase().startsWith("linux"));
+      Assume.assumeNotNull(HotSpotPerfCounter.find("sun.ci.totalCompiles"));
+      final String tmpdir = System.getProperty("java.io.tmpdir");
+      try {
+         System.setProperty("java.io.tmpdir", Files.createTempDirectory("kopeme-tmpdir").toString());
+         Assert.assertNotNull(HotSpotPerfCounter.find("sun.ci.totalCompiles"));
+      } finally {
+         System.setProperty("java.io.tmpdir", tmpdir);
+      }
+   }
+
+   @Test
+   public void testStreaming() {
+      final int executions = TestResult.BOUNDARY_SAVE_FILE;
+      // Without the garbage collection of the TimeDataCollector before every execution
+      final DataCollectorList collectors = new DataCollectorList();
+      collectors.addDataCollector(TimeDataCollectorNoGC.class);
+      collectors.addDataCollector(CompilationTimeCollector.class);
+      collectors.addDataCollector(CompilationCountCollector.class);
+      final TestResult tr = new TestResult("testMethod", executions, collectors, false);
+      for (int i = 0; i < executions; i++) {
+         tr.startCollection();
+         sum += compiledWorkload(i);
+         tr.stopCollection();
+      }
+      tr.setRealExecutions(executions);
+      tr.finalizeCollection();
+
+      final boolean[] flags = tr.getCompilationFlags();
+      Assert.assertEquals(executions, flags.length);
+      int unflagged = 0;
+      for (final boolean flag : flags) {
+         unflagged += flag ? 0 : 1;
+      }
+      final SummaryStatistics steadyState = tr.getCollectorSummary(TimeDataCollectorNoGC.class.getName(), true);
+      Assert.assertEquals(unflagged, steadyState.getN());
+   }
+}
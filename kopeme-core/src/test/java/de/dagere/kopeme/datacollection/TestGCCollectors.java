@@ -0,0 +1,66 @@
+package de.dagere.kopeme.datacollection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestGCCollectors {
+
+   private final GarbageCollectionMonitor monitor = GarbageCollectionMonitor.getInstance();
+
+   @Test
+   public void testCollectionInsideMeasurement() {
+      final GCCountCollector countCollector = new GCCountCollector();
+      final GCTimeCollector timeCollector = new GCTimeCollector();
+      countCollector.startCollection();
+      timeCollector.startCollection();
+      final long[] startCounts = monitor.getCounts();
+      System.gc();
+      final long[] stopCounts = monitor.getCounts();
+      timeCollector.stopCollection();
+      countCollector.stopCollection();
+
+      Assert.assertTrue(countCollector.getValue() >= 1);
+      // Read directly after the collection, so the notification needs to be waited for
+      final long value = timeCollector.getValue();
+      final long notifiedTime = monitor.getNotifiedTime(startCounts, stopCounts);
+      Assert.assertNotEquals("Collection should be notified", -1, notifiedTime);
+      Assert.assertEquals(notifiedTime, value);
+   }
+
+   @Test
+   public void testNotifiedTimeOfCollections() {
+      final long[] beforeCounts = monitor.getCounts();
+      final long beforeTime = monitor.getTime();
+      System.gc();
+      final long[] startCounts = monitor.getCounts();
+      System.gc();
+      System.gc();
+      final long[] stopCounts = monitor.getCounts();
+      final long stopTime = monitor.getTime();
+
+      final long firstTime = monitor.getNotifiedTime(beforeCounts, startCounts);
+      final long secondTime = monitor.getNotifiedTime(startCounts, stopCounts);
+      Assert.assertNotEquals(-1, firstTime);
+      Assert.assertNotEquals(-1, secondTime);
+      Assert.assertEquals(firstTime + secondTime, monitor.getNotifiedTime(beforeCounts, stopCounts));
+      // Durations and accumulated times are rounded to milliseconds separately
+      final long collections = monitor.getCount() - sum(beforeCounts);
+      Assert.assertTrue(Math.abs(stopTime - beforeTime - firstTime - secondTime) <= collections);
+   }
+
+   @Test
+   public void testNoCollection() {
+      System.gc();
+      final long[] counts = monitor.getCounts();
+
+      Assert.assertEquals(0, monitor.getNotifiedTime(counts, counts));
+   }
+
+   private static long sum(final long[] counts) {
+      long sum = 0;
+      for (final long count : counts) {
+         sum += count;
+      }
+      return sum;
+   }
+}
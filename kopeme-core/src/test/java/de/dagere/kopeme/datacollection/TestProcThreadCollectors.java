@@ -0,0 +1,43 @@
+package de.dagere.kopeme.datacollection;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class TestProcThreadCollectors {
+
+   @Test
+   public void testSleeping() throws InterruptedException {
+      Assume.assumeTrue(new File("/proc/thread-self/status").canRead());
+      final VoluntaryContextSwitchCollector voluntary = new VoluntaryContextSwitchCollector();
+      final InvoluntaryContextSwitchCollector involuntary = new InvoluntaryContextSwitchCollector();
+      final MinorPageFaultCollector minorFaults = new MinorPageFaultCollector();
+      final MajorPageFaultCollector majorFaults = new MajorPageFaultCollector();
+      voluntary.startCollection();
+      involuntary.startCollection();
+      minorFaults.startCollection();
+      majorFaults.startCollection();
+      Thread.sleep(10);
+      voluntary.stopCollection();
+      involuntary.stopCollection();
+      minorFaults.stopCollection();
+      majorFaults.stopCollection();
+
+      Assert.assertTrue(voluntary.getValue() >= 1);
+      Assert.assertTrue(involuntary.getValue() >= 0);
+      Assert.assertTrue(minorFaults.getValue() >= 0);
+      Assert.assertTrue(majorFaults.getValue() >= 0);
+   }
+
+   @Test
+   public void testRunQueueWait() {
+      Assume.assumeTrue(new File("/proc/thread-self/schedstat").canRead());
+      final RunQueueWaitCollector collector = new RunQueueWaitCollector();
+      collector.startCollection();
+      collector.stopCollection();
+
+      Assert.assertTrue(collector.getValue() >= 0);
+   }
+}
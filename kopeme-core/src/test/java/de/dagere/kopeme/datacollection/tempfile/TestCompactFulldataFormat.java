@@ -0,0 +1,75 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+import de.dagere.kopeme.datacollection.tempfile.TestResultTempFormats.CountingCollector;
+
+public class TestCompactFulldataFormat {
+
+   private static final int ITERATIONS = 10000;
+
+   private File writeBinary(final boolean trailingStart) throws IOException {
+      final BinaryResultTempWriter writer = new BinaryResultTempWriter(false);
+      final DataCollector[] collectors = new DataCollector[] { new CountingCollector("first", 1), new CountingCollector("second", -3) };
+      writer.setDataCollectors(collectors);
+      for (int i = 0; i < ITERATIONS; i++) {
+         writer.executionStart(1_500_000_000_000L + 2 * i);
+         for (DataCollector dc : collectors) {
+            dc.stopCollection();
+         }
+         writer.writeValues(collectors);
+      }
+      if (trailingStart) {
+         writer.executionStart(1_600_000_000_000L);
+      }
+      writer.finalizeCollection();
+      return writer.getTempFile();
+   }
+
+   @Test
+   public void testCompactReading() throws IOException {
+      final File binary = writeBinary(false);
+      final File compact = Files.createTempFile("kopeme-compact", ".tmp").toFile();
+      CompactFulldataFormat.write(binary, compact, false);
+      Assert.assertTrue(CompactFulldataFormat.isCompact(compact));
+      Assert.assertFalse(BinaryTempFileFormat.isBinary(compact));
+      Assert.assertTrue(compact.length() * 3 < binary.length());
+
+      final File deflated = Files.createTempFile("kopeme-deflated", ".tmp").toFile();
+      CompactFulldataFormat.write(binary, deflated, true);
+      Assert.assertTrue(deflated.length() < compact.length());
+
+      for (File file : new File[] { compact, deflated }) {
+         final WrittenResultReader reader = new WrittenResultReader(file);
+         reader.read(null, new HashSet<>(Arrays.asList("first", "second")));
+         Assert.assertEquals(ITERATIONS, reader.getValueCount());
+         Assert.assertEquals(1_500_000_000_000L + 2 * (ITERATIONS - 1), reader.getExecutionStartTimes()[ITERATIONS - 1]);
+         Assert.assertEquals(-3L * ITERATIONS, reader.getValues("second")[ITERATIONS - 1]);
+         Assert.assertEquals(ITERATIONS, reader.getCollectorSummary("first").getMax(), 0.01);
+         reader.deleteTempFile();
+      }
+      binary.delete();
+   }
+
+   @Test
+   public void testTrailingStart() throws IOException {
+      final File binary = writeBinary(true);
+      final File target = new File(binary.getParentFile(), binary.getName() + ".compact");
+      CompactFulldataFormat.save(binary, target);
+      Assert.assertFalse(binary.exists());
+
+      final CompactFulldataFormat compact = CompactFulldataFormat.read(target);
+      Assert.assertEquals(ITERATIONS + 1, compact.getExecutionStartTimes().length);
+      Assert.assertEquals(1_600_000_000_000L, compact.getExecutionStartTimes()[ITERATIONS]);
+      Assert.assertEquals(ITERATIONS, compact.getValues(0).length);
+      target.delete();
+   }
+}
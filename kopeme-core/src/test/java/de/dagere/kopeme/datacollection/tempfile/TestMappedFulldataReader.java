@@ -0,0 +1,103 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+import de.dagere.kopeme.datacollection.tempfile.TestResultTempFormats.CountingCollector;
+import de.dagere.kopeme.generated.Result.Fulldata;
+
+public class TestMappedFulldataReader {
+
+   private static final int ITERATIONS = 5000;
+
+   private File writeBinary() throws IOException {
+      final BinaryResultTempWriter writer = new BinaryResultTempWriter(false);
+      final DataCollector[] collectors = new DataCollector[] { new CountingCollector("first", 1), new CountingCollector("second", 3) };
+      writer.setDataCollectors(collectors);
+      for (int i = 0; i < ITERATIONS; i++) {
+         writer.executionStart(1000 + i);
+         for (DataCollector dc : collectors) {
+            dc.stopCollection();
+         }
+         writer.writeValues(collectors);
+      }
+      writer.finalizeCollection();
+      return writer.getTempFile();
+   }
+
+   private File writeCompact(final File binary, final boolean deflate) throws IOException {
+      final File compact = Files.createTempFile("kopeme-compact", ".tmp").toFile();
+      CompactFulldataFormat.write(binary, compact, deflate);
+      return compact;
+   }
+
+   /**
+    * Removes the index of a compact file, like in files written before the index was introduced.
+    */
+   private File removeIndex(final File compact) throws IOException {
+      try (RandomAccessFile file = new RandomAccessFile(compact, "rw")) {
+         file.seek(file.length() - Long.BYTES);
+         final long indexOffset = file.readLong();
+         file.setLength(indexOffset);
+         file.seek(Integer.BYTES);
+         file.writeInt(1);
+         file.writeByte(0);
+      }
+      return compact;
+   }
+
+   @Test
+   public void testUnknownVersion() throws IOException {
+      final File binary = writeBinary();
+      final File compact = writeCompact(binary, false);
+      try (RandomAccessFile file = new RandomAccessFile(compact, "rw")) {
+         file.seek(Integer.BYTES);
+         file.writeInt(CompactFulldataFormat.VERSION + 1);
+      }
+      try {
+         new MappedFulldataReader(compact);
+         Assert.fail("Unknown version should be rejected");
+      } catch (final IOException e) {
+         Assert.assertTrue(e.getMessage(), e.getMessage().contains("version"));
+      }
+      binary.delete();
+      compact.delete();
+   }
+
+   @Test
+   public void testAllFormats() throws IOException {
+      final File binary = writeBinary();
+      final File[] files = new File[] { binary, writeCompact(binary, false), writeCompact(binary, true), removeIndex(writeCompact(binary, false)) };
+      for (File file : files) {
+         final MappedFulldataReader reader = new MappedFulldataReader(file);
+         Assert.assertEquals(ITERATIONS, reader.getRecordCount());
+         Assert.assertArrayEquals(new String[] { "first", "second" }, reader.getCollectorNames());
+
+         final long[] values = reader.getValues("second", 3000, 3005);
+         Assert.assertArrayEquals(new long[] { 9003, 9006, 9009, 9012, 9015 }, values);
+         Assert.assertArrayEquals(new long[] { 4025, 4026 }, reader.getExecutionStartTimes(3025, 3027));
+         Assert.assertEquals(0, reader.getValues("first", ITERATIONS, ITERATIONS).length);
+
+         final long[] sum = new long[1];
+         reader.forEach("first", 1024, 2048, (start, value) -> {
+            Assert.assertEquals(start - 999, value);
+            sum[0] += value;
+         });
+         Assert.assertEquals((1025L + 2048) * 1024 / 2, sum[0]);
+
+         final Fulldata fulldata = reader.createFulldata("first", ITERATIONS / 2);
+         Assert.assertEquals(ITERATIONS / 2, fulldata.getValue().size());
+         Assert.assertEquals(ITERATIONS / 2 + 1, fulldata.getValue().get(0).getValue());
+         Assert.assertEquals(0, reader.createFulldata("missing", 0).getValue().size());
+      }
+      for (File file : files) {
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,61 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestQuantileSketch {
+
+   @Test
+   public void testSmallValuesAreExact() {
+      final QuantileSketch sketch = new QuantileSketch();
+      for (int i = 1; i <= 100; i++) {
+         sketch.add(i);
+      }
+      Assert.assertEquals(50, sketch.getPercentile(50), 0.0);
+      Assert.assertEquals(99, sketch.getPercentile(99), 0.0);
+      Assert.assertEquals(100, sketch.getPercentile(100), 0.0);
+      Assert.assertEquals(1, sketch.getPercentile(0), 0.0);
+   }
+
+   @Test
+   public void testRelativeError() {
+      final Random random = new Random(42);
+      final long[] values = new long[100000];
+      final QuantileSketch sketch = new QuantileSketch();
+      for (int i = 0; i < values.length; i++) {
+         values[i] = (long) (Math.exp(random.nextGaussian() * 3 + 12));
+         sketch.add(values[i]);
+      }
+      Arrays.sort(values);
+      for (double p : new double[] { 1, 25, 50, 90, 99, 99.9 }) {
+         final long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+         Assert.assertEquals("Percentile " + p, exact, sketch.getPercentile(p), exact * 0.005);
+      }
+   }
+
+   @Test
+   public void testMergeAndNegativeValues() {
+      final QuantileSketch first = new QuantileSketch();
+      final QuantileSketch second = new QuantileSketch();
+      for (int i = 0; i < 1000; i++) {
+         first.add(-1000 + i);
+         second.add(i);
+      }
+      first.merge(second);
+      Assert.assertEquals(2000, first.getCount());
+      Assert.assertEquals(-1000, first.getPercentile(0), 0.0);
+      Assert.assertEquals(-1, first.getPercentile(50), 5.0);
+      Assert.assertEquals(999, first.getPercentile(100), 5.0);
+   }
+
+   @Test
+   public void testBucketBoundaries() {
+      for (long value : new long[] { 255, 256, 257, 511, 512, 1L << 40, Long.MAX_VALUE }) {
+         final double representative = QuantileSketch.representativeValue(QuantileSketch.bucketIndex(value));
+         Assert.assertEquals("Value " + value, value, representative, value / 256.0);
+      }
+   }
+}
@@ -0,0 +1,295 @@
+package de.dagere.kopeme.datacollection.tempfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+import de.dagere.kopeme.datastorage.XMLDataLoader;
+import de.dagere.kopeme.datastorage.XMLDataStorer;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+
+public class TestResultTempFormats {
+
+   private static final int ITERATIONS = 10000;
+
+   static class CountingCollector extends DataCollector {
+      private final String name;
+      private final int factor;
+      private long value;
+
+      CountingCollector(final String name, final int factor) {
+         this.name = name;
+         this.factor = factor;
+      }
+
+      @Override
+      public String getName() {
+         return name;
+      }
+
+      @Override
+      public int getPriority() {
+         return LOW_DATACOLLECTOR_PRIORITY;
+      }
+
+      @Override
+      public void startCollection() {
+      }
+
+      @Override
+      public void stopCollection() {
+         value += factor;
+      }
+
+      @Override
+      public long getValue() {
+         return value;
+      }
+   }
+
+   private File writeValues(final ResultTempWriter writer, final int iterations) {
+      collect(writer, iterations);
+      return writer.getTempFile();
+   }
+
+   private void collect(final ResultTempWriter writer, final int iterations) {
+      final DataCollector[] collectors = new DataCollector[] { new CountingCollector("first", 1), new CountingCollector("second", 3) };
+      writer.setDataCollectors(collectors);
+      for (int i = 0; i < iterations; i++) {
+         writer.executionStart(i);
+         for (DataCollector dc : collectors) {
+            dc.stopCollection();
+         }
+         writer.writeValues(collectors);
+      }
+      writer.finalizeCollection();
+   }
+
+   @Test
+   public void testBinaryReading() throws IOException {
+      final File file = writeValues(new BinaryResultTempWriter(false), ITERATIONS);
+      Assert.assertTrue(BinaryTempFileFormat.isBinary(file));
+      checkReading(file);
+   }
+
+   @Test
+   public void testAsyncReading() throws IOException {
+      final AsyncResultTempWriter writer = new AsyncResultTempWriter(false, 16);
+      final File file = writeValues(writer, ITERATIONS);
+      Assert.assertTrue(BinaryTempFileFormat.isBinary(file));
+      checkReading(file);
+   }
+
+   @Test
+   public void testAsyncSmallRing() throws IOException {
+      // With one record, the drain thread is unparked after every execution and the measurement waits for every write
+      final AsyncResultTempWriter writer = new AsyncResultTempWriter(false, 1);
+      final File file = writeValues(writer, ITERATIONS);
+      checkReading(file);
+      Assert.assertTrue(writer.getProducerStalls() <= ITERATIONS);
+   }
+
+   @Test
+   public void testTextReading() throws IOException {
+      final File file = writeValues(new TextResultTempWriter(false), ITERATIONS);
+      Assert.assertFalse(BinaryTempFileFormat.isBinary(file));
+      checkReading(file);
+   }
+
+   @Test
+   public void testStreaming() throws IOException {
+      final File file = writeValues(new BinaryResultTempWriter(false), ITERATIONS);
+      final WrittenResultReader reader = new WrittenResultReader(file);
+      reader.readStreaming(null, new HashSet<>(Arrays.asList("first", "second")));
+      Assert.assertEquals(ITERATIONS, reader.getCollectorSummary("second").getN());
+      Assert.assertEquals((ITERATIONS + 1) / 2.0, reader.getFinalValues().get("first").doubleValue(), 0.01);
+      Assert.assertEquals(0.99 * 3 * ITERATIONS, reader.getPercentile("second", 99), 0.005 * 3 * ITERATIONS);
+      Assert.assertEquals(ITERATIONS / 2, reader.getPercentile("first", 50), 0.005 * ITERATIONS);
+      reader.deleteTempFile();
+   }
+
+   @Test
+   public void testPercentileDefinition() throws IOException {
+      final File file = writeValues(new BinaryResultTempWriter(false), 10);
+      final Set<String> collectors = new HashSet<>(Arrays.asList("first", "second"));
+      final WrittenResultReader fullReader = new WrittenResultReader(file);
+      fullReader.read(null, collectors);
+      final WrittenResultReader streamingReader = new WrittenResultReader(file);
+      streamingReader.readStreaming(null, collectors);
+
+      // Nearest rank in both modes, so the median of 1..10 is 5 and not the interpolated 5.5
+      for (final double percentile : new double[] { 0, 10, 50, 55, 99, 100 }) {
+         Assert.assertEquals(streamingReader.getPercentile("first", percentile), fullReader.getPercentile("first", percentile), 0.0);
+      }
+      Assert.assertEquals(5, fullReader.getPercentile("first", 50), 0.0);
+      fullReader.setValues("first", new long[] { 7, 3 });
+      Assert.assertEquals(3, fullReader.getPercentile("first", 50), 0.0);
+      fullReader.deleteTempFile();
+   }
+
+   @Test
+   public void testLoadingBothFormats() throws IOException, JAXBException {
+      final File folder = Files.createTempDirectory("kopeme-formats").toFile();
+      final File binary = writeValues(new BinaryResultTempWriter(false), 50);
+      final File text = writeValues(new TextResultTempWriter(false), 50);
+
+      final Kopemedata data = new Kopemedata();
+      data.setTestcases(new Testcases());
+      data.getTestcases().getTestcase().add(createTestcase("binaryTest", folder, binary));
+      data.getTestcases().getTestcase().add(createTestcase("textTest", folder, text));
+      final File xmlFile = new File(folder, "result.xml");
+      XMLDataStorer.storeData(xmlFile, data);
+
+      final Kopemedata loaded = XMLDataLoader.loadData(xmlFile, 10);
+      for (TestcaseType testcase : loaded.getTestcases().getTestcase()) {
+         final List<Fulldata.Value> values = testcase.getDatacollector().get(0).getResult().get(0).getFulldata().getValue();
+         Assert.assertEquals(40, values.size());
+         Assert.assertEquals(10L, values.get(0).getStart().longValue());
+         Assert.assertEquals(11L, values.get(0).getValue());
+      }
+   }
+
+   @Test
+   public void testLoadingAllCollectors() throws IOException, JAXBException {
+      final File folder = Files.createTempDirectory("kopeme-collectors").toFile();
+      final File binary = writeValues(new BinaryResultTempWriter(false), 50);
+
+      final Kopemedata data = new Kopemedata();
+      data.setTestcases(new Testcases());
+      final TestcaseType testcase = createTestcase("binaryTest", folder, binary);
+      final Datacollector second = new Datacollector();
+      second.setName("second");
+      final Result secondResult = new Result();
+      secondResult.setFulldata(new Fulldata());
+      secondResult.getFulldata().setFileName(binary.getName());
+      secondResult.setIterations(50);
+      second.getResult().add(secondResult);
+      testcase.getDatacollector().add(second);
+      data.getTestcases().getTestcase().add(testcase);
+      final File xmlFile = new File(folder, "result.xml");
+      XMLDataStorer.storeData(xmlFile, data);
+
+      final Kopemedata loaded = XMLDataLoader.loadWarmedupData(xmlFile);
+      final List<Datacollector> collectors = loaded.getTestcases().getTestcase().get(0).getDatacollector();
+      final List<Fulldata.Value> firstValues = collectors.get(0).getResult().get(0).getFulldata().getValue();
+      final List<Fulldata.Value> secondValues = collectors.get(1).getResult().get(0).getFulldata().getValue();
+      Assert.assertEquals(25, firstValues.size());
+      Assert.assertEquals(25, secondValues.size());
+      Assert.assertEquals(26L, firstValues.get(0).getValue());
+      Assert.assertEquals(78L, secondValues.get(0).getValue());
+      Assert.assertEquals(firstValues.get(0).getStart(), secondValues.get(0).getStart());
+   }
+
+   private TestcaseType createTestcase(final String name, final File folder, final File fulldataFile) throws IOException {
+      final File target = new File(folder, fulldataFile.getName());
+      Files.move(fulldataFile.toPath(), target.toPath());
+
+      final TestcaseType testcase = new TestcaseType();
+      testcase.setName(name);
+      final Datacollector datacollector = new Datacollector();
+      datacollector.setName("first");
+      testcase.getDatacollector().add(datacollector);
+      final Result result = new Result();
+      result.setFulldata(new Fulldata());
+      result.getFulldata().setFileName(target.getName());
+      result.setIterations(50);
+      datacollector.getResult().add(result);
+      return testcase;
+   }
+
+   @Test
+   public void testMemoryReading() {
+      final MemoryResultTempWriter writer = new MemoryResultTempWriter(false, ITERATIONS);
+      collect(writer, ITERATIONS);
+      Assert.assertTrue(writer.isInMemory());
+      Assert.assertNull(writer.tempFile);
+
+      final WrittenResultReader reader = writer.createReader();
+      reader.read(null, new HashSet<>(Arrays.asList("first", "second")));
+      Assert.assertEquals(ITERATIONS, reader.getValueCount());
+      Assert.assertEquals(3L * ITERATIONS, reader.getValues("second")[ITERATIONS - 1]);
+      Assert.assertEquals(ITERATIONS, reader.getCollectorSummary("first").getMax(), 0.01);
+   }
+
+   @Test
+   public void testMemorySpilling() {
+      final MemoryResultTempWriter writer = new MemoryResultTempWriter(false, 100);
+      collect(writer, ITERATIONS);
+      Assert.assertFalse(writer.isInMemory());
+      checkReading(writer.getTempFile());
+
+      final MemoryResultTempWriter requestedWriter = new MemoryResultTempWriter(false, ITERATIONS);
+      checkReading(writeValues(requestedWriter, ITERATIONS));
+   }
+
+   @Test
+   public void testWarmupCurve() {
+      final WarmupResultTempWriter writer = new WarmupResultTempWriter(ITERATIONS + 50);
+      collect(writer, ITERATIONS + 50);
+      Assert.assertNull(writer.getTempFile());
+
+      final WarmupCurve curve = writer.getWarmupCurve();
+      Assert.assertEquals(ITERATIONS / WarmupResultTempWriter.MAX_BLOCKS + 1, curve.getBlockSize());
+      final double[] means = curve.getBlockMeans("second");
+      Assert.assertEquals(WarmupResultTempWriter.MAX_BLOCKS, means.length);
+      Assert.assertEquals(3 * 51.0, means[0], 0.01);
+      Assert.assertEquals(3 * (ITERATIONS + 25.0), means[means.length - 1], 0.01);
+
+      final WrittenResultReader reader = writer.createReader();
+      reader.read(null, new HashSet<>(Arrays.asList("first", "second")));
+      Assert.assertEquals(0, reader.getValueCount());
+   }
+
+   @Test
+   public void testIncompleteExecution() throws IOException {
+      final BinaryResultTempWriter writer = new BinaryResultTempWriter(false);
+      final DataCollector[] collectors = new DataCollector[] { new CountingCollector("first", 1) };
+      writer.setDataCollectors(collectors);
+      for (int i = 0; i < 5; i++) {
+         writer.executionStart(i);
+         writer.writeValues(collectors);
+      }
+      writer.executionStart(5);
+      writer.finalizeCollection();
+
+      final WrittenResultReader reader = new WrittenResultReader(writer.getTempFile());
+      try {
+         reader.read(null, new HashSet<>(Arrays.asList("first")));
+         Assert.fail("Incomplete execution should be detected");
+      } catch (RuntimeException e) {
+         Assert.assertEquals(5, reader.getValueCount());
+         Assert.assertEquals(6, reader.getExecutionStartTimes().length);
+      }
+      reader.deleteTempFile();
+   }
+
+   private void checkReading(final File file) {
+      final WrittenResultReader reader = new WrittenResultReader(file);
+      final Set<String> collectors = new HashSet<>(Arrays.asList("first", "second"));
+      reader.read(null, collectors);
+      Assert.assertEquals(ITERATIONS, reader.getValueCount());
+      Assert.assertEquals(ITERATIONS, reader.getExecutionStartTimes().length);
+      Assert.assertEquals(ITERATIONS - 1, reader.getExecutionStartTimes()[ITERATIONS - 1]);
+      Assert.assertEquals(3L * ITERATIONS, reader.getValues("second")[ITERATIONS - 1]);
+      Assert.assertEquals(ITERATIONS, reader.getCollectorSummary("first").getMax(), 0.01);
+
+      final Fulldata fulldata = reader.createFulldata(ITERATIONS / 2, "first");
+      Assert.assertEquals(ITERATIONS / 2, fulldata.getValue().size());
+      reader.deleteTempFile();
+   }
+}
@@ -0,0 +1,94 @@
+package de.dagere.kopeme.datastorage;
+
+import java.util.List;
+
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Params;
+import de.dagere.kopeme.generated.Result.Params.Param;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+
+/**
+ * Creates the result data that the tests of the result storage share.
+ *
+ * @author reichelt
+ *
+ */
+public final class ResultFixtures {
+
+   public static final String TESTCASE = "testMethod";
+   public static final String COLLECTOR = "collector1";
+
+   private ResultFixtures() {
+
+   }
+
+   /**
+    * Creates data containing the results in the collector {@value #COLLECTOR} of the testcase {@value #TESTCASE}.
+    *
+    * @param clazz Name of the test class, may be null
+    * @param results Results of the collector
+    * @return The data
+    */
+   public static Kopemedata createData(final String clazz, final List<Result> results) {
+      final Kopemedata data = new Kopemedata();
+      data.setTestcases(new Testcases());
+      data.getTestcases().setClazz(clazz);
+      addCollector(data, TESTCASE, COLLECTOR).getResult().addAll(results);
+      return data;
+   }
+
+   /**
+    * Adds a collector to the testcase of the data, creating the testcase if it does not exist.
+    *
+    * @param data Data that should be extended
+    * @param testcaseName Name of the testcase
+    * @param collectorName Name of the collector
+    * @return The new collector
+    */
+   public static Datacollector addCollector(final Kopemedata data, final String testcaseName, final String collectorName) {
+      TestcaseType testcase = null;
+      for (final TestcaseType existing : data.getTestcases().getTestcase()) {
+         if (existing.getName().equals(testcaseName)) {
+            testcase = existing;
+         }
+      }
+      if (testcase == null) {
+         testcase = new TestcaseType();
+         testcase.setName(testcaseName);
+         data.getTestcases().getTestcase().add(testcase);
+      }
+      final Datacollector collector = new Datacollector();
+      collector.setName(collectorName);
+      testcase.getDatacollector().add(collector);
+      return collector;
+   }
+
+   /**
+    * Returns the first collector of the first testcase of the data.
+    *
+    * @param data The data
+    * @return The collector
+    */
+   public static Datacollector getCollector(final Kopemedata data) {
+      return data.getTestcases().getTestcase().get(0).getDatacollector().get(0);
+   }
+
+   public static Result createResult(final long date, final double value) {
+      final Result result = new Result();
+      result.setDate(date);
+      result.setValue(value);
+      return result;
+   }
+
+   public static Params createParams(final String key, final String value) {
+      final Params params = new Params();
+      final Param param = new Param();
+      param.setKey(key);
+      param.setValue(value);
+      params.getParam().add(param);
+      return params;
+   }
+}
@@ -1,7 +1,15 @@
 package de.dagere.kopeme.datastorage;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.bind.JAXBException;
 
@@ -32,12 +40,226 @@ public class TestDataSaving {
       testLoadedResults();
    }
 
+   @Test
+   public void testJournalStoring() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-journal").toFile();
+      final XMLDataStorer storer = new XMLDataStorer(folder, "TestClass", "testMethod");
+      final File resultFile = new File(folder, "testMethod.xml");
+      final long initialLength = resultFile.length();
+
+      storer.storeValue(createResult(15.5), "testMethod", "collector1");
+      storer.storeValue(createResult(16.5), "testMethod", "collector1");
+      storer.storeValue(createResult(17.5), "testMethod", "collector2");
+      Assert.assertEquals(initialLength, resultFile.length());
+      ResultRepository.getInstance().flush(resultFile);
+      Files.write(ResultJournal.getJournalFile(resultFile).toPath(), "<kopemedata><testcases".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+      checkJournalResults(XMLDataLoader.loadData(resultFile));
+
+      XMLDataStorer.compact(resultFile);
+      Assert.assertFalse(ResultJournal.getJournalFile(resultFile).exists());
+      checkJournalResults(XMLDataLoader.loadData(resultFile));
+   }
+
+   @Test
+   public void testBatchStoring() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-batch").toFile();
+      final XMLDataStorer storer = new XMLDataStorer(folder, "TestClass", "testMethod");
+      final File resultFile = new File(folder, "testMethod.xml");
+
+      final Map<String, Result> results = new LinkedHashMap<>();
+      results.put("collector1", createResult(16.5));
+      results.put("collector2", createResult(17.5));
+      storer.storeValue(createResult(15.5), "testMethod", "collector1");
+      storer.storeValues(results, "testMethod");
+
+      ResultRepository.getInstance().flush();
+      Assert.assertEquals(2, ResultJournal.readEntries(resultFile).size());
+      final Kopemedata data = XMLDataLoader.loadData(resultFile);
+      checkJournalResults(data);
+      Assert.assertEquals(data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().get(1).getCpu(),
+            data.getTestcases().getTestcase().get(0).getDatacollector().get(1).getResult().get(0).getCpu());
+
+      final String environment = data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().get(0).getEnvironment();
+      Assert.assertEquals(EnvironmentFingerprint.getInstance().getHash(), environment);
+      Assert.assertEquals(1, data.getConfigurations().getConfiguration().size());
+      Assert.assertEquals(environment, data.getConfigurations().getConfiguration().get(0).getName());
+      Assert.assertEquals(EnvironmentUtil.getCPU(), data.getConfigurations().getConfiguration().get(0).getCpu());
+   }
+
+   @Test
+   public void testWriteBehind() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-repository").toFile();
+      final File firstFile = new File(folder, "first.xml");
+      final File secondFile = new File(folder, "second.xml");
+      XMLDataStorer.storeData(firstFile, createData());
+      XMLDataStorer.storeData(secondFile, createData());
+
+      final ResultRepository repository = new ResultRepository(8, -1);
+      repository.add(firstFile, createData());
+      repository.add(firstFile, createData());
+      repository.add(secondFile, createData());
+      Assert.assertFalse(ResultJournal.getJournalFile(firstFile).exists());
+
+      repository.flush(firstFile);
+      Assert.assertEquals(2, ResultJournal.readEntries(firstFile).size());
+      Assert.assertFalse(ResultJournal.getJournalFile(secondFile).exists());
+      repository.flush();
+      Assert.assertEquals(1, ResultJournal.readEntries(secondFile).size());
+   }
+
+   @Test
+   public void testCompactionAfterFlush() throws Exception {
+      final File file = new File(Files.createTempDirectory("kopeme-repository").toFile(), "testMethod.xml");
+      XMLDataStorer.storeData(file, createData());
+
+      final ResultRepository repository = new ResultRepository(8, 0);
+      repository.add(file, createData());
+      repository.flush();
+      Assert.assertFalse(ResultJournal.getJournalFile(file).exists());
+      Assert.assertEquals(2, XMLDataLoader.loadData(file).getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size());
+   }
+
+   @Test
+   public void testFlushAtClassEnd() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-repository").toFile();
+      final File firstFile = new File(folder, "first.xml");
+      final File secondFile = new File(folder, "second.xml");
+      XMLDataStorer.storeData(firstFile, createData());
+      XMLDataStorer.storeData(secondFile, createData());
+
+      final ResultRepository repository = new ResultRepository(8, -1);
+      repository.add(firstFile, createData());
+      repository.testFinished("FirstClass", 2);
+      Assert.assertFalse(ResultJournal.getJournalFile(firstFile).exists());
+      repository.add(firstFile, createData());
+      repository.testFinished("FirstClass", 2);
+      Assert.assertEquals(2, ResultJournal.readEntries(firstFile).size());
+
+      // Only some tests of the second class are executed
+      repository.testFinished("SecondClass", 3);
+      repository.add(secondFile, createData());
+      repository.testFinished("SecondClass", 3);
+      Assert.assertFalse(ResultJournal.getJournalFile(secondFile).exists());
+      repository.testFinished("ThirdClass", 1);
+      Assert.assertEquals(1, ResultJournal.readEntries(secondFile).size());
+   }
+
+   @Test
+   public void testEvictionOfLeastRecentlyUsed() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-repository").toFile();
+      final File firstFile = new File(folder, "first.xml");
+      final File secondFile = new File(folder, "second.xml");
+      final File thirdFile = new File(folder, "third.xml");
+      XMLDataStorer.storeData(firstFile, createData());
+      XMLDataStorer.storeData(secondFile, createData());
+      XMLDataStorer.storeData(thirdFile, createData());
+
+      final ResultRepository repository = new ResultRepository(2, -1);
+      repository.add(firstFile, createData());
+      repository.add(secondFile, createData());
+      repository.add(firstFile, createData());
+      repository.add(thirdFile, createData());
+      Assert.assertEquals(1, ResultJournal.readEntries(secondFile).size());
+      Assert.assertFalse(ResultJournal.getJournalFile(firstFile).exists());
+      Assert.assertFalse(ResultJournal.getJournalFile(thirdFile).exists());
+   }
+
+   @Test
+   public void testConcurrentMerging() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-merge").toFile();
+      final File resultFile = new File(folder, "testMethod.xml");
+      XMLDataStorer.storeData(resultFile, createData());
+
+      final List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+         final int index = i;
+         threads.add(new Thread(() -> {
+            try {
+               for (int j = 0; j < 10; j++) {
+                  if (index % 2 == 0) {
+                     XMLDataStorer.mergeData(resultFile, createData());
+                  } else {
+                     ResultJournal.append(resultFile, Collections.singletonList(createData()));
+                     XMLDataStorer.compact(resultFile);
+                  }
+               }
+            } catch (final JAXBException e) {
+               throw new RuntimeException(e);
+            }
+         }));
+      }
+      threads.forEach(Thread::start);
+      for (final Thread thread : threads) {
+         thread.join();
+      }
+
+      final Kopemedata data = XMLDataLoader.loadData(resultFile);
+      Assert.assertEquals(41, data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size());
+      Assert.assertEquals(0, folder.listFiles((dir, name) -> name.endsWith(".tmp")).length);
+   }
+
+   /**
+    * Stores results in a second JVM, since threads of one JVM share one {@link java.nio.channels.FileLock} and never wait for each other's file lock.
+    */
+   @Test
+   public void testCrossProcessMerging() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-merge").toFile();
+      final File resultFile = new File(folder, "testMethod.xml");
+      XMLDataStorer.storeData(resultFile, createData());
+
+      final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), MergingProcess.class.getName(), resultFile.getAbsolutePath())
+            .inheritIO().start();
+      MergingProcess.main(new String[] { resultFile.getAbsolutePath() });
+      Assert.assertTrue(process.waitFor(120, TimeUnit.SECONDS));
+      Assert.assertEquals(0, process.exitValue());
+
+      final Kopemedata data = XMLDataLoader.loadData(resultFile);
+      Assert.assertEquals(1 + 2 * MergingProcess.ITERATIONS, data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size());
+      Assert.assertEquals(0, folder.listFiles((dir, name) -> name.endsWith(".tmp")).length);
+   }
+
+   /**
+    * Merges results into the given result file and appends results to its journal.
+    */
+   public static final class MergingProcess {
+      static final int ITERATIONS = 20;
+
+      public static void main(final String[] args) throws JAXBException {
+         final File resultFile = new File(args[0]);
+         for (int i = 0; i < ITERATIONS; i++) {
+            if (i % 2 == 0) {
+               XMLDataStorer.mergeData(resultFile, createEntry(i));
+            } else {
+               ResultJournal.append(resultFile, Collections.singletonList(createEntry(i)));
+               XMLDataStorer.compact(resultFile);
+            }
+         }
+      }
+
+      private static Kopemedata createEntry(final int index) {
+         return ResultFixtures.createData(null, Collections.singletonList(ResultFixtures.createResult(index, 15.5)));
+      }
+   }
+
+   private void checkJournalResults(final Kopemedata data) {
+      Assert.assertEquals("TestClass", data.getTestcases().getClazz());
+      final List<Datacollector> collectors = data.getTestcases().getTestcase().get(0).getDatacollector();
+      Assert.assertEquals(2, collectors.size());
+      Assert.assertEquals(2, collectors.get(0).getResult().size());
+      assertCorrectResult(collectors.get(0).getResult().get(1), 16.5);
+      assertCorrectResult(collectors.get(1).getResult().get(0), 17.5);
+   }
+
    private Kopemedata createData() {
       Kopemedata data = new Kopemedata();
       final TestcaseType testcase = new TestcaseType();
+      testcase.setName("testMethod");
       data.setTestcases(new Testcases());
       data.getTestcases().getTestcase().add(testcase);
       final Datacollector datacollector = new Datacollector();
+      datacollector.setName("collector1");
       testcase.getDatacollector().add(datacollector);
       Result result = createResult(15.5);
       datacollector.getResult().add(result);
@@ -0,0 +1,54 @@
+package de.dagere.kopeme.datastorage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+
+public class TestKopemedataMerger {
+
+   private static Kopemedata createData(final String testcaseName, final long... dates) {
+      final Kopemedata data = new Kopemedata();
+      data.setTestcases(new Testcases());
+      data.getTestcases().setClazz("de.test.ExampleTest");
+      final Datacollector collector = ResultFixtures.addCollector(data, testcaseName, ResultFixtures.COLLECTOR);
+      for (final long date : dates) {
+         final Result result = ResultFixtures.createResult(date, date * 2);
+         result.setParams(ResultFixtures.createParams("size", "10"));
+         collector.getResult().add(result);
+      }
+      return data;
+   }
+
+   @Test
+   public void testCopy() {
+      final Kopemedata data = createData("testMethod", 1, 2);
+      final Kopemedata copy = KopemedataMerger.copy(data);
+
+      final Result original = data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().get(0);
+      final Result copiedResult = copy.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().get(0);
+      Assert.assertNotSame(original, copiedResult);
+      Assert.assertNotSame(original.getParams().getParam().get(0), copiedResult.getParams().getParam().get(0));
+      Assert.assertEquals("size-10", ParamNameHelper.paramsToString(copiedResult.getParams()));
+      Assert.assertEquals(2, copiedResult.getValue(), 0.0001);
+      Assert.assertEquals("de.test.ExampleTest", copy.getTestcases().getClazz());
+   }
+
+   @Test
+   public void testMerge() {
+      final Kopemedata first = createData("testMethod", 1, 2, 3);
+      final Kopemedata second = createData("testMethod", 3, 4);
+      second.getTestcases().getTestcase().add(createData("otherMethod", 5).getTestcases().getTestcase().get(0));
+
+      final Kopemedata merged = KopemedataMerger.merge(first, second);
+
+      Assert.assertEquals(2, merged.getTestcases().getTestcase().size());
+      Assert.assertEquals(4, merged.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size());
+      Assert.assertEquals(1, merged.getTestcases().getTestcase().get(1).getDatacollector().get(0).getResult().size());
+      Assert.assertEquals(3, first.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size());
+      Assert.assertEquals(1, first.getTestcases().getTestcase().size());
+   }
+}
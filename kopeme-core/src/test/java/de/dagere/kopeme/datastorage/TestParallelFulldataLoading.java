@@ -0,0 +1,123 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.datacollection.DataCollector;
+import de.dagere.kopeme.datacollection.tempfile.BinaryResultTempWriter;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+
+public class TestParallelFulldataLoading {
+
+   private static final int RESULTS = 20;
+
+   private static class ConstantCollector extends DataCollector {
+      private final long value;
+
+      ConstantCollector(final long value) {
+         this.value = value;
+      }
+
+      @Override
+      public int getPriority() {
+         return LOW_DATACOLLECTOR_PRIORITY;
+      }
+
+      @Override
+      public void startCollection() {
+      }
+
+      @Override
+      public void stopCollection() {
+      }
+
+      @Override
+      public long getValue() {
+         return value;
+      }
+   }
+
+   private File writeFulldata(final File folder, final long value) throws IOException {
+      final BinaryResultTempWriter writer = new BinaryResultTempWriter(false);
+      final DataCollector[] collectors = new DataCollector[] { new ConstantCollector(value) };
+      writer.setDataCollectors(collectors);
+      for (int i = 0; i < 100; i++) {
+         writer.executionStart(i);
+         writer.writeValues(collectors);
+      }
+      writer.finalizeCollection();
+      final File target = new File(folder, writer.getTempFile().getName());
+      Files.move(writer.getTempFile().toPath(), target.toPath());
+      return target;
+   }
+
+   private File createData(final File folder, final int missingIndex) throws IOException {
+      final Kopemedata data = new Kopemedata();
+      data.setTestcases(new Testcases());
+      final TestcaseType testcase = new TestcaseType();
+      testcase.setName("test");
+      data.getTestcases().getTestcase().add(testcase);
+      final Datacollector datacollector = new Datacollector();
+      datacollector.setName(ConstantCollector.class.getName());
+      testcase.getDatacollector().add(datacollector);
+      for (int i = 0; i < RESULTS; i++) {
+         final Result result = new Result();
+         result.setFulldata(new Fulldata());
+         final String fileName = i == missingIndex ? "missing.tmp" : writeFulldata(folder, i).getName();
+         result.getFulldata().setFileName(fileName);
+         datacollector.getResult().add(result);
+      }
+      final File xmlFile = new File(folder, "test.xml");
+      XMLDataStorer.storeData(xmlFile, data);
+      return xmlFile;
+   }
+
+   @Test
+   public void testParallelReading() throws IOException, JAXBException {
+      final File xmlFile = createData(Files.createTempDirectory("kopeme-parallel").toFile(), -1);
+      final XMLDataLoader loader = new XMLDataLoader(xmlFile);
+      loader.readFulldataValues(4);
+      int index = 0;
+      for (Result result : loader.getFullData().getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult()) {
+         Assert.assertNull(result.getFulldata().getFileName());
+         Assert.assertEquals(100, result.getFulldata().getValue().size());
+         Assert.assertEquals(index, result.getFulldata().getValue().get(0).getValue());
+         index++;
+      }
+   }
+
+   @Test
+   public void testErrorAggregation() throws IOException, JAXBException {
+      final File xmlFile = createData(Files.createTempDirectory("kopeme-parallel").toFile(), 5);
+      final XMLDataLoader loader = new XMLDataLoader(xmlFile);
+      try {
+         loader.readFulldataValues(4);
+         Assert.fail("Missing file should be reported");
+      } catch (FulldataLoadingException e) {
+         Assert.assertEquals(1, e.getFailedFiles().size());
+         Assert.assertEquals("missing.tmp", e.getFailedFiles().keySet().iterator().next().getName());
+      }
+      final Result afterMissing = loader.getFullData().getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().get(6);
+      Assert.assertEquals(6, afterMissing.getFulldata().getValue().get(0).getValue());
+   }
+
+   @Test
+   public void testStaticLoadingWithMissingFile() throws IOException, JAXBException {
+      final File xmlFile = createData(Files.createTempDirectory("kopeme-parallel").toFile(), 5);
+      final Kopemedata data = XMLDataLoader.loadData(xmlFile, 0);
+      final Datacollector collector = data.getTestcases().getTestcase().get(0).getDatacollector().get(0);
+      Assert.assertEquals("missing.tmp", collector.getResult().get(5).getFulldata().getFileName());
+      Assert.assertEquals(6, collector.getResult().get(6).getFulldata().getValue().get(0).getValue());
+   }
+}
@@ -0,0 +1,89 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Summary;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+
+public class TestResultCompactor {
+
+   private static final long DAY = 24L * 60 * 60 * 1000;
+
+   private static Kopemedata createData(final long now, final int days) {
+      final List<Result> results = new ArrayList<>();
+      for (int day = days; day > 0; day--) {
+         results.add(ResultFixtures.createResult(now - day * DAY + DAY / 2, 100 + day % 7));
+      }
+      return ResultFixtures.createData(null, results);
+   }
+
+   @Test
+   public void testFolding() throws Exception {
+      final long now = System.currentTimeMillis();
+      final Kopemedata data = createData(now, 30);
+      final SummaryStatistics expected = new SummaryStatistics();
+      for (Result result : data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult()) {
+         if (result.getDate() < now - 10 * DAY) {
+            expected.addValue(result.getValue());
+         }
+      }
+
+      final File file = new File(Files.createTempDirectory("kopeme-compaction").toFile(), "testMethod.xml");
+      XMLDataStorer.storeData(file, data);
+      final ResultCompactor compactor = new ResultCompactor(10 * DAY, 5);
+      Assert.assertEquals(20, compactor.compact(file));
+
+      final Datacollector collector = XMLDataLoader.loadData(file).getTestcases().getTestcase().get(0).getDatacollector().get(0);
+      Assert.assertEquals(10, collector.getResult().size());
+      final Summary summary = collector.getSummary();
+      Assert.assertEquals(20, summary.getCount());
+      Assert.assertEquals(expected.getMean(), summary.getMean(), 0.0001);
+      Assert.assertEquals(expected.getVariance(), summary.getVariance(), 0.0001);
+      Assert.assertEquals(expected.getMax(), summary.getMax(), 0.0001);
+      Assert.assertEquals(103, ResultCompactor.getSketch(summary).getPercentile(50), 0.0001);
+   }
+
+   @Test
+   public void testRepeatedFolding() throws Exception {
+      final long now = System.currentTimeMillis();
+      final Kopemedata data = createData(now, 30);
+      final SummaryStatistics expected = new SummaryStatistics();
+      for (Result result : data.getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().subList(0, 27)) {
+         expected.addValue(result.getValue());
+      }
+
+      final File file = new File(Files.createTempDirectory("kopeme-compaction").toFile(), "testMethod.kopeme");
+      BinaryResultFile.store(file, data);
+      Assert.assertEquals(20, new ResultCompactor(10 * DAY, 5).compact(file));
+      Assert.assertEquals(7, new ResultCompactor(DAY, 3).compact(file));
+
+      final Datacollector collector = BinaryResultFile.load(file).getTestcases().getTestcase().get(0).getDatacollector().get(0);
+      Assert.assertEquals(3, collector.getResult().size());
+      Assert.assertEquals(27, collector.getSummary().getCount());
+      Assert.assertEquals(expected.getMean(), collector.getSummary().getMean(), 0.0001);
+      Assert.assertEquals(expected.getVariance(), collector.getSummary().getVariance(), 0.0001);
+      Assert.assertEquals(27, ResultCompactor.getSketch(collector.getSummary()).getCount());
+   }
+
+   @Test
+   public void testJournalFolding() throws Exception {
+      final long now = System.currentTimeMillis();
+      final File file = new File(Files.createTempDirectory("kopeme-compaction").toFile(), "testMethod.xml");
+      XMLDataStorer.storeData(file, createData(now, 3));
+      ResultJournal.append(file, Collections.singletonList(createData(now, 2)));
+
+      Assert.assertEquals(0, new ResultCompactor(10 * DAY, 5).compact(file));
+      Assert.assertFalse(ResultJournal.getJournalFile(file).exists());
+      Assert.assertEquals(5, XMLDataLoader.loadData(file).getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size());
+   }
+}
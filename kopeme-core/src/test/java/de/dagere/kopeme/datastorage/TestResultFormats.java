@@ -0,0 +1,196 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.xml.bind.Marshaller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.generated.FlightRecording;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.Result.Percentiles;
+import de.dagere.kopeme.generated.Result.Percentiles.Percentile;
+import de.dagere.kopeme.generated.Summary;
+import de.dagere.kopeme.generated.TestcaseType;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector.Chunk;
+import de.dagere.kopeme.generated.Versioninfo;
+
+public class TestResultFormats {
+
+   private static Result createResult(final long date) {
+      final Result result = ResultFixtures.createResult(date, 15.5);
+      result.setDeviation(0.25);
+      result.setIterations(1000);
+      result.setWarmup(-5);
+      result.setMin(1.0);
+      result.setFailure(false);
+      result.setJavaVersion("11.0.1");
+      result.setCpu("Test CPU");
+      result.setVersion(new Versioninfo());
+      result.getVersion().setGitversion("abc");
+      result.setPercentiles(new Percentiles());
+      final Percentile percentile = new Percentile();
+      percentile.setP(99.0);
+      percentile.setValue(20);
+      result.getPercentiles().getPercentile().add(percentile);
+      result.setParams(ResultFixtures.createParams("size", "large"));
+      result.setFulldata(new Fulldata());
+      final Fulldata.Value value = new Fulldata.Value();
+      value.setStart(date);
+      value.setValue(Long.MAX_VALUE);
+      result.getFulldata().getValue().add(value);
+      result.setFlightRecording(new FlightRecording());
+      result.getFlightRecording().setGcPauses(3);
+      result.getFlightRecording().setGcPauseTime(1500000);
+      final FlightRecording.AllocationSite site = new FlightRecording.AllocationSite();
+      site.setFrame("de.dagere.Test.testMethod:15");
+      site.setSamples(10);
+      site.setBytes(1024);
+      result.getFlightRecording().getAllocationSite().add(site);
+      final FlightRecording.ContendedMonitor monitor = new FlightRecording.ContendedMonitor();
+      monitor.setClazz("java.lang.Object");
+      monitor.setCount(2);
+      monitor.setDuration(2000000);
+      result.getFlightRecording().getContendedMonitor().add(monitor);
+      return result;
+   }
+
+   private static Kopemedata createData() {
+      final Kopemedata data = ResultFixtures.createData("de.dagere.Test", Arrays.asList(createResult(1000), createResult(2000)));
+      final Chunk chunk = new Chunk();
+      chunk.setChunkStartTime(500L);
+      chunk.getResult().add(createResult(3000));
+      ResultFixtures.addCollector(data, ResultFixtures.TESTCASE, "collector2").getChunk().add(chunk);
+      return data;
+   }
+
+   private static String toXML(final Kopemedata data) throws Exception {
+      final Marshaller marshaller = XMLDataLoader.jc.createMarshaller();
+      final StringWriter writer = new StringWriter();
+      marshaller.marshal(data, writer);
+      return writer.toString();
+   }
+
+   @Test
+   public void testFormatsAvailable() {
+      Assert.assertTrue(ResultFormats.getFormat("xml") instanceof XMLResultFormat);
+      Assert.assertTrue(ResultFormats.getFormat("binary") instanceof BinaryResultFormat);
+      Assert.assertTrue(ResultFormats.getFormat(new File("test.kopeme")) instanceof BinaryResultFormat);
+   }
+
+   @Test
+   public void testLosslessConversion() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-formats").toFile();
+      final File xmlFile = new File(folder, "test.xml");
+      final Kopemedata data = createData();
+      XMLDataStorer.storeData(xmlFile, data);
+
+      final File binaryFile = new File(folder, "test.kopeme");
+      ResultFormats.convert(xmlFile, binaryFile);
+      Assert.assertEquals(toXML(data), toXML(BinaryResultFile.load(binaryFile)));
+      Assert.assertTrue(binaryFile.length() < xmlFile.length());
+
+      final File convertedFile = new File(folder, "converted.xml");
+      ResultFormats.convert(binaryFile, convertedFile);
+      Assert.assertEquals(toXML(data), toXML(XMLDataLoader.loadData(convertedFile)));
+   }
+
+   @Test
+   public void testBinaryStoring() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-formats").toFile();
+      final DataStorer storer = ResultFormats.getFormat("binary").createStorer(folder, "de.dagere.Test", "testMethod");
+      final Result result = new Result();
+      result.setValue(5);
+      storer.storeValue(result, "testMethod", "collector1");
+      storer.storeValue(result, "testMethod", "collector1");
+      storer.storeValue(result, "testMethod", "collector2");
+
+      final Kopemedata data = ResultFormats.getFormat("binary").load(new File(folder, "testMethod.kopeme"));
+      Assert.assertEquals("de.dagere.Test", data.getTestcases().getClazz());
+      final TestcaseType testcase = data.getTestcases().getTestcase().get(0);
+      Assert.assertEquals(2, testcase.getDatacollector().size());
+      Assert.assertEquals(2, testcase.getDatacollector().get(0).getResult().size());
+   }
+
+   @Test
+   public void testDamagedLastRecord() throws Exception {
+      final File folder = Files.createTempDirectory("kopeme-formats").toFile();
+      final DataStorer storer = ResultFormats.getFormat("binary").createStorer(folder, "de.dagere.Test", "testMethod");
+      final Result result = new Result();
+      result.setValue(5);
+      storer.storeValue(result, "testMethod", "collector1");
+      final File file = new File(folder, "testMethod.kopeme");
+
+      // Length of a record that has not been written completely
+      try (FileOutputStream out = new FileOutputStream(file, true)) {
+         out.write(new byte[] { 0, 0, 1, 0, 42 });
+      }
+      Assert.assertEquals(1, getResultCount(file));
+      storer.storeValue(result, "testMethod", "collector1");
+      Assert.assertEquals(2, getResultCount(file));
+
+      // Garbage which is read as negative length
+      try (FileOutputStream out = new FileOutputStream(file, true)) {
+         out.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 42 });
+      }
+      Assert.assertEquals(2, getResultCount(file));
+      storer.storeValue(result, "testMethod", "collector1");
+      Assert.assertEquals(3, getResultCount(file));
+   }
+
+   @Test
+   public void testLosslessAppending() throws Exception {
+      final File file = new File(Files.createTempDirectory("kopeme-formats").toFile(), "test.kopeme");
+      BinaryResultFile.store(file, ResultFixtures.createData("de.dagere.Test", Arrays.asList(createResult(1000))));
+      final Result appended = createResult(2000);
+      appended.setEnvironment("kernel=5.15");
+      final Kopemedata entry = ResultFixtures.createData("de.dagere.Test", Arrays.asList(appended));
+      final Summary summary = new Summary();
+      summary.setCount(1);
+      summary.setMean(15.5);
+      summary.setMin(15.5);
+      summary.setMax(15.5);
+      ResultFixtures.getCollector(entry).setSummary(summary);
+      BinaryResultFile.append(file, entry);
+
+      final Kopemedata expected = ResultFixtures.createData("de.dagere.Test", Arrays.asList(createResult(1000), appended));
+      ResultFixtures.getCollector(expected).setSummary(summary);
+      Assert.assertEquals(toXML(expected), toXML(BinaryResultFile.load(file)));
+   }
+
+   @Test
+   public void testOtherVersionRejected() throws Exception {
+      final File file = new File(Files.createTempDirectory("kopeme-formats").toFile(), "test.kopeme");
+      BinaryResultFile.store(file, createData());
+      try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+         out.seek(4);
+         out.writeByte(BinaryResultFile.VERSION + 1);
+      }
+
+      try {
+         BinaryResultFile.append(file, createData());
+         Assert.fail("Appending to a file of another version should fail");
+      } catch (final IOException e) {
+         Assert.assertTrue(e.getMessage().contains("version"));
+      }
+      try {
+         BinaryResultFile.load(file);
+         Assert.fail("Loading a file of another version should fail");
+      } catch (final IOException e) {
+         Assert.assertTrue(e.getMessage().contains("version"));
+      }
+   }
+
+   private static int getResultCount(final File file) throws Exception {
+      return BinaryResultFile.load(file).getTestcases().getTestcase().get(0).getDatacollector().get(0).getResult().size();
+   }
+}
@@ -0,0 +1,92 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.datastorage.ResultHistoryIndex.HistorySeries;
+import de.dagere.kopeme.datastorage.ResultHistoryIndex.SeriesKey;
+import de.dagere.kopeme.generated.Result;
+
+public class TestResultHistoryIndex {
+
+   private static Map<String, Result> createResults(final long date, final double value) {
+      final Map<String, Result> results = new LinkedHashMap<>();
+      for (String collector : new String[] { "time", "ram" }) {
+         final Result result = ResultFixtures.createResult(date, collector.equals("time") ? value : 2 * value);
+         result.setDeviation(0.5);
+         result.setIterations(100);
+         result.setJavaVersion("11");
+         results.put(collector, result);
+      }
+      return results;
+   }
+
+   @Test
+   public void testIndexing() throws Exception {
+      final File projectFolder = Files.createTempDirectory("kopeme-index").toFile();
+      final File resultFile = new File(projectFolder, "de.test.ExampleTest" + File.separator + "testMethod.xml");
+      final ResultHistoryIndex writer = new ResultHistoryIndex(projectFolder);
+      for (int i = 0; i < 5; i++) {
+         writer.add("de.test.ExampleTest", "testMethod", createResults(i * 1000, i), resultFile);
+      }
+
+      final ResultHistoryIndex reader = new ResultHistoryIndex(projectFolder);
+      Assert.assertEquals(2, reader.getKeys().size());
+      final SeriesKey timeKey = new SeriesKey("de.test.ExampleTest", "testMethod", "time", null);
+      final HistorySeries time = reader.getSeries(timeKey);
+      Assert.assertArrayEquals(new double[] { 0, 1, 2, 3, 4 }, time.getValues(), 0.01);
+      Assert.assertEquals("de.test.ExampleTest" + File.separator + "testMethod.xml", time.getFiles()[0]);
+      Assert.assertEquals("11", time.getJavaVersions()[4]);
+
+      writer.add("de.test.ExampleTest", "testMethod", createResults(5000, 5), resultFile);
+      final HistorySeries lastRam = reader.getSeries(new SeriesKey("de.test.ExampleTest", "testMethod", "ram", null), 2);
+      Assert.assertArrayEquals(new long[] { 4000, 5000 }, lastRam.getDates());
+      Assert.assertArrayEquals(new double[] { 8, 10 }, lastRam.getValues(), 0.01);
+   }
+
+   @Test
+   public void testDamagedLastRecord() throws Exception {
+      final File projectFolder = Files.createTempDirectory("kopeme-index").toFile();
+      final File resultFile = new File(projectFolder, "de.test.ExampleTest" + File.separator + "testMethod.xml");
+      final ResultHistoryIndex writer = new ResultHistoryIndex(projectFolder);
+      writer.add("de.test.ExampleTest", "testMethod", createResults(0, 0), resultFile);
+      // A crashed process wrote only the length and the start of its record
+      Files.write(writer.getIndexFile().toPath(), new byte[] { 0, 0, 0, 100, 0, 5 }, StandardOpenOption.APPEND);
+
+      final ResultHistoryIndex reader = new ResultHistoryIndex(projectFolder);
+      final SeriesKey timeKey = new SeriesKey("de.test.ExampleTest", "testMethod", "time", null);
+      Assert.assertEquals(1, reader.getSeries(timeKey).size());
+      final Set<SeriesKey> keys = reader.getKeys();
+
+      new ResultHistoryIndex(projectFolder).add("de.test.ExampleTest", "otherMethod", createResults(1000, 1), resultFile);
+      Assert.assertEquals(2, keys.size());
+      Assert.assertEquals(4, reader.getKeys().size());
+      Assert.assertArrayEquals(new long[] { 1000 }, reader.getSeries(new SeriesKey("de.test.ExampleTest", "otherMethod", "time", null)).getDates());
+   }
+
+   @Test
+   public void testDamagedCompleteRecord() throws Exception {
+      final File projectFolder = Files.createTempDirectory("kopeme-index").toFile();
+      final File resultFile = new File(projectFolder, "de.test.ExampleTest" + File.separator + "testMethod.xml");
+      new ResultHistoryIndex(projectFolder).add("de.test.ExampleTest", "testMethod", createResults(0, 0), resultFile);
+      new ResultHistoryIndex(projectFolder).add("de.test.ExampleTest", "testMethod", createResults(1000, 1), resultFile);
+      // The first record keeps its length, but the length of its class name exceeds the record
+      try (RandomAccessFile indexFile = new RandomAccessFile(new ResultHistoryIndex(projectFolder).getIndexFile(), "rw")) {
+         indexFile.seek(4);
+         indexFile.writeShort(0xFFFF);
+      }
+      new ResultHistoryIndex(projectFolder).add("de.test.ExampleTest", "testMethod", createResults(2000, 2), resultFile);
+
+      final ResultHistoryIndex reader = new ResultHistoryIndex(projectFolder);
+      Assert.assertArrayEquals(new long[] { 1000, 2000 }, reader.getSeries(new SeriesKey("de.test.ExampleTest", "testMethod", "time", null)).getDates());
+      Assert.assertArrayEquals(new long[] { 0, 1000, 2000 }, reader.getSeries(new SeriesKey("de.test.ExampleTest", "testMethod", "ram", null)).getDates());
+   }
+}
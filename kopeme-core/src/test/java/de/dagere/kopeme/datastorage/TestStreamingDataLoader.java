@@ -0,0 +1,78 @@
+package de.dagere.kopeme.datastorage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.dagere.kopeme.datastorage.StreamingDataLoader.ResultFilter;
+import de.dagere.kopeme.datastorage.StreamingDataLoader.ResultSeries;
+import de.dagere.kopeme.generated.Kopemedata;
+import de.dagere.kopeme.generated.Kopemedata.Testcases;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.Result.Fulldata;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+
+public class TestStreamingDataLoader {
+
+   private static Result createResult(final long date, final double value, final String param) {
+      final Result result = ResultFixtures.createResult(date, value);
+      result.setDeviation(0.5);
+      result.setIterations(10);
+      result.setFulldata(new Fulldata());
+      final Fulldata.Value fulldataValue = new Fulldata.Value();
+      fulldataValue.setStart(date);
+      fulldataValue.setValue(5);
+      result.getFulldata().getValue().add(fulldataValue);
+      if (param != null) {
+         result.setParams(ResultFixtures.createParams("size", param));
+      }
+      return result;
+   }
+
+   private static File createFile() throws Exception {
+      final Kopemedata data = new Kopemedata();
+      data.setTestcases(new Testcases());
+      for (String testcaseName : new String[] { "testA", "testB" }) {
+         for (String collectorName : new String[] { "time", "ram" }) {
+            final Datacollector collector = ResultFixtures.addCollector(data, testcaseName, collectorName);
+            for (int i = 0; i < 5; i++) {
+               collector.getResult().add(createResult(i * 1000, i, i % 2 == 0 ? "small" : "big"));
+            }
+         }
+      }
+      final File file = new File(Files.createTempDirectory("kopeme-streaming").toFile(), "test.xml");
+      XMLDataStorer.storeData(file, data);
+      return file;
+   }
+
+   @Test
+   public void testSelectiveStreaming() throws Exception {
+      final File file = createFile();
+      final XMLDataStorer storer = new XMLDataStorer(file.getParentFile(), "TestClass", "test");
+      storer.storeValue(createResult(5000, 5, null), "testB", "time");
+
+      final Map<String, ResultSeries> series = StreamingDataLoader.getSeries(file, new ResultFilter().collector("time").testcase("testB"));
+      Assert.assertEquals(Collections.singleton("testB"), series.keySet());
+      Assert.assertArrayEquals(new double[] { 0, 1, 2, 3, 4, 5 }, series.get("testB").getValues(), 0.01);
+
+      final Map<String, ResultSeries> dateRange = StreamingDataLoader.getSeries(file, new ResultFilter().collector("ram").dateRange(1000, 3000));
+      Assert.assertEquals(2, dateRange.size());
+      Assert.assertArrayEquals(new long[] { 1000, 2000, 3000 }, dateRange.get("testA").getDates());
+
+      final Map<String, ResultSeries> params = StreamingDataLoader.getSeries(file,
+            new ResultFilter().collector("ram").testcase("testA").params(Collections.singletonMap("size", "small")));
+      Assert.assertArrayEquals(new double[] { 0, 2, 4 }, params.get("testA").getValues(), 0.01);
+   }
+
+   @Test
+   public void testCollectors() throws Exception {
+      final Set<String> collectors = StreamingDataLoader.getCollectors(createFile());
+      Assert.assertEquals(2, collectors.size());
+      Assert.assertTrue(collectors.contains("ram"));
+   }
+}
@@ -0,0 +1,134 @@
+package de.dagere.kopeme.jfr;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dagere.kopeme.TestUtils;
+import de.dagere.kopeme.datacollection.DataCollectorList;
+import de.dagere.kopeme.datacollection.TestResult;
+import de.dagere.kopeme.datacollection.TimeDataCollector;
+import de.dagere.kopeme.datastorage.FolderProvider;
+import de.dagere.kopeme.datastorage.XMLDataLoader;
+import de.dagere.kopeme.exampletests.pure.TestTimeTest;
+import de.dagere.kopeme.generated.FlightRecording;
+import de.dagere.kopeme.generated.Result;
+import de.dagere.kopeme.generated.TestcaseType.Datacollector;
+import de.dagere.kopeme.testrunner.PerformanceTestRunnerKoPeMe;
+
+public class TestFlightRecording {
+
+   private static final Object LOCK = new Object();
+
+   private volatile byte[] data;
+
+   @Before
+   public void enableRecording() {
+      Assume.assumeTrue("Java Flight Recorder not available", KoPeMeFlightRecording.isAvailable());
+      System.setProperty(KoPeMeFlightRecording.RECORDING_PROPERTY, "true");
+   }
+
+   @After
+   public void disableRecording() {
+      System.clearProperty(KoPeMeFlightRecording.RECORDING_PROPERTY);
+      System.clearProperty(KoPeMeFlightRecording.KEEP_FILE_PROPERTY);
+   }
+
+   private TestResult measure() throws InterruptedException {
+      final TestResult tr = new TestResult("testMethod", 1, DataCollectorList.ONLYTIME, false);
+      tr.beforeRun();
+      tr.startCollection();
+      final long end = System.currentTimeMillis() + 300;
+      while (System.currentTimeMillis() < end) {
+         data = new byte[1024];
+      }
+      System.gc();
+      final Thread contending = new Thread(() -> {
+         synchronized (LOCK) {
+            data = null;
+         }
+      });
+      synchronized (LOCK) {
+         contending.start();
+         Thread.sleep(50);
+      }
+      contending.join();
+      tr.stopCollection();
+      tr.afterRun();
+      tr.finalizeCollection();
+      return tr;
+   }
+
+   @Test
+   public void testSummary() throws InterruptedException {
+      final TestResult tr = measure();
+
+      final FlightRecording summary = tr.getFlightRecording().getSummary();
+      Assert.assertNotNull(summary);
+      Assert.assertTrue(summary.getGcPauses() > 0);
+      Assert.assertTrue(summary.getGcPauseTime() > 0);
+      Assert.assertFalse(summary.getAllocationSite().isEmpty());
+      Assert.assertEquals(Object.class.getName(), summary.getContendedMonitor().get(0).getClazz());
+      Assert.assertNull(tr.getFlightRecording().getFile());
+   }
+
+   @Test
+   public void testKeptFile() throws Exception {
+      System.setProperty(KoPeMeFlightRecording.KEEP_FILE_PROPERTY, "true");
+      final TestResult tr = measure();
+
+      final File destination = new File(Files.createTempDirectory("kopeme-jfr").toFile(), "testMethod.jfr");
+      tr.getFlightRecording().moveFile(destination);
+      Assert.assertTrue(destination.length() > 0);
+      Assert.assertEquals("testMethod.jfr", tr.getFlightRecording().getSummary().getFile());
+   }
+
+   @Test
+   public void testWarmupNotRecorded() {
+      final TestResult tr = TestResult.createWarmupResult("testMethod", 1, DataCollectorList.ONLYTIME);
+      tr.beforeRun();
+      tr.startCollection();
+      tr.stopCollection();
+      tr.finalizeCollection();
+      Assert.assertNull(tr.getFlightRecording());
+   }
+
+   @Test
+   public void testRecordingOutsideExecutions() {
+      final TestResult tr = new TestResult("testMethod", 1, DataCollectorList.ONLYTIME, false);
+      tr.startCollection();
+      tr.stopCollection();
+      Assert.assertNull("Executions should not start the recording", tr.getFlightRecording());
+
+      tr.beforeRun();
+      Assert.assertNotNull(tr.getFlightRecording());
+      tr.startCollection();
+      tr.stopCollection();
+      Assert.assertNull(tr.getFlightRecording().getSummary());
+      tr.afterRun();
+      Assert.assertNotNull(tr.getFlightRecording().getSummary());
+      tr.finalizeCollection();
+   }
+
+   @Test
+   public void testPerformanceTestRunner() throws Throwable {
+      TestUtils.cleanAndSetKoPeMeOutputFolder();
+      PerformanceTestRunnerKoPeMe.main(new String[] { TestTimeTest.class.getName() });
+
+      final File resultFile = new File(FolderProvider.getInstance().getFolderFor(TestTimeTest.class.getCanonicalName()), "simpleTest.xml");
+      int recordings = 0;
+      for (final Datacollector collector : new XMLDataLoader(resultFile).getFullData().getTestcases().getTestcase().get(0).getDatacollector()) {
+         final Result result = collector.getResult().get(0);
+         if (result.getFlightRecording() != null) {
+            Assert.assertEquals(TimeDataCollector.class.getName(), collector.getName());
+            recordings++;
+         }
+      }
+      Assert.assertEquals(1, recordings);
+   }
+}
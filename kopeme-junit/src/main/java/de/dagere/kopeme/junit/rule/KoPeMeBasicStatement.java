@@ -69,11 +69,21 @@ public abstract class KoPeMeBasicStatement extends Statement {
          datacollectors = DataCollectorList.ONLYTIME;
       } else if ("ONLYTIME_NOGC".equals(annotation.dataCollectors())) {
          datacollectors = DataCollectorList.ONLYTIME_NOGC;
+      } else if ("ALLOCATION".equals(annotation.dataCollectors())) {
+         datacollectors = DataCollectorList.ALLOCATION;
+      } else if ("ALLOCATION_THREADGROUP".equals(annotation.dataCollectors())) {
+         datacollectors = DataCollectorList.ALLOCATION_THREADGROUP;
+      } else if ("GC".equals(annotation.dataCollectors())) {
+         datacollectors = DataCollectorList.GC;
+      } else if ("COMPILATION".equals(annotation.dataCollectors())) {
+         datacollectors = DataCollectorList.COMPILATION;
+      } else if ("SCHEDULING".equals(annotation.dataCollectors())) {
+         datacollectors = DataCollectorList.SCHEDULING;
       } else if ("NONE".equals(annotation.dataCollectors())) {
          datacollectors = DataCollectorList.NONE;
       } else {
          datacollectors = DataCollectorList.ONLYTIME;
-         LOG.error("For Datacollectorlist, only STANDARD, ONLYTIME, ONLYTIME_NOGC and NONE are allowed");
+         LOG.error("For Datacollectorlist, only EXTENDED, STANDARD, ONLYTIME, ONLYTIME_NOGC, ALLOCATION, ALLOCATION_THREADGROUP, GC, COMPILATION, SCHEDULING and NONE are allowed");
       }
 
       if (annotation != null) {
@@ -149,6 +159,7 @@ public abstract class KoPeMeBasicStatement extends Statement {
       } finally {
          OutputStreamUtil.resetStreams();
       }
+      tr.afterRun();
 
       System.gc();
       Thread.sleep(1);
@@ -4,12 +4,15 @@ import java.lang.reflect.Method;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.junit.Ignore;
+import org.junit.Test;
 import org.junit.function.ThrowingRunnable;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
 
 import de.dagere.kopeme.annotations.PerformanceTest;
+import de.dagere.kopeme.datastorage.ResultRepository;
 import de.dagere.kopeme.datastorage.RunConfiguration;
 import de.dagere.kopeme.generated.Result;
 import de.dagere.kopeme.generated.Result.Params;
@@ -70,7 +73,7 @@ public class KoPeMeRule implements TestRule {
                final TestRunnable runnables = new TestRunnables(new RunConfiguration(annotation), testRunnable, testClass, testObject);
 
                koPeMeStandardRuleStatement = new KoPeMeStandardRuleStatement(runnables, testMethod, testClass.getName(), params);
-               return koPeMeStandardRuleStatement;
+               return createFlushingStatement(koPeMeStandardRuleStatement, testClass);
             } else {
                return stmt;
             }
@@ -83,6 +86,33 @@ public class KoPeMeRule implements TestRule {
       }
    }
 
+   /**
+    * Since a rule is not notified at the end of the test class, every finished performance test is reported to the {@link ResultRepository}, which writes the
+    * results after the last performance test of the class.
+    */
+   private Statement createFlushingStatement(final Statement statement, final Class<?> testClass) {
+      return new Statement() {
+         @Override
+         public void evaluate() throws Throwable {
+            try {
+               statement.evaluate();
+            } finally {
+               ResultRepository.getInstance().testFinished(testClass.getName(), countPerformanceTests(testClass));
+            }
+         }
+      };
+   }
+
+   private static int countPerformanceTests(final Class<?> testClass) {
+      int count = 0;
+      for (final Method method : testClass.getMethods()) {
+         if (method.isAnnotationPresent(Test.class) && method.isAnnotationPresent(PerformanceTest.class) && !method.isAnnotationPresent(Ignore.class)) {
+            count++;
+         }
+      }
+      return count;
+   }
+
    private Params parseParams(final String methodDescription, final int squaredBracketIndex) {
       final Params params;
       String indexString = methodDescription.substring(squaredBracketIndex + 1, methodDescription.length() - 1);
@@ -39,7 +39,7 @@ public class KoPeMeStandardRuleStatement extends KoPeMeBasicStatement {
 
    public KoPeMeStandardRuleStatement(final TestRunnable runnables, final Method method, final String filename) {
       super(runnables, method, filename, method.getName());
-      finalResult = new TestResult(method.getName(), annotation.warmup(), datacollectors, false);
+      finalResult = new TestResult(method.getName(), annotation.iterations(), datacollectors, false);
       
       params = null;
       initializeKieker(clazzname, method.getName());
@@ -50,7 +50,7 @@ public class KoPeMeStandardRuleStatement extends KoPeMeBasicStatement {
             method,
             filename,
             (params != null) ? method.getName() + "(" + ParamNameHelper.paramsToString(params) + ")" : method.getName());
-      finalResult = new TestResult(method.getName(), annotation.warmup(), datacollectors, false, params);
+      finalResult = new TestResult(method.getName(), annotation.iterations(), datacollectors, false, params);
       this.params = params;
       
       if (!parameterIndexInvalid()) {
@@ -143,9 +143,10 @@ public class KoPeMeStandardRuleStatement extends KoPeMeBasicStatement {
 
    private void runWarmup() throws Throwable {
       if (annotation.warmup() > 0) {
-         final TestResult deletableResult = new TestResult(method.getName(), annotation.warmup(), datacollectors, true);
-         runMainExecution(deletableResult, "warmup execution ", annotation.warmup(), annotation.repetitions());
-         deletableResult.deleteTempFile();
+         final TestResult warmupResult = TestResult.createWarmupResult(method.getName(), annotation.warmup(), datacollectors);
+         runMainExecution(warmupResult, "warmup execution ", annotation.warmup(), annotation.repetitions());
+         warmupResult.finalizeCollection();
+         finalResult.setWarmupCurve(warmupResult.getWarmupCurve());
       }
    }
 }
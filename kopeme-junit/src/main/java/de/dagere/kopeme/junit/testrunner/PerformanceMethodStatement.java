@@ -11,6 +11,7 @@ import de.dagere.kopeme.PerformanceTestUtils;
 import de.dagere.kopeme.TimeBoundExecution;
 import de.dagere.kopeme.TimeBoundExecution.Type;
 import de.dagere.kopeme.datacollection.TestResult;
+import de.dagere.kopeme.datacollection.tempfile.WarmupCurve;
 import de.dagere.kopeme.datastorage.SaveableTestData;
 import de.dagere.kopeme.junit.rule.KoPeMeBasicStatement;
 import de.dagere.kopeme.runnables.TestRunnable;
@@ -44,8 +45,8 @@ public class PerformanceMethodStatement extends KoPeMeBasicStatement {
          @Override
          public void run() {
             try {
-               runWarmup();
-               final TestResult tr = executeSimpleTest(annotation.iterations());
+               final TestResult warmupResult = runWarmup();
+               final TestResult tr = executeSimpleTest(annotation.iterations(), warmupResult.getWarmupCurve());
                tr.checkValues();
                if (!assertationvalues.isEmpty()) {
                   LOG.info("Checking: " + assertationvalues.size());
@@ -93,7 +94,20 @@ public class PerformanceMethodStatement extends KoPeMeBasicStatement {
     * @throws Throwable Any exception that occurs during the test
     */
    protected TestResult executeSimpleTest(final int executions) throws Throwable {
+      return executeSimpleTest(executions, null);
+   }
+
+   /**
+    * Executes a simple test, i.e. a test without parameters, after a warmup.
+    * 
+    * @param executions Count of executions
+    * @param warmupCurve Curve of the preceding warmup, or null if there was none
+    * @return The result of the test
+    * @throws Throwable Any exception that occurs during the test
+    */
+   protected TestResult executeSimpleTest(final int executions, final WarmupCurve warmupCurve) throws Throwable {
       final TestResult tr = new TestResult(methodName, executions, datacollectors, false);
+      tr.setWarmupCurve(warmupCurve);
 
       if (!PerformanceTestUtils.checkCollectorValidity(tr, assertationvalues, maximalRelativeStandardDeviation)) {
          LOG.warn("Not all Collectors are valid!");
@@ -111,13 +125,13 @@ public class PerformanceMethodStatement extends KoPeMeBasicStatement {
    }
 
    /**
-    * Runs the warmup for the tests.
+    * Runs the warmup for the tests; the values are not written, only the warmup curve is kept.
     * 
-    * @param callee Statement that should be called to measure performance and execute the test
+    * @return Result of the warmup, containing the warmup curve
     * @throws Throwable Any exception that occurs during the test
     */
-   private void runWarmup() throws Throwable {
-      final TestResult tr = new TestResult(methodName, annotation.warmup(), datacollectors, true);
+   private TestResult runWarmup() throws Throwable {
+      final TestResult tr = TestResult.createWarmupResult(methodName, annotation.warmup(), datacollectors);
 
       if (!PerformanceTestUtils.checkCollectorValidity(tr, assertationvalues, maximalRelativeStandardDeviation)) {
          LOG.warn("Not all Collectors are valid!");
@@ -130,6 +144,7 @@ public class PerformanceMethodStatement extends KoPeMeBasicStatement {
          throw t;
       }
       tr.finalizeCollection();
+      return tr;
    }
 
    public void setFinished(final boolean isFinished) {
@@ -25,6 +25,7 @@ import de.dagere.kopeme.annotations.AnnotationDefaults;
 import de.dagere.kopeme.annotations.PerformanceTest;
 import de.dagere.kopeme.annotations.PerformanceTestingClass;
 import de.dagere.kopeme.datacollection.TestResult;
+import de.dagere.kopeme.datastorage.ResultRepository;
 import de.dagere.kopeme.datastorage.RunConfiguration;
 import de.dagere.kopeme.runnables.TestRunnable;
 import de.dagere.kopeme.runnables.TestRunnables;
@@ -100,6 +101,7 @@ public class PerformanceTestRunnerJUnit extends BlockJUnit4ClassRunner {
          LOG.debug("Not finished.");
          setTestsToFail(notifier);
       }
+      ResultRepository.getInstance().flush();
    }
 
    /**
@@ -1,10 +1,13 @@
 package de.dagere.kopeme.junit5.rule;
 
+import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.ConditionEvaluationResult;
 import org.junit.jupiter.api.extension.ExecutionCondition;
 import org.junit.jupiter.api.extension.ExtensionContext;
 
-public class KoPeMeExtension implements ExecutionCondition {
+import de.dagere.kopeme.datastorage.ResultRepository;
+
+public class KoPeMeExtension implements ExecutionCondition, AfterAllCallback {
 
    private static boolean lastRunFailed = false;
 
@@ -24,6 +27,11 @@ public class KoPeMeExtension implements ExecutionCondition {
       }
    }
 
+   @Override
+   public void afterAll(final ExtensionContext context) {
+      ResultRepository.getInstance().flush();
+   }
+
    public static boolean isLastRunFailed() {
       return lastRunFailed;
    }
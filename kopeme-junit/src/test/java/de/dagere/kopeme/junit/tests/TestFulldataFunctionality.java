@@ -110,7 +110,7 @@ public class TestFulldataFunctionality {
                final Set<String> collectors = new HashSet<>();
                collectors.add(TimeDataCollectorNoGC.class.getCanonicalName());
                reader.read(null, collectors);
-               Assert.assertEquals(TestResult.BOUNDARY_SAVE_FILE * 2, reader.getRealValues().size());
+               Assert.assertEquals(TestResult.BOUNDARY_SAVE_FILE * 2, reader.getValues(TimeDataCollectorNoGC.class.getCanonicalName()).length);
             }
          }
       } catch (final JAXBException e) {
@@ -5,7 +5,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,11 +24,13 @@ import de.dagere.kopeme.annotations.PerformanceTest;
 import de.dagere.kopeme.annotations.PerformanceTestingClass;
 import de.dagere.kopeme.datacollection.DataCollectorList;
 import de.dagere.kopeme.datacollection.TestResult;
+import de.dagere.kopeme.datastorage.ResultRepository;
 import de.dagere.kopeme.datastorage.RunConfiguration;
 import de.dagere.kopeme.datastorage.SaveableTestData;
 import de.dagere.kopeme.datastorage.SaveableTestData.TestErrorTestData;
 import de.dagere.kopeme.kieker.KoPeMeKiekerSupport;
 import junit.framework.AssertionFailedError;
+import junit.framework.Test;
 import junit.framework.TestCase;
 
 /**
@@ -190,10 +196,30 @@ public abstract class KoPeMeTestcase extends TestCase {
       } catch (final Exception e) {
          e.printStackTrace();
          fail(e.getLocalizedMessage());
+      } finally {
+         ResultRepository.getInstance().testFinished(testClassName, countTestMethods());
       }
 
    }
 
+   /**
+    * Counts the test methods of the class like the {@link junit.framework.TestSuite} does, since JUnit 3 does not notify the testcase at the end of its class.
+    * 
+    * @return Count of test methods
+    */
+   private int countTestMethods() {
+      final Set<String> names = new HashSet<>();
+      for (Class<?> clazz = getClass(); Test.class.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
+         for (final Method method : clazz.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers()) && method.getParameterTypes().length == 0 && method.getName().startsWith("test")
+                  && method.getReturnType() == Void.TYPE) {
+               names.add(method.getName());
+            }
+         }
+      }
+      return names.size();
+   }
+
    /**
     * Runs the whole testcase.
     * 
@@ -208,8 +234,10 @@ public abstract class KoPeMeTestcase extends TestCase {
 
       final String fullName = this.getClass().getName() + "." + getName();
       try {
-         final TestResult bulkResult = new TestResult(tr.getTestcase(), executionTimes, getDataCollectors(), true);
-         runMainExecution("warmup", fullName, bulkResult, warmupExecutions);
+         final TestResult warmupResult = TestResult.createWarmupResult(tr.getTestcase(), warmupExecutions, getDataCollectors());
+         runMainExecution("warmup", fullName, warmupResult, warmupExecutions);
+         warmupResult.finalizeCollection();
+         tr.setWarmupCurve(warmupResult.getWarmupCurve());
          runMainExecution("main", fullName, tr, executionTimes);
          LOG.debug("Finalizing..");
          tr.finalizeCollection();
@@ -266,6 +294,7 @@ public abstract class KoPeMeTestcase extends TestCase {
       } finally {
          OutputStreamUtil.resetStreams();
       }
+      tr.afterRun();
       System.gc();
       Thread.sleep(1);
       LOG.debug("Executions: " + (execution - 1));